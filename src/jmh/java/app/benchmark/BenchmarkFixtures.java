@@ -0,0 +1,269 @@
+package app.benchmark;
+
+import app.event.EventConsumer;
+import app.event.EventDeduplicator;
+import app.event.EventMetrics;
+import app.event.PreferenceChangePublisher;
+import app.event.ReplyOutbox;
+import app.model.Notification;
+import app.model.NotificationPreference;
+import app.model.NotificationType;
+import app.model.OutboxEvent;
+import app.model.ProcessedEvent;
+import app.repository.NotificationRepository;
+import app.repository.OutboxRepository;
+import app.repository.PreferenceRepository;
+import app.repository.ProcessedEventRepository;
+import app.service.ChannelBulkhead;
+import app.service.EmailChannel;
+import app.service.MailThrottle;
+import app.service.NotificationChannels;
+import app.service.NotificationCounters;
+import app.service.NotificationDispatcher;
+import app.service.NotificationRetryPolicy;
+import app.service.NotificationService;
+import app.service.PreferenceCache;
+import app.service.PreferenceStore;
+import app.service.ReadYourWrites;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mail.MailSender;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Wires the production classes with in-memory repositories, a mail sender that only counts and a
+ * transaction manager without a database, so the benchmarks measure our code rather than I/O.
+ */
+final class BenchmarkFixtures {
+
+    static final LongAdder SENT_MAILS = new LongAdder();
+    static final LongAdder OUTBOX_EVENTS = new LongAdder();
+
+    private BenchmarkFixtures() {
+    }
+
+    // configured like the ObjectMapper Spring Boot injects into EventConsumer
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    static NotificationService notificationService(PreferenceRepository preferenceRepository, boolean async) {
+
+        NotificationRepository notificationRepository = notificationRepository();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EmailChannel emailChannel = new EmailChannel(
+                countingMailSender(), new MailThrottle("localhost", 0, 1, Duration.ZERO, Duration.ofSeconds(30)), meterRegistry);
+        // nothing flushes the counters here, they only accumulate
+        NotificationCounters notificationCounters = new NotificationCounters(
+                null, notificationRepository, null, null, null, meterRegistry, false, 500, Duration.ofMinutes(1), Duration.ofHours(1));
+        NotificationDispatcher dispatcher = new NotificationDispatcher(
+                new NotificationChannels(List.of(new ChannelBulkhead(
+                        emailChannel, task -> { }, 4, 100, Duration.ofSeconds(30), meterRegistry))),
+                notificationRepository, async, Duration.ofMinutes(1), Duration.ofMinutes(5),
+                new NotificationRetryPolicy(6, Duration.ofSeconds(30), Duration.ofHours(1), 0.5),
+                notificationCounters);
+        PreferenceCache preferenceCache = new PreferenceCache(
+                new NoOpPreferenceChangePublisher(), new PreferenceStore(meterRegistry, false, Duration.ofMinutes(10)),
+                new SimpleMeterRegistry(), 10_000, Duration.ofMinutes(10));
+        ReadYourWrites readYourWrites = new ReadYourWrites(
+                new NoOpTransactionManager(), meterRegistry, Duration.ofSeconds(5), 100_000);
+        return new NotificationService(preferenceRepository, dispatcher, notificationRepository, preferenceCache, null,
+                readYourWrites, notificationCounters);
+    }
+
+    static EventConsumer eventConsumer(NotificationService notificationService) {
+
+        ReplyOutbox replyOutbox = new ReplyOutbox(outboxRepository(), "user-event.reply.v1");
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+        EventDeduplicator eventDeduplicator = new EventDeduplicator(
+                processedEventRepository(), new SimpleMeterRegistry(), 1_000_000, 0.01, 10_000);
+        eventDeduplicator.warmUp();
+        return new EventConsumer(notificationService, null, replyOutbox, null,
+                new EventMetrics(new SimpleMeterRegistry()), transactionTemplate, objectMapper(), null, eventDeduplicator);
+    }
+
+    static List<NotificationPreference> enabledPreferences(int count) {
+
+        List<NotificationPreference> preferences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            preferences.add(NotificationPreference.builder()
+                    .id(UUID.randomUUID())
+                    .userId(UUID.randomUUID())
+                    .type(NotificationType.EMAIL)
+                    .contactInfo("user" + i + "@example.com")
+                    .isEnable(true)
+                    .createdOn(LocalDateTime.now())
+                    .updatedOn(LocalDateTime.now())
+                    .build());
+        }
+        return preferences;
+    }
+
+    static PreferenceRepository preferenceRepository(Collection<NotificationPreference> preferences) {
+
+        Map<UUID, NotificationPreference> byUserId = new ConcurrentHashMap<>();
+        preferences.forEach(preference -> byUserId.put(preference.getUserId(), preference));
+
+        return repository(PreferenceRepository.class, (method, args) -> switch (method.getName()) {
+            case "save" -> {
+                NotificationPreference preference = (NotificationPreference) args[0];
+                if (preference.getId() == null) {
+                    preference.setId(UUID.randomUUID());
+                }
+                byUserId.put(preference.getUserId(), preference);
+                yield preference;
+            }
+            case "findByUserId" -> Optional.ofNullable(byUserId.get((UUID) args[0]));
+            case "findAllByUserIdIn" -> ((Collection<?>) args[0]).stream()
+                    .map(byUserId::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    // notifications are only given an id; keeping them would let the heap grow over the run
+    static NotificationRepository notificationRepository() {
+
+        return repository(NotificationRepository.class, (method, args) -> switch (method.getName()) {
+            case "save" -> {
+                Notification notification = (Notification) args[0];
+                notification.setId(UUID.randomUUID());
+                yield notification;
+            }
+            case "saveAll" -> {
+                List<Notification> notifications = new ArrayList<>();
+                for (Object notification : (Iterable<?>) args[0]) {
+                    ((Notification) notification).setId(UUID.randomUUID());
+                    notifications.add((Notification) notification);
+                }
+                yield notifications;
+            }
+            case "claimForSending" -> 1;
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    static OutboxRepository outboxRepository() {
+
+        return repository(OutboxRepository.class, (method, args) -> switch (method.getName()) {
+            case "save" -> {
+                OUTBOX_EVENTS.increment();
+                yield (OutboxEvent) args[0];
+            }
+            case "saveAll" -> {
+                List<OutboxEvent> events = new ArrayList<>();
+                ((Iterable<?>) args[0]).forEach(event -> events.add((OutboxEvent) event));
+                OUTBOX_EVENTS.add(events.size());
+                yield events;
+            }
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    static ProcessedEventRepository processedEventRepository() {
+
+        Map<String, ProcessedEvent> byKey = new ConcurrentHashMap<>();
+        return repository(ProcessedEventRepository.class, (method, args) -> switch (method.getName()) {
+            case "saveAndFlush" -> {
+                ProcessedEvent processed = (ProcessedEvent) args[0];
+                byKey.put(processed.getIdempotencyKey(), processed);
+                yield processed;
+            }
+            case "saveAllAndFlush" -> {
+                List<ProcessedEvent> events = new ArrayList<>();
+                for (Object processed : (Iterable<?>) args[0]) {
+                    byKey.put(((ProcessedEvent) processed).getIdempotencyKey(), (ProcessedEvent) processed);
+                    events.add((ProcessedEvent) processed);
+                }
+                yield events;
+            }
+            case "findById" -> Optional.ofNullable(byKey.get((String) args[0]));
+            case "findAllById" -> {
+                List<ProcessedEvent> events = new ArrayList<>();
+                ((Iterable<?>) args[0]).forEach(key -> Optional.ofNullable(byKey.get((String) key)).ifPresent(events::add));
+                yield events;
+            }
+            case "streamRecentKeys" -> byKey.keySet().stream();
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    static MailSender countingMailSender() {
+
+        return new MailSender() {
+            @Override
+            public void send(SimpleMailMessage simpleMessage) {
+                SENT_MAILS.increment();
+            }
+
+            @Override
+            public void send(SimpleMailMessage... simpleMessages) {
+                SENT_MAILS.add(simpleMessages.length);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T repository(Class<T> type, BiFunction<Method, Object[], Object> handler) {
+
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> "InMemory" + type.getSimpleName();
+                };
+            }
+            return handler.apply(method, args);
+        });
+    }
+
+    private static final class NoOpPreferenceChangePublisher extends PreferenceChangePublisher {
+
+        private NoOpPreferenceChangePublisher() {
+            super(null, "notification-preference.changes.v1");
+        }
+
+        @Override
+        public CompletableFuture<?> publish(NotificationPreference preference) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    // runs the real synchronization callbacks (after-commit dispatch, cache updates) without a database
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package app.benchmark;
+
+import app.model.Notification;
+import app.model.NotificationPreference;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import app.web.dto.NotificationTypeRequest;
+import app.web.mapper.DtoMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMapperBenchmark {
+
+    private Notification notification;
+    private NotificationPreference preference;
+
+    @Setup
+    public void setUp() {
+
+        notification = Notification.builder()
+                .id(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .subject("Vacation request approved")
+                .body("Your vacation from 1 to 14 August was approved by your manager.")
+                .recipient("user@example.com")
+                .createdOn(LocalDateTime.now())
+                .status(NotificationStatus.SUCCEEDED)
+                .type(NotificationType.EMAIL)
+                .build();
+        preference = BenchmarkFixtures.enabledPreferences(1).get(0);
+    }
+
+    @Benchmark
+    public Object fromNotification() {
+        return DtoMapper.fromNotification(notification);
+    }
+
+    @Benchmark
+    public Object fromNotificationKafka() {
+        return DtoMapper.fromNotificationKafka(notification);
+    }
+
+    @Benchmark
+    public Object fromNotificationPreference() {
+        return DtoMapper.fromNotificationPreference(preference);
+    }
+
+    @Benchmark
+    public Object fromNotificationPreferenceKafka() {
+        return DtoMapper.fromNotificationPreferenceKafka(preference);
+    }
+
+    @Benchmark
+    public Object fromNotificationTypeRequest() {
+        return DtoMapper.fromNotificationTypeRequest(NotificationTypeRequest.EMAIL);
+    }
+}
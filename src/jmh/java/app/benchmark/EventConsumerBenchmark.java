@@ -0,0 +1,96 @@
+package app.benchmark;
+
+import app.event.EventConsumer;
+import app.event.EventEnvelopeDeserializer;
+import app.event.EventMessage;
+import app.model.NotificationPreference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EventConsumer.consumeEvent from the deserialized event to the stored reply: eventType dispatch,
+ * the service call and the outbox write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventConsumerBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final String TOPIC = "user-event.v1";
+
+    @Param({"false", "true"})
+    public boolean asyncDispatch;
+
+    private EventEnvelopeDeserializer deserializer;
+    private EventConsumer eventConsumer;
+    private EventMessage<?>[] notificationRequests;
+    private EventMessage<?>[] upsertRequests;
+    private byte[][] rawNotificationRequests;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        ObjectMapper objectMapper = BenchmarkFixtures.objectMapper();
+        deserializer = new EventEnvelopeDeserializer();
+        List<NotificationPreference> preferences = BenchmarkFixtures.enabledPreferences(USERS);
+        eventConsumer = BenchmarkFixtures.eventConsumer(
+                BenchmarkFixtures.notificationService(BenchmarkFixtures.preferenceRepository(preferences), asyncDispatch));
+
+        notificationRequests = new EventMessage<?>[USERS];
+        upsertRequests = new EventMessage<?>[USERS];
+        rawNotificationRequests = new byte[USERS][];
+        for (int i = 0; i < USERS; i++) {
+            NotificationPreference preference = preferences.get(i);
+
+            ObjectNode notification = objectMapper.createObjectNode();
+            notification.put("eventType", "NOTIFICATION_REQUEST");
+            notification.putObject("payload")
+                    .put("userId", preference.getUserId().toString())
+                    .put("subject", "Vacation request approved")
+                    .put("body", "Your vacation from 1 to 14 August was approved by your manager.");
+            rawNotificationRequests[i] = objectMapper.writeValueAsBytes(notification);
+            notificationRequests[i] = deserializer.deserialize(TOPIC, rawNotificationRequests[i]);
+
+            ObjectNode upsert = objectMapper.createObjectNode();
+            upsert.put("eventType", "UPSERT_NOTIFICATION_PREFERENCE");
+            upsert.putObject("payload")
+                    .put("userId", preference.getUserId().toString())
+                    .put("notificationEnabled", true)
+                    .put("type", "EMAIL")
+                    .put("contactInfo", preference.getContactInfo());
+            upsertRequests[i] = deserializer.deserialize(TOPIC, objectMapper.writeValueAsBytes(upsert));
+        }
+    }
+
+    @Benchmark
+    public void notificationRequest() {
+        eventConsumer.consumeEvent(notificationRequests[nextIndex()]);
+    }
+
+    // includes the work of the Kafka value deserializer
+    @Benchmark
+    public void notificationRequestFromBytes() {
+        eventConsumer.consumeEvent(deserializer.deserialize(TOPIC, rawNotificationRequests[nextIndex()]));
+    }
+
+    @Benchmark
+    public void upsertPreference() {
+        eventConsumer.consumeEvent(upsertRequests[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == USERS ? 0 : index + 1;
+        return index;
+    }
+}
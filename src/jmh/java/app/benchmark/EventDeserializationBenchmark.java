@@ -0,0 +1,73 @@
+package app.benchmark;
+
+import app.event.EventEnvelopeDeserializer;
+import app.event.EventMessage;
+import app.web.dto.NotificationRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * From record bytes to a typed NotificationRequest: the former JsonDeserializer to JsonNode plus
+ * convertValue in the consumer, against the single pass of EventEnvelopeDeserializer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDeserializationBenchmark {
+
+    private static final String TOPIC = "user-event.v1";
+
+    private JsonDeserializer<JsonNode> treeDeserializer;
+    private ObjectMapper objectMapper;
+    private EventEnvelopeDeserializer envelopeDeserializer;
+    private byte[] eventTypeFirst;
+    private byte[] payloadFirst;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        treeDeserializer = new JsonDeserializer<>(JsonNode.class);
+        objectMapper = BenchmarkFixtures.objectMapper();
+        envelopeDeserializer = new EventEnvelopeDeserializer();
+
+        ObjectNode payload = objectMapper.createObjectNode()
+                .put("userId", UUID.randomUUID().toString())
+                .put("subject", "Vacation request approved")
+                .put("body", "Your vacation from 1 to 14 August was approved by your manager.");
+        ObjectNode event = objectMapper.createObjectNode().put("eventType", "NOTIFICATION_REQUEST");
+        event.set("payload", payload);
+        eventTypeFirst = objectMapper.writeValueAsBytes(event);
+
+        ObjectNode reversed = objectMapper.createObjectNode();
+        reversed.set("payload", payload);
+        reversed.put("eventType", "NOTIFICATION_REQUEST");
+        payloadFirst = objectMapper.writeValueAsBytes(reversed);
+    }
+
+    @Benchmark
+    public NotificationRequest treeAndConvertValue() {
+        JsonNode event = treeDeserializer.deserialize(TOPIC, eventTypeFirst);
+        event.path("eventType").asText(null);
+        return objectMapper.convertValue(event.path("payload"), NotificationRequest.class);
+    }
+
+    @Benchmark
+    public EventMessage<?> envelope() {
+        return envelopeDeserializer.deserialize(TOPIC, eventTypeFirst);
+    }
+
+    @Benchmark
+    public EventMessage<?> envelopePayloadFirst() {
+        return envelopeDeserializer.deserialize(TOPIC, payloadFirst);
+    }
+}
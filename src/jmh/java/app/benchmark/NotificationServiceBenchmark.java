@@ -0,0 +1,76 @@
+package app.benchmark;
+
+import app.model.Notification;
+import app.model.NotificationPreference;
+import app.service.NotificationService;
+import app.web.dto.NotificationRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NotificationService.sendNotification against in-memory repositories and a mail sender that only
+ * counts, in synchronous and asynchronous dispatch mode, next to the batched path of the batch listener.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotificationServiceBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"false", "true"})
+    public boolean asyncDispatch;
+
+    private NotificationService notificationService;
+    private NotificationRequest[] requests;
+    private int next;
+
+    @Setup
+    public void setUp() {
+
+        List<NotificationPreference> preferences = BenchmarkFixtures.enabledPreferences(USERS);
+        notificationService = BenchmarkFixtures.notificationService(
+                BenchmarkFixtures.preferenceRepository(preferences), asyncDispatch);
+
+        requests = new NotificationRequest[USERS];
+        for (int i = 0; i < USERS; i++) {
+            requests[i] = NotificationRequest.builder()
+                    .userId(preferences.get(i).getUserId())
+                    .subject("Vacation request approved")
+                    .body("Your vacation from 1 to 14 August was approved by your manager.")
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public Notification sendNotification() {
+        NotificationRequest request = requests[next];
+        next = next + 1 == USERS ? 0 : next + 1;
+        return notificationService.sendNotification(request);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Notification> sendNotificationBatch() {
+
+        int from = next;
+        next = from + BATCH_SIZE >= USERS ? 0 : from + BATCH_SIZE;
+        List<NotificationRequest> batch = Arrays.asList(requests).subList(from, from + BATCH_SIZE);
+
+        Set<UUID> userIds = new HashSet<>();
+        batch.forEach(request -> userIds.add(request.getUserId()));
+        Map<UUID, NotificationPreference> preferences = notificationService.getPreferencesByUserIds(userIds);
+
+        List<Notification> notifications = new ArrayList<>(BATCH_SIZE);
+        for (NotificationRequest request : batch) {
+            notifications.add(notificationService.prepareNotification(request, preferences.get(request.getUserId())));
+        }
+        return notificationService.saveNotifications(notifications);
+    }
+}
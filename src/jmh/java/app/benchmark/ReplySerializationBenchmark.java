@@ -0,0 +1,84 @@
+package app.benchmark;
+
+import app.event.EventMessage;
+import app.event.ReplyOutbox;
+import app.event.payload.NotificationPreferenceResponseKafka;
+import app.event.payload.NotificationResponseKafka;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import app.model.OutboxEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reply serialization through the JsonSerializer of the reply producer, directly and via the outbox
+ * (payload written to the table, read back by the relay and serialized again).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplySerializationBenchmark {
+
+    private static final String REPLY_TOPIC = "user-event.reply.v1";
+
+    private JsonSerializer<EventMessage<?>> serializer;
+    private ReplyOutbox replyOutbox;
+    private ObjectMapper relayObjectMapper;
+    private NotificationResponseKafka notificationResponse;
+    private NotificationPreferenceResponseKafka preferenceResponse;
+
+    @Setup
+    public void setUp() {
+
+        // configured like spring.kafka.producer.value-serializer with spring.json.add.type.headers=false
+        serializer = new JsonSerializer<>();
+        serializer.configure(Map.of(JsonSerializer.ADD_TYPE_INFO_HEADERS, false), false);
+        replyOutbox = new ReplyOutbox(null, REPLY_TOPIC);
+        relayObjectMapper = JacksonUtils.enhancedObjectMapper();
+
+        notificationResponse = NotificationResponseKafka.builder()
+                .id(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .subject("Vacation request approved")
+                .createdOn(LocalDateTime.now())
+                .status(NotificationStatus.SUCCEEDED)
+                .type(NotificationType.EMAIL)
+                .build();
+        preferenceResponse = NotificationPreferenceResponseKafka.builder()
+                .id(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .type(NotificationType.EMAIL)
+                .enabled(true)
+                .contactInfo("user@example.com")
+                .build();
+    }
+
+    @Benchmark
+    public byte[] notificationReply() {
+        return serializer.serialize(REPLY_TOPIC, new EventMessage<>("NOTIFICATION_RESPONSE", notificationResponse));
+    }
+
+    @Benchmark
+    public byte[] preferenceReply() {
+        return serializer.serialize(REPLY_TOPIC, new EventMessage<>("NOTIFICATION_PREFERENCE_RESPONSE", preferenceResponse));
+    }
+
+    @Benchmark
+    public byte[] notificationReplyThroughOutbox() throws IOException {
+        OutboxEvent event = replyOutbox.toOutboxEvent("NOTIFICATION_RESPONSE", notificationResponse.getUserId(), notificationResponse);
+        JsonNode payload = relayObjectMapper.readTree(event.getPayload());
+        return serializer.serialize(event.getTopic(), new EventMessage<>(event.getEventType(), payload));
+    }
+}
@@ -0,0 +1,129 @@
+package app.load;
+
+import app.service.NotificationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static app.TestBuilder.aRandomNotificationPreference;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Fires more concurrent requests than Tomcat has worker threads at an endpoint whose handler blocks, as
+ * it would on a slow database or mail server, and measures how many handlers were waiting at once, in
+ * the synchronous mode and in the async mode. Two web servers on random ports take a while, so it runs with
+ * the load profile only: mvn test -Pload -Dtest=ControllerConcurrencyLoadTest
+ */
+public class ControllerConcurrencyLoadTest {
+
+    private static final int SERVLET_THREADS = 4;
+    private static final int REQUESTS = 32;
+    private static final String SERVER = "server.tomcat.threads.max=4";
+    private static final String SPARE = "server.tomcat.threads.min-spare=4";
+    private static final String IO_POOL = "app.web.io.pool-size=32";
+    private static final String MAIL_USERNAME = "spring.mail.username=test";
+    private static final String MAIL_PASSWORD = "spring.mail.password=test";
+    // no broker in the test: no topic creation, no listener started
+    private static final String NO_TOPICS = "spring.kafka.admin.auto-create=false";
+    private static final String NO_LISTENERS = "app.kafka.listener.mode=none";
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+
+    @Nested
+    @ActiveProfiles("test")
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = {SERVER, SPARE, IO_POOL, MAIL_USERNAME, MAIL_PASSWORD, NO_TOPICS, NO_LISTENERS, "app.web.io.async=false"})
+    class SyncMode {
+
+        @MockitoBean
+        private NotificationService notificationService;
+
+        @LocalServerPort
+        private int port;
+
+        @BeforeEach
+        void setUp() {
+            blockOnPreferenceLookup(notificationService);
+        }
+
+        @Test
+        void givenMoreConcurrentRequestsThanServletThreads_whenGet_thenHandlersAreCappedByServletThreads() throws Exception {
+
+            assertEquals(REQUESTS, sendConcurrently(port));
+            assertTrue(peak.get() <= SERVLET_THREADS, "peak " + peak.get());
+        }
+    }
+
+    @Nested
+    @ActiveProfiles("test")
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = {SERVER, SPARE, IO_POOL, MAIL_USERNAME, MAIL_PASSWORD, NO_TOPICS, NO_LISTENERS, "app.web.io.async=true"})
+    class AsyncMode {
+
+        @MockitoBean
+        private NotificationService notificationService;
+
+        @LocalServerPort
+        private int port;
+
+        @BeforeEach
+        void setUp() {
+            blockOnPreferenceLookup(notificationService);
+        }
+
+        @Test
+        void givenMoreConcurrentRequestsThanServletThreads_whenGet_thenHandlersAreNotCappedByServletThreads() throws Exception {
+
+            assertEquals(REQUESTS, sendConcurrently(port));
+            assertTrue(peak.get() > SERVLET_THREADS, "peak " + peak.get());
+        }
+    }
+
+    private void blockOnPreferenceLookup(NotificationService notificationService) {
+
+        when(notificationService.getPreferenceByUserId(any())).thenAnswer(invocation -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(300);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return aRandomNotificationPreference();
+        });
+    }
+
+    // returns the number of 200 responses
+    private static int sendConcurrently(int port) throws Exception {
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(
+                    "http://localhost:%d/api/v1/notifications/preferences?userId=%s".formatted(port, UUID.randomUUID()))).build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        int ok = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            ok += response.get().statusCode() == 200 ? 1 : 0;
+        }
+        return ok;
+    }
+}
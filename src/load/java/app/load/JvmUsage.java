@@ -0,0 +1,78 @@
+package app.load;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Heap and GC of this JVM, which runs the service and the harness alike, over the measured phase: the
+ * highest heap use sampled every 100 ms, the heap still used after a full GC at the end (what a soak
+ * run would see grow), and the collections with the share of the time they took.
+ */
+class JvmUsage implements AutoCloseable {
+
+    private static final long MB = 1024 * 1024;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jvm-usage");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong heapUsedMax = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private final long startGcCount = totalGcCount();
+    private final long startGcMillis = totalGcMillis();
+    private long gcCountDelta;
+    private long gcMillisDelta;
+    private long elapsedNanos;
+
+    JvmUsage() {
+        sampler.scheduleAtFixedRate(() -> heapUsedMax.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 100, TimeUnit.MILLISECONDS);
+    }
+
+    // ends the measured phase; the full GC of heapAfterGcMb is not counted
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+        elapsedNanos = System.nanoTime() - startNanos;
+        gcCountDelta = totalGcCount() - startGcCount;
+        gcMillisDelta = totalGcMillis() - startGcMillis;
+    }
+
+    long heapUsedMaxMb() {
+        return heapUsedMax.get() / MB;
+    }
+
+    long heapAfterGcMb() {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed() / MB;
+    }
+
+    long gcCount() {
+        return gcCountDelta;
+    }
+
+    double gcTimeShare() {
+        return elapsedNanos == 0 ? 0 : gcMillisDelta / (elapsedNanos / 1e6);
+    }
+
+    private static long totalGcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .filter(count -> count > 0)
+                .sum();
+    }
+
+    private static long totalGcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .filter(time -> time > 0)
+                .sum();
+    }
+}
@@ -0,0 +1,70 @@
+package app.load;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of the measured phase of a load run. Latencies are in milliseconds, throughput in replies
+ * per second.
+ */
+record LoadReport(long sent,
+                  long replied,
+                  long errors,
+                  long lost,
+                  double throughput,
+                  double p50,
+                  double p99,
+                  double p999,
+                  double max,
+                  long heapUsedMaxMb,
+                  long heapAfterGcMb,
+                  long gcCount,
+                  double gcTimeShare,
+                  long emailsDelivered,
+                  long emailsRejected) {
+
+    // scheduling noise a fast baseline can't absorb as a percentage
+    private static final double LATENCY_SLACK_MS = 5;
+    private static final long HEAP_SLACK_MB = 16;
+    private static final double GC_TIME_SHARE_SLACK = 0.01;
+
+    /**
+     * What got worse than the baseline by more than tolerance (0.2 = 20 %), or by more than tailTolerance
+     * for p99 and p999, which vary far more between two runs than the rest; empty if nothing did.
+     */
+    List<String> regressionsAgainst(LoadReport baseline, double tolerance, double tailTolerance) {
+
+        List<String> regressions = new ArrayList<>();
+        if (throughput < baseline.throughput * (1 - tolerance)) {
+            regressions.add("throughput %.1f/s is below baseline %.1f/s".formatted(throughput, baseline.throughput));
+        }
+        checkAtMost(regressions, "p50 latency", p50, baseline.p50 * (1 + tolerance) + LATENCY_SLACK_MS, baseline.p50);
+        checkAtMost(regressions, "p99 latency", p99, baseline.p99 * (1 + tailTolerance) + LATENCY_SLACK_MS, baseline.p99);
+        checkAtMost(regressions, "p999 latency", p999, baseline.p999 * (1 + tailTolerance) + LATENCY_SLACK_MS, baseline.p999);
+        checkAtMost(regressions, "max heap used (MB)", heapUsedMaxMb,
+                baseline.heapUsedMaxMb * (1 + tolerance) + HEAP_SLACK_MB, baseline.heapUsedMaxMb);
+        checkAtMost(regressions, "heap after GC (MB)", heapAfterGcMb,
+                baseline.heapAfterGcMb * (1 + tolerance) + HEAP_SLACK_MB, baseline.heapAfterGcMb);
+        checkAtMost(regressions, "GC time share", gcTimeShare,
+                baseline.gcTimeShare * (1 + tolerance) + GC_TIME_SHARE_SLACK, baseline.gcTimeShare);
+        return regressions;
+    }
+
+    String format() {
+
+        return """
+                sent %d, replied %d, errors %d, lost %d
+                throughput %.1f replies/s
+                latency p50 %.1f ms, p99 %.1f ms, p999 %.1f ms, max %.1f ms
+                heap used max %d MB, after GC %d MB; %d GCs taking %.2f %% of the time
+                emails delivered %d, rejected %d""".formatted(
+                sent, replied, errors, lost, throughput, p50, p99, p999, max,
+                heapUsedMaxMb, heapAfterGcMb, gcCount, 100 * gcTimeShare, emailsDelivered, emailsRejected);
+    }
+
+    private static void checkAtMost(List<String> regressions, String metric, double value, double limit, double baseline) {
+        if (value > limit) {
+            regressions.add("%s %.2f exceeds baseline %.2f".formatted(metric, value, baseline));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package app.load;
+
+import java.time.Duration;
+
+/**
+ * What a load run offers the service, read from -Dload.* system properties. A baseline is only
+ * comparable to runs with the same settings, so they are stored with it.
+ */
+record LoadSettings(String scenario,
+                    int rate,
+                    Duration warmUp,
+                    Duration duration,
+                    int users,
+                    double notificationShare,
+                    Duration smtpLatency,
+                    double smtpFailureRate,
+                    String listenerMode,
+                    long seed) {
+
+    static LoadSettings fromSystemProperties() {
+
+        LoadSettings settings = new LoadSettings(
+                System.getProperty("load.scenario", "default"),
+                Integer.getInteger("load.rate", 50),
+                Duration.parse(System.getProperty("load.warm-up", "PT15S")),
+                Duration.parse(System.getProperty("load.duration", "PT60S")),
+                Integer.getInteger("load.users", 1000),
+                Double.parseDouble(System.getProperty("load.mix.notification", "0.8")),
+                Duration.parse(System.getProperty("load.smtp.latency", "PT0.05S")),
+                Double.parseDouble(System.getProperty("load.smtp.failure-rate", "0.01")),
+                System.getProperty("load.listener-mode", "record"),
+                Long.getLong("load.seed", 42));
+        if (settings.rate <= 0 || settings.users <= 0) {
+            throw new IllegalArgumentException("load.rate and load.users must be positive");
+        }
+        if (settings.notificationShare < 0 || settings.notificationShare > 1
+                || settings.smtpFailureRate < 0 || settings.smtpFailureRate > 1) {
+            throw new IllegalArgumentException("load.mix.notification and load.smtp.failure-rate must be within [0, 1]");
+        }
+        return settings;
+    }
+}
@@ -0,0 +1,285 @@
+package app.load;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives one instance of the service end to end: events go to the input topic at a fixed rate, the
+ * service stores them in H2 and sends emails to {@link SmtpStandIn}, and the replies are taken off the
+ * reply topic. After a warm-up the measured phase reports throughput, reply latency and heap and GC use,
+ * writes them to target/load/&lt;scenario&gt;.json and fails on a regression against
+ * src/load/baselines/&lt;scenario&gt;.json.
+ * <p>
+ * Settings are system properties (see {@link LoadSettings}), plus load.drain-timeout for the wait on the
+ * last replies, load.tolerance and load.tail-tolerance (p99, p999) for the regression check, and
+ * load.baseline.update=true to record the run as the new baseline. Baselines only hold for the machine
+ * and heap they were recorded on.
+ */
+@ActiveProfiles({"test", "load"})
+@SpringBootTest
+@EmbeddedKafka(partitions = 3, topics = {"user-event.v1", "user-event.reply.v1"})
+@Slf4j
+class LoadTest {
+
+    private static final LoadSettings SETTINGS = LoadSettings.fromSystemProperties();
+    private static final Duration DRAIN_TIMEOUT = Duration.parse(System.getProperty("load.drain-timeout", "PT2M"));
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("load.tolerance", "0.25"));
+    private static final double TAIL_TOLERANCE = Double.parseDouble(System.getProperty("load.tail-tolerance", "1.0"));
+    private static final boolean UPDATE_BASELINE = Boolean.getBoolean("load.baseline.update");
+    private static final Path BASELINES = Path.of("src/load/baselines");
+    private static final Path REPORTS = Path.of("target/load");
+    private static final SmtpStandIn SMTP = new SmtpStandIn(SETTINGS.smtpLatency(), SETTINGS.smtpFailureRate());
+
+    record Run(LoadSettings settings, LoadReport report) {
+    }
+
+    private record Event(String userId, String replyType, String json) {
+    }
+
+    private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper()
+            .disable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS)
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    @Value("${app.kafka.input-topic}")
+    private String inputTopic;
+
+    @Value("${app.kafka.reply-topic}")
+    private String replyTopic;
+
+    @DynamicPropertySource
+    static void smtpStandIn(DynamicPropertyRegistry registry) {
+        registry.add("spring.mail.port", SMTP::port);
+    }
+
+    @AfterAll
+    static void stopSmtpStandIn() throws IOException {
+        SMTP.close();
+    }
+
+    @Test
+    void givenConfiguredLoad_whenDriven_thenAllRepliedWithoutRegression() throws Exception {
+
+        Random random = new Random(SETTINGS.seed());
+        List<String> users = new ArrayList<>(SETTINGS.users());
+        for (int i = 0; i < SETTINGS.users(); i++) {
+            users.add(new UUID(random.nextLong(), random.nextLong()).toString());
+        }
+        ReplyTracker tracker = new ReplyTracker();
+        LoadReport report;
+
+        try (Producer<String, String> producer = producer(); ReplyListener ignored = new ReplyListener(tracker)) {
+            // every user has a preference before the first notification, so notifications go out by email
+            long now = System.nanoTime();
+            for (String user : users) {
+                send(producer, tracker, upsert(random, user), now, false);
+            }
+            awaitReplies(tracker);
+            drive(producer, tracker, random, users, SETTINGS.warmUp(), false);
+            awaitReplies(tracker);
+
+            long deliveredBefore = SMTP.delivered();
+            long rejectedBefore = SMTP.rejected();
+            JvmUsage jvm = new JvmUsage();
+            long start = System.nanoTime();
+            drive(producer, tracker, random, users, SETTINGS.duration(), true);
+            awaitReplies(tracker);
+            jvm.close();
+
+            double seconds = Math.max(tracker.lastMeasuredReplyNanos() - start, 1) / 1e9;
+            report = new LoadReport(
+                    tracker.measuredSent(),
+                    tracker.measuredReplied(),
+                    tracker.errors(),
+                    tracker.measuredSent() - tracker.measuredReplied(),
+                    tracker.measuredReplied() / seconds,
+                    tracker.latencyAtPercentile(50),
+                    tracker.latencyAtPercentile(99),
+                    tracker.latencyAtPercentile(99.9),
+                    tracker.maxLatency(),
+                    jvm.heapUsedMaxMb(),
+                    jvm.heapAfterGcMb(),
+                    jvm.gcCount(),
+                    jvm.gcTimeShare(),
+                    SMTP.delivered() - deliveredBefore,
+                    SMTP.rejected() - rejectedBefore);
+        }
+
+        String scenario = SETTINGS.scenario();
+        write(REPORTS.resolve(scenario + ".json"), new Run(SETTINGS, report));
+        log.info("Load run {} at {} events/s for {}:\n{}", scenario, SETTINGS.rate(), SETTINGS.duration(), report.format());
+
+        assertEquals(0, report.lost(), "events without a reply");
+        assertEquals(0, report.errors(), "events answered with an error");
+        assertEquals(0, tracker.unmatched(), "replies to no event sent");
+
+        Path baselinePath = BASELINES.resolve(scenario + ".json");
+        if (UPDATE_BASELINE) {
+            write(baselinePath, new Run(SETTINGS, report));
+            log.info("Recorded {} as the baseline of scenario {}", baselinePath, scenario);
+            return;
+        }
+        assertTrue(Files.exists(baselinePath),
+                "No baseline for scenario %s, record one with -Dload.baseline.update=true".formatted(scenario));
+        Run baseline = objectMapper.readValue(baselinePath.toFile(), Run.class);
+        assertEquals(baseline.settings(), SETTINGS, "the baseline of scenario %s was recorded with other settings".formatted(scenario));
+
+        List<String> regressions = report.regressionsAgainst(baseline.report(), TOLERANCE, TAIL_TOLERANCE);
+        assertTrue(regressions.isEmpty(), () -> "Regressed against the baseline of scenario %s: %s"
+                .formatted(scenario, String.join("; ", regressions)));
+    }
+
+    // open loop: event i is due at start + i / rate however long the ones before took
+    private void drive(Producer<String, String> producer, ReplyTracker tracker, Random random,
+                       List<String> users, Duration length, boolean measured) throws JsonProcessingException {
+
+        long interval = 1_000_000_000L / SETTINGS.rate();
+        long start = System.nanoTime();
+        long end = start + length.toNanos();
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String user = users.get(random.nextInt(users.size()));
+            Event event = random.nextDouble() < SETTINGS.notificationShare()
+                    ? notificationRequest(random, user)
+                    : upsert(random, user);
+            send(producer, tracker, event, due, measured);
+        }
+    }
+
+    private void send(Producer<String, String> producer, ReplyTracker tracker, Event event, long due, boolean measured) {
+
+        tracker.sent(event.userId(), event.replyType(), due, measured);
+        producer.send(new ProducerRecord<>(inputTopic, event.userId(), event.json()));
+    }
+
+    private void awaitReplies(ReplyTracker tracker) throws InterruptedException {
+
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (tracker.outstanding() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private Event notificationRequest(Random random, String user) throws JsonProcessingException {
+
+        ObjectNode event = objectMapper.createObjectNode();
+        event.put("eventType", "NOTIFICATION_REQUEST");
+        event.putObject("payload")
+                .put("userId", user)
+                .put("subject", "Vacation request approved")
+                .put("body", "Your vacation from 1 to 14 August was approved by your manager.")
+                .put("idempotencyKey", new UUID(random.nextLong(), random.nextLong()).toString());
+        return new Event(user, "NOTIFICATION_RESPONSE", objectMapper.writeValueAsString(event));
+    }
+
+    private Event upsert(Random random, String user) throws JsonProcessingException {
+
+        ObjectNode event = objectMapper.createObjectNode();
+        event.put("eventType", "UPSERT_NOTIFICATION_PREFERENCE");
+        event.putObject("payload")
+                .put("userId", user)
+                .put("notificationEnabled", true)
+                .put("type", "EMAIL")
+                .put("contactInfo", "user-" + user + "@load.test")
+                .put("idempotencyKey", new UUID(random.nextLong(), random.nextLong()).toString());
+        return new Event(user, "NOTIFICATION_PREFERENCE_RESPONSE", objectMapper.writeValueAsString(event));
+    }
+
+    private Producer<String, String> producer() {
+
+        Map<String, Object> props = KafkaTestUtils.producerProps(broker);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        return new DefaultKafkaProducerFactory<>(props, new StringSerializer(), new StringSerializer()).createProducer();
+    }
+
+    private void write(Path path, Run run) throws IOException {
+
+        Files.createDirectories(path.getParent());
+        objectMapper.writeValue(path.toFile(), run);
+    }
+
+    /**
+     * Takes the replies off the reply topic on its own thread and hands them to the tracker.
+     */
+    private class ReplyListener implements AutoCloseable {
+
+        private final Consumer<String, String> consumer;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        ReplyListener(ReplyTracker tracker) {
+
+            Map<String, Object> props = KafkaTestUtils.consumerProps("load-harness", "false", broker);
+            props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+            consumer = new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new StringDeserializer()).createConsumer();
+            consumer.subscribe(List.of(replyTopic));
+            thread = new Thread(() -> {
+                while (running) {
+                    for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(100))) {
+                        long received = System.nanoTime();
+                        try {
+                            JsonNode reply = objectMapper.readTree(record.value());
+                            tracker.replied(record.key(), reply.path("eventType").asText(),
+                                    reply.path("payload").path("success").asBoolean(true), received);
+                        } catch (JsonProcessingException e) {
+                            log.warn("Unreadable reply at offset {}: {}", record.offset(), e.getMessage());
+                        }
+                    }
+                }
+            }, "load-replies");
+            thread.start();
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            running = false;
+            thread.join();
+            consumer.close();
+        }
+    }
+}
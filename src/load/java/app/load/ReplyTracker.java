@@ -0,0 +1,96 @@
+package app.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Matches replies to the events they answer. Replies carry no event id, only the userId as key, but the
+ * service answers the events of one user in order per reply type, so the oldest unanswered event of that
+ * user and type is the one answered.
+ * <p>
+ * Latency runs from the time an event was due to be sent, not from when the driver got to send it, so
+ * a stalled driver shows up as latency instead of hiding it (coordinated omission).
+ */
+class ReplyTracker {
+
+    private record Sent(long dueNanos, boolean measured) {
+    }
+
+    private final Map<String, Queue<Sent>> inFlight = new ConcurrentHashMap<>();
+    private final Histogram latencies = new ConcurrentHistogram(3);
+    private final AtomicLong outstanding = new AtomicLong();
+    private final AtomicLong measuredSent = new AtomicLong();
+    private final AtomicLong measuredReplied = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong unmatched = new AtomicLong();
+    private volatile long lastMeasuredReplyNanos;
+
+    void sent(String userId, String replyType, long dueNanos, boolean measured) {
+
+        inFlight.computeIfAbsent(userId + '/' + replyType, key -> new ConcurrentLinkedQueue<>())
+                .add(new Sent(dueNanos, measured));
+        outstanding.incrementAndGet();
+        if (measured) {
+            measuredSent.incrementAndGet();
+        }
+    }
+
+    void replied(String userId, String replyType, boolean success, long receivedNanos) {
+
+        Queue<Sent> sent = inFlight.get(userId + '/' + replyType);
+        Sent answered = sent == null ? null : sent.poll();
+        if (answered == null) {
+            unmatched.incrementAndGet();
+            return;
+        }
+        outstanding.decrementAndGet();
+        if (!success) {
+            errors.incrementAndGet();
+        }
+        if (answered.measured()) {
+            latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(receivedNanos - answered.dueNanos()));
+            measuredReplied.incrementAndGet();
+            lastMeasuredReplyNanos = receivedNanos;
+        }
+    }
+
+    long outstanding() {
+        return outstanding.get();
+    }
+
+    long measuredSent() {
+        return measuredSent.get();
+    }
+
+    long measuredReplied() {
+        return measuredReplied.get();
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    long unmatched() {
+        return unmatched.get();
+    }
+
+    long lastMeasuredReplyNanos() {
+        return lastMeasuredReplyNanos;
+    }
+
+    // in milliseconds
+    double latencyAtPercentile(double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    double maxLatency() {
+        return latencies.getMaxValue() / 1000.0;
+    }
+}
@@ -0,0 +1,141 @@
+package app.load;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Just enough of an SMTP server for the mail senders: accepts every command, and answers each message
+ * after latency with 250, or with a transient 451 at failure-rate. Messages are counted, not kept, so
+ * a long soak run doesn't fill the heap it measures.
+ */
+@Slf4j
+class SmtpStandIn implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "smtp-stand-in");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Duration latency;
+    private final double failureRate;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    SmtpStandIn(Duration latency, double failureRate) {
+        this.latency = latency;
+        this.failureRate = failureRate;
+        try {
+            this.serverSocket = new ServerSocket(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        connections.execute(this::accept);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    long delivered() {
+        return delivered.get();
+    }
+
+    long rejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    private void accept() {
+
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> converse(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("SMTP stand-in failed to accept a connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void converse(Socket socket) {
+
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+
+            reply(out, "220 localhost SMTP stand-in");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() < 4 ? line : line.substring(0, 4).toUpperCase(Locale.ROOT);
+                switch (command) {
+                    case "EHLO", "HELO" -> reply(out, "250 localhost");
+                    case "MAIL", "RCPT", "RSET", "NOOP" -> reply(out, "250 OK");
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        readMessage(in);
+                        reply(out, deliver());
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (SocketException e) {
+            // the sender closed or evicted the connection
+        } catch (IOException e) {
+            log.warn("SMTP stand-in connection failed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String deliver() throws InterruptedException {
+
+        Thread.sleep(latency.toMillis());
+        if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+            rejected.incrementAndGet();
+            return "451 4.3.0 Injected failure, try again later";
+        }
+        delivered.incrementAndGet();
+        return "250 OK queued";
+    }
+
+    private static void readMessage(BufferedReader in) throws IOException {
+
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(".")) {
+            // discarded
+        }
+    }
+
+    private static void reply(OutputStream out, String reply) throws IOException {
+
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
@@ -0,0 +1,91 @@
+package app.config;
+
+import app.model.NotificationType;
+import app.service.ChannelBulkhead;
+import app.service.FileNotificationChannel;
+import app.service.InMemoryNotificationChannel;
+import app.service.NotificationChannel;
+import app.service.NotificationChannels;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The notification channels and their bulkheads, configured per channel under
+ * app.notifications.channels.{email,sms,mobile}. SMS and MOBILE have no real gateway yet; their provider
+ * is an in-memory or file-backed stand-in.
+ */
+@Configuration
+public class ChannelConfiguration {
+
+    @Bean
+    public NotificationChannel smsChannel(
+            @Value("${app.notifications.channels.sms.provider:memory}") String provider,
+            @Value("${app.notifications.channels.sms.file:channels/sms.ndjson}") Path file,
+            ObjectMapper objectMapper) {
+        return standIn(NotificationType.SMS, provider, file, objectMapper);
+    }
+
+    @Bean
+    public NotificationChannel mobileChannel(
+            @Value("${app.notifications.channels.mobile.provider:memory}") String provider,
+            @Value("${app.notifications.channels.mobile.file:channels/mobile.ndjson}") Path file,
+            ObjectMapper objectMapper) {
+        return standIn(NotificationType.MOBILE, provider, file, objectMapper);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public NotificationChannels notificationChannels(List<NotificationChannel> channels,
+                                                     Environment environment,
+                                                     MeterRegistry meterRegistry) {
+
+        Binder binder = Binder.get(environment);
+        return new NotificationChannels(channels.stream().map(channel -> {
+            String name = channel.type().name().toLowerCase(Locale.ROOT);
+            BulkheadSettings settings = binder.bind("app.notifications.channels." + name, BulkheadSettings.class)
+                    .orElseGet(BulkheadSettings::new);
+
+            ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(settings.getPoolSize());
+            executor.setMaxPoolSize(settings.getPoolSize());
+            executor.setQueueCapacity(settings.getQueueCapacity());
+            executor.setThreadNamePrefix("notification-" + name + "-");
+            executor.setWaitForTasksToCompleteOnShutdown(true);
+            executor.setAwaitTerminationSeconds(30);
+            executor.initialize();
+
+            return new ChannelBulkhead(channel, executor, settings.getMaxConcurrency(), settings.getBatchSize(),
+                    settings.getTimeout(), meterRegistry);
+        }).toList());
+    }
+
+    private static NotificationChannel standIn(NotificationType type, String provider, Path file, ObjectMapper objectMapper) {
+
+        return switch (provider) {
+            case "memory" -> new InMemoryNotificationChannel(type, 1000);
+            case "file" -> new FileNotificationChannel(type, file, objectMapper);
+            default -> throw new IllegalArgumentException("Unknown %s channel provider %s".formatted(type, provider));
+        };
+    }
+
+    @Data
+    public static class BulkheadSettings {
+
+        private int poolSize = 2;
+        private int queueCapacity = 500;
+        private int maxConcurrency = 2;
+        private int batchSize = 50;
+        private Duration timeout = Duration.ofSeconds(10);
+    }
+}
@@ -0,0 +1,95 @@
+package app.config;
+
+import app.event.UnprocessableEventException;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Configuration
+public class KafkaListenerConfiguration {
+
+    /**
+     * Listener factory for app.kafka.listener.mode=batch. Hands the whole poll to the listener
+     * and commits the offsets once, after the batch was processed.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        return factory;
+    }
+
+    /**
+     * Listener factory for app.kafka.listener.mode=parallel. Records are handed to worker lanes and
+     * acknowledged when done; with async acks the container commits a partition only up to the lowest
+     * offset below which every record was acknowledged, and pauses fetching until the poll is drained.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> parallelKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        return factory;
+    }
+
+    /**
+     * Publishes records that cannot be processed to {@code <topic><suffix>}, with their original headers plus
+     * the kafka_dlt-* headers describing the failure. Records that failed deserialization are published
+     * with their original bytes.
+     */
+    @Bean
+    public DeadLetterPublishingRecoverer deadLetterPublishingRecoverer(
+            KafkaTemplate<Object, Object> kafkaTemplate,
+            @Value("${app.kafka.dead-letter-suffix:.DLT}") String deadLetterSuffix) {
+
+        KafkaTemplate<Object, Object> bytesTemplate = new KafkaTemplate<>(kafkaTemplate.getProducerFactory(),
+                Map.of(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class));
+        Map<Class<?>, KafkaOperations<?, ?>> templates = new LinkedHashMap<>();
+        templates.put(byte[].class, bytesTemplate);
+        templates.put(Object.class, kafkaTemplate);
+        // no partition: the dead-letter topic may have fewer partitions than the source topic
+        return new DeadLetterPublishingRecoverer(templates,
+                (record, e) -> new TopicPartition(record.topic() + deadLetterSuffix, -1));
+    }
+
+    /**
+     * Error handler of all listener containers: a listener that throws is retried a few times and the
+     * record is then dead-lettered; unprocessable and undeserializable records are dead-lettered at once.
+     */
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler(
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer,
+            @Value("${app.kafka.listener.retry.attempts:2}") long attempts,
+            @Value("${app.kafka.listener.retry.backoff:PT1S}") Duration backoff) {
+
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(
+                deadLetterPublishingRecoverer, new FixedBackOff(backoff.toMillis(), attempts));
+        errorHandler.addNotRetryableExceptions(UnprocessableEventException.class);
+        return errorHandler;
+    }
+}
@@ -0,0 +1,29 @@
+package app.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+public class KafkaTopicConfiguration {
+
+    @Bean
+    public NewTopic preferenceTopic(@Value("${app.kafka.preference-topic}") String topic) {
+
+        return TopicBuilder.name(topic)
+                .partitions(3)
+                .compact()
+                .build();
+    }
+
+    @Bean
+    public NewTopic inputDeadLetterTopic(@Value("${app.kafka.input-topic}") String inputTopic,
+                                         @Value("${app.kafka.dead-letter-suffix:.DLT}") String deadLetterSuffix) {
+
+        return TopicBuilder.name(inputTopic + deadLetterSuffix)
+                .partitions(3)
+                .build();
+    }
+}
@@ -0,0 +1,60 @@
+package app.config;
+
+import app.service.PooledJavaMailSender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Properties;
+
+@Configuration
+@EnableConfigurationProperties(MailProperties.class)
+public class MailConfiguration {
+
+    /**
+     * Replaces Boot's JavaMailSenderImpl (which connects per send) with a pool of authenticated
+     * SMTP connections, configured from the same spring.mail.* properties.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.mail.pool.enabled", havingValue = "true")
+    public PooledJavaMailSender pooledJavaMailSender(
+            MailProperties mailProperties,
+            MeterRegistry meterRegistry,
+            @Value("${app.mail.pool.max-connections:4}") int maxConnections,
+            @Value("${app.mail.pool.idle-timeout:PT1M}") Duration idleTimeout,
+            @Value("${app.mail.pool.borrow-timeout:PT30S}") Duration borrowTimeout) {
+
+        Properties javaMailProperties = new Properties();
+        javaMailProperties.putAll(mailProperties.getProperties());
+        if (mailProperties.getDefaultEncoding() != null) {
+            javaMailProperties.put("mail.mime.charset", mailProperties.getDefaultEncoding().name());
+        }
+
+        PooledJavaMailSender mailSender = new PooledJavaMailSender(
+                javaMailProperties,
+                mailProperties.getProtocol(),
+                mailProperties.getHost(),
+                mailProperties.getPort() == null ? -1 : mailProperties.getPort(),
+                mailProperties.getUsername(),
+                mailProperties.getPassword(),
+                maxConnections,
+                idleTimeout,
+                borrowTimeout);
+
+        FunctionCounter.builder("mail.smtp.connections.opened", mailSender, PooledJavaMailSender::getConnectionsOpened)
+                .description("SMTP connections opened, i.e. connect/STARTTLS/AUTH handshakes")
+                .register(meterRegistry);
+        FunctionCounter.builder("mail.smtp.messages.sent", mailSender, PooledJavaMailSender::getMessagesSent)
+                .register(meterRegistry);
+        Gauge.builder("mail.smtp.connections.idle", mailSender, PooledJavaMailSender::getIdleConnections)
+                .register(meterRegistry);
+        return mailSender;
+    }
+}
@@ -0,0 +1,112 @@
+package app.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The read-only side of the datasource: hands out connections of the healthy replicas round robin and
+ * of the primary while none is healthy. Replicas are validated every health-check-interval; a replica
+ * that fails validation is out of the rotation until it passes again. Replicas start out of the rotation,
+ * so reads go to the primary until the first check.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private final int validationTimeoutSeconds;
+    private final Counter primaryFallbacks;
+
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    Map<String, DataSource> replicas,
+                                    MeterRegistry meterRegistry,
+                                    Duration validationTimeout) {
+        this.replicas = replicas.entrySet().stream()
+                .map(replica -> new Replica(replica.getKey(), replica.getValue()))
+                .toList();
+        this.validationTimeoutSeconds = (int) Math.max(1, validationTimeout.toSeconds());
+        this.primaryFallbacks = Counter.builder("notification.datasource.replica.fallbacks")
+                .description("Read-only connections taken from the primary because no replica was healthy")
+                .register(meterRegistry);
+        Gauge.builder("notification.datasource.replicas.healthy", this.replicas,
+                        all -> all.stream().filter(replica -> replica.healthy).count())
+                .description("Replicas in the read rotation")
+                .register(meterRegistry);
+
+        setTargetDataSources(new HashMap<>(replicas));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+
+        int size = replicas.size();
+        int start = size == 0 ? 0 : Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica.name;
+            }
+        }
+        primaryFallbacks.increment();
+        // no key: the primary
+        return null;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.routing.health-check-interval:PT5S}")
+    public void checkReplicas() {
+
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                healthy = connection.isValid(validationTimeoutSeconds);
+            } catch (SQLException e) {
+                healthy = false;
+            }
+            if (healthy != replica.healthy) {
+                if (healthy) {
+                    log.info("Replica {} is healthy, back in the read rotation", replica.name);
+                } else {
+                    log.warn("Replica {} failed validation, taken out of the read rotation", replica.name);
+                }
+                replica.healthy = healthy;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package app.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+    private final ThreadPoolTaskExecutor webAsyncExecutor;
+    private final Duration asyncTimeout;
+
+    public WebConfiguration(@Qualifier("webAsyncExecutor") ThreadPoolTaskExecutor webAsyncExecutor,
+                            @Value("${app.web.async.timeout:PT30M}") Duration asyncTimeout) {
+        this.webAsyncExecutor = webAsyncExecutor;
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    /**
+     * Runs streaming responses (exports) off the servlet threads. Needed explicitly because the
+     * dispatch executor replaces Boot's default applicationTaskExecutor.
+     */
+    @Bean
+    public static ThreadPoolTaskExecutor webAsyncExecutor(
+            @Value("${app.web.async.pool-size:8}") int poolSize,
+            @Value("${app.web.async.queue-capacity:100}") int queueCapacity) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("web-async-");
+        return executor;
+    }
+
+    /**
+     * Runs the controller handlers in async mode, see {@link app.web.EndpointExecutor}. Sized for the
+     * number of requests that may wait on the database or the mail server at once, and at least as large
+     * as the servlet thread pool whose blocking work it takes over.
+     */
+    @Bean
+    public static ThreadPoolTaskExecutor webIoExecutor(
+            @Value("${server.tomcat.threads.max:200}") int servletThreads,
+            @Value("${app.web.io.pool-size:${server.tomcat.threads.max:200}}") int poolSize,
+            @Value("${app.web.io.queue-capacity:1000}") int queueCapacity) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(poolSize, servletThreads));
+        executor.setMaxPoolSize(Math.max(poolSize, servletThreads));
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("web-io-");
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(webAsyncExecutor);
+        configurer.setDefaultTimeout(asyncTimeout.toMillis());
+    }
+}
@@ -0,0 +1,147 @@
+package app.event;
+
+import app.service.MailThrottle;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Pauses the event listeners while the mail server or the database cannot keep up, so that events stay
+ * in Kafka instead of turning into FAILED notifications, and resumes them once the signals have been
+ * healthy for app.backpressure.cool-down. The mail signals come from the {@link MailThrottle} window,
+ * the database signal from the Hikari pool (all connections in use and threads waiting for one).
+ */
+@Component
+@Slf4j
+public class BackpressureController {
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final MailThrottle mailThrottle;
+    private final HikariDataSource hikariDataSource;
+    private final boolean enabled;
+    private final List<String> listenerIds;
+    private final int minSamples;
+    private final double maxErrorRate;
+    private final Duration maxLatency;
+    private final int maxAwaitingConnection;
+    private final Duration coolDown;
+
+    private volatile boolean paused;
+    private long lastOverloadedAt;
+
+    @Autowired
+    public BackpressureController(KafkaListenerEndpointRegistry listenerRegistry,
+                                  MailThrottle mailThrottle,
+                                  DataSource dataSource,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.backpressure.enabled:false}") boolean enabled,
+                                  @Value("${app.backpressure.listener-ids:notification-event-listener,notification-batch-event-listener,notification-parallel-event-listener}") List<String> listenerIds,
+                                  @Value("${app.backpressure.mail.min-samples:10}") int minSamples,
+                                  @Value("${app.backpressure.mail.max-error-rate:0.5}") double maxErrorRate,
+                                  @Value("${app.backpressure.mail.max-latency:PT10S}") Duration maxLatency,
+                                  @Value("${app.backpressure.db.max-awaiting-connection:1}") int maxAwaitingConnection,
+                                  @Value("${app.backpressure.cool-down:PT10S}") Duration coolDown) {
+        this.listenerRegistry = listenerRegistry;
+        this.mailThrottle = mailThrottle;
+        this.hikariDataSource = hikariDataSource(dataSource);
+        this.enabled = enabled;
+        this.listenerIds = listenerIds;
+        this.minSamples = minSamples;
+        this.maxErrorRate = maxErrorRate;
+        this.maxLatency = maxLatency;
+        this.maxAwaitingConnection = maxAwaitingConnection;
+        this.coolDown = coolDown;
+
+        Gauge.builder("notification.backpressure.paused", this, controller -> controller.paused ? 1 : 0)
+                .description("1 while the event listeners are paused because mail or database are saturated")
+                .register(meterRegistry);
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    @Scheduled(fixedDelayString = "${app.backpressure.check-interval:PT1S}")
+    public synchronized void check() {
+
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        String overload = overload();
+        if (overload != null) {
+            lastOverloadedAt = now;
+            if (!paused) {
+                log.warn("Pausing event listeners: {}", overload);
+                listenerIds.forEach(this::pause);
+                paused = true;
+            }
+            return;
+        }
+        if (paused && now - lastOverloadedAt >= coolDown.toNanos()) {
+            log.info("Resuming event listeners");
+            listenerIds.forEach(this::resume);
+            paused = false;
+        }
+    }
+
+    private String overload() {
+
+        MailThrottle.MailHealth mail = mailThrottle.health();
+        if (mail.attempts() >= minSamples && mail.errorRate() > maxErrorRate) {
+            return "%.0f%% of the last %d emails failed".formatted(mail.errorRate() * 100, mail.attempts());
+        }
+        if (mail.attempts() > 0 && mail.averageLatency().compareTo(maxLatency) > 0) {
+            return "sending an email takes %d ms".formatted(mail.averageLatency().toMillis());
+        }
+        // the pool bean only exists once the first connection was requested
+        HikariPoolMXBean connectionPool = hikariDataSource != null ? hikariDataSource.getHikariPoolMXBean() : null;
+        if (connectionPool != null
+                && connectionPool.getIdleConnections() == 0
+                && connectionPool.getThreadsAwaitingConnection() >= maxAwaitingConnection) {
+            return "%d threads are waiting for a database connection".formatted(connectionPool.getThreadsAwaitingConnection());
+        }
+        return null;
+    }
+
+    private void pause(String listenerId) {
+
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(listenerId);
+        if (container != null && container.isRunning()) {
+            container.pause();
+        }
+    }
+
+    private void resume(String listenerId) {
+
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(listenerId);
+        if (container != null && container.isPauseRequested()) {
+            container.resume();
+        }
+    }
+
+    private static HikariDataSource hikariDataSource(DataSource dataSource) {
+
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class);
+            }
+        } catch (SQLException e) {
+            log.warn("Can't watch the connection pool: {}", e.getMessage());
+        }
+        return null;
+    }
+}
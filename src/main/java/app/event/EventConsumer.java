@@ -1,137 +1,622 @@
 package app.event;
 
+import app.event.payload.BulkNotificationResponseKafka;
+import app.event.payload.IdempotentPayload;
 import app.event.payload.NotificationPreferenceResponseKafka;
 import app.event.payload.NotificationResponseKafka;
 import app.event.payload.UpsertNotificationPreference;
+import app.model.BulkNotificationJob;
 import app.model.Notification;
 import app.model.NotificationPreference;
+import app.model.OutboxEvent;
+import app.model.ProcessedEvent;
+import app.service.BulkNotificationService;
 import app.service.NotificationService;
+import app.web.dto.BulkNotificationRequest;
 import app.web.dto.NotificationRequest;
 import app.web.mapper.DtoMapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.UUID;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class EventConsumer {
 
     private final NotificationService notificationService;
-    private final KafkaTemplate<String, EventMessage<?>> replyKafkaTemplate;
+    private final BulkNotificationService bulkNotificationService;
+    private final ReplyOutbox replyOutbox;
+    private final KeyOrderedExecutor keyOrderedExecutor;
+    private final EventMetrics eventMetrics;
+    private final TransactionTemplate transactionTemplate;
     private final ObjectMapper objectMapper;
-    private final String replyTopic;
+    private final DeadLetterPublishingRecoverer deadLetterRecoverer;
+    private final EventDeduplicator eventDeduplicator;
 
     public EventConsumer(NotificationService notificationService,
-                         KafkaTemplate<String, EventMessage<?>> replyKafkaTemplate,
+                         BulkNotificationService bulkNotificationService,
+                         ReplyOutbox replyOutbox,
+                         KeyOrderedExecutor keyOrderedExecutor,
+                         EventMetrics eventMetrics,
+                         TransactionTemplate transactionTemplate,
                          ObjectMapper objectMapper,
-                         @Value("${app.kafka.reply-topic}") String replyTopic) {
+                         DeadLetterPublishingRecoverer deadLetterRecoverer,
+                         EventDeduplicator eventDeduplicator) {
         this.notificationService = notificationService;
-        this.replyKafkaTemplate = replyKafkaTemplate;
+        this.bulkNotificationService = bulkNotificationService;
+        this.replyOutbox = replyOutbox;
+        this.keyOrderedExecutor = keyOrderedExecutor;
+        this.eventMetrics = eventMetrics;
+        this.transactionTemplate = transactionTemplate;
         this.objectMapper = objectMapper;
-        this.replyTopic = replyTopic;
+        this.deadLetterRecoverer = deadLetterRecoverer;
+        this.eventDeduplicator = eventDeduplicator;
     }
 
+    /**
+     * Exceptions thrown from here go to the container's error handler, which retries the record and then
+     * dead-letters it; unprocessable events are dead-lettered right away.
+     */
     @KafkaListener(
+            id = "notification-event-listener",
             topics = "${app.kafka.input-topic}",
-            groupId = "${spring.kafka.consumer.group-id}"
+            groupId = "${spring.kafka.consumer.group-id}",
+            autoStartup = "#{'${app.kafka.listener.mode:record}' == 'record' && !${app.preferences.warm-start.enabled:false}}"
     )
-    public void consumeEvent(JsonNode eventMessage) {
+    public void consumeEvent(EventMessage<?> eventMessage) {
+        eventMetrics.received(1);
         try {
-            String eventType = eventMessage.path("eventType").asText(null);
-            JsonNode payload = eventMessage.path("payload");
+            handleEvent(eventMessage);
+        } finally {
+            eventMetrics.finished(1);
+        }
+    }
+
+    @KafkaListener(
+            id = "notification-batch-event-listener",
+            topics = "${app.kafka.input-topic}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{'${app.kafka.listener.mode:record}' == 'batch' && !${app.preferences.warm-start.enabled:false}}"
+    )
+    public void consumeEvents(List<ConsumerRecord<String, EventMessage<?>>> records) {
+        Map<String, List<ConsumerRecord<String, EventMessage<?>>>> recordsByEventType = new LinkedHashMap<>();
+
+        for (ConsumerRecord<String, EventMessage<?>> record : records) {
+            EventMessage<?> eventMessage = record.value();
+            String eventType = eventMessage == null ? null : eventMessage.getEventType();
+
+            if (eventType == null) {
+                log.error("Received event without eventType at {}-{}@{}: {}",
+                        record.topic(), record.partition(), record.offset(), eventMessage);
+                deadLetter(record, new UnprocessableEventException("Event without eventType"));
+                continue;
+            }
+            recordsByEventType.computeIfAbsent(eventType, type -> new ArrayList<>()).add(record);
+        }
+
+        eventMetrics.received(records.size());
+        try {
+            recordsByEventType.forEach((eventType, group) -> {
+                List<Object> payloads = group.stream()
+                        .map(record -> (Object) record.value().getPayload())
+                        .toList();
+                Timer.Sample sample = eventMetrics.start();
+                int failures = payloads.size();
+                try {
+                    failures = switch (eventType) {
+                        case "UPSERT_NOTIFICATION_PREFERENCE" ->
+                                handleUpsertNotificationPreferences(payloads);
+                        case "NOTIFICATION_REQUEST" ->
+                                handleNotificationRequests(payloads);
+                        case "BULK_NOTIFICATION_REQUEST" ->
+                                (int) payloads.stream().filter(payload -> !handleBulkNotificationRequest(payload)).count();
+                        default -> {
+                            log.warn("Unknown eventType received: {} ({} events)", eventType, payloads.size());
+                            UnprocessableEventException unknown = new UnprocessableEventException("Unknown eventType " + eventType);
+                            group.forEach(record -> deadLetter(record, unknown));
+                            yield payloads.size();
+                        }
+                    };
+                } catch (Exception e) {
+                    log.error("Error processing {} {} events", payloads.size(), eventType, e);
+                    group.forEach(record -> deadLetter(record, e));
+                } finally {
+                    eventMetrics.recordBatch(sample, eventType, payloads.size(), failures);
+                }
+            });
+        } finally {
+            eventMetrics.finished(records.size());
+        }
+
+        log.info("Processed batch of {} events", records.size());
+    }
+
+    /**
+     * Fans the records of each poll out across {@link KeyOrderedExecutor} lanes keyed by userId, so events
+     * of one user keep their order while different users are processed concurrently, independent of the
+     * partition count.
+     */
+    @KafkaListener(
+            id = "notification-parallel-event-listener",
+            topics = "${app.kafka.input-topic}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "parallelKafkaListenerContainerFactory",
+            autoStartup = "#{'${app.kafka.listener.mode:record}' == 'parallel' && !${app.preferences.warm-start.enabled:false}}"
+    )
+    public void consumeEventInParallel(ConsumerRecord<String, EventMessage<?>> record, Acknowledgment acknowledgment) {
+        EventMessage<?> eventMessage = record.value();
+
+        // counted from receipt, so events waiting in a lane show up as in flight
+        eventMetrics.received(1);
+        keyOrderedExecutor.execute(orderingKey(record), () -> {
+            try {
+                if (eventMessage == null) {
+                    log.error("Received empty event at {}-{}@{}", record.topic(), record.partition(), record.offset());
+                    deadLetter(record, new UnprocessableEventException("Empty event"));
+                    return;
+                }
+                handleEvent(eventMessage);
+            } catch (Exception e) {
+                // the lane is off the container thread, so the error handler can't dead-letter it for us
+                deadLetter(record, e);
+            } finally {
+                acknowledgment.acknowledge();
+                eventMetrics.finished(1);
+            }
+        });
+    }
+
+    private void handleEvent(EventMessage<?> eventMessage) {
+        Timer.Sample sample = eventMetrics.start();
+        String eventType = eventMessage.getEventType();
+        String outcome = EventMetrics.FAILURE;
+        try {
+            Object payload = eventMessage.getPayload();
 
             if (eventType == null) {
                 log.error("Received event without eventType: {}", eventMessage);
-                return;
+                outcome = EventMetrics.IGNORED;
+                throw new UnprocessableEventException("Event without eventType");
             }
 
-            switch (eventType) {
+            boolean handled = switch (eventType) {
                 case "UPSERT_NOTIFICATION_PREFERENCE" ->
                         handleUpsertNotificationPreference(payload);
                 case "NOTIFICATION_REQUEST" ->
                         handleNotificationRequest(payload);
-                default -> log.warn("Unknown eventType received: {}", eventType);
+                case "BULK_NOTIFICATION_REQUEST" ->
+                        handleBulkNotificationRequest(payload);
+                default -> {
+                    log.warn("Unknown eventType received: {}", eventType);
+                    outcome = EventMetrics.IGNORED;
+                    throw new UnprocessableEventException("Unknown eventType " + eventType);
+                }
+            };
+            if (handled) {
+                outcome = EventMetrics.SUCCESS;
             }
-        } catch (Exception e) {
-            log.error("Error processing event: {}", eventMessage, e);
+        } finally {
+            eventMetrics.recordEvent(sample, eventType, outcome);
         }
     }
 
-    private void handleUpsertNotificationPreference(JsonNode payload) {
-        UUID userId = null;
+    private void deadLetter(ConsumerRecord<?, ?> record, Exception cause) {
         try {
-            if (payload.hasNonNull("userId")) {
-                userId = UUID.fromString(payload.get("userId").asText());
-            }
+            deadLetterRecoverer.accept(record, cause);
+        } catch (Exception e) {
+            log.error("Failed to dead-letter event at {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+        }
+    }
 
-            UpsertNotificationPreference event =
-                    objectMapper.convertValue(payload, UpsertNotificationPreference.class);
+    private static Object orderingKey(ConsumerRecord<String, EventMessage<?>> record) {
+        UUID userId = record.value() == null ? null : userIdOf(record.value().getPayload());
+        if (userId != null) {
+            return userId;
+        }
+        // events without a user (e.g. bulk requests) keep the order of their record key or partition
+        return record.key() != null ? record.key() : record.partition();
+    }
 
-            NotificationPreference pref = notificationService.upsertPreference(event);
-            NotificationPreferenceResponseKafka response =
-                    DtoMapper.fromNotificationPreferenceKafka(pref);
+    private boolean handleUpsertNotificationPreference(Object payload) {
+        UpsertNotificationPreference event;
+        try {
+            event = payloadAs(payload, UpsertNotificationPreference.class);
+        } catch (Exception e) {
+            log.error("Failed to handle UPSERT_NOTIFICATION_PREFERENCE", e);
+            sendPreferenceErrorReply(userIdOf(payload), e);
+            return false;
+        }
+        return handleUpsertNotificationPreference(event);
+    }
 
-            sendReply("NOTIFICATION_PREFERENCE_RESPONSE", response);
+    private boolean handleUpsertNotificationPreference(UpsertNotificationPreference event) {
+        if (replayIfProcessed(event.getIdempotencyKey())) {
+            return true;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                ProcessedEvent processed = eventDeduplicator.claim(event.getIdempotencyKey(), "UPSERT_NOTIFICATION_PREFERENCE");
+                NotificationPreference pref = notificationService.upsertPreference(event);
+                NotificationPreferenceResponseKafka response =
+                        DtoMapper.fromNotificationPreferenceKafka(pref);
+
+                eventDeduplicator.recordReply(processed,
+                        sendReply("NOTIFICATION_PREFERENCE_RESPONSE", response.getUserId(), response));
+            });
+            return true;
 
         } catch (Exception e) {
+            if (e instanceof DataIntegrityViolationException && replayIfClaimed(event.getIdempotencyKey())) {
+                return true;
+            }
             log.error("Failed to handle UPSERT_NOTIFICATION_PREFERENCE", e);
+            sendPreferenceErrorReply(event.getUserId(), e);
+            return false;
+        }
+    }
 
-            NotificationPreferenceResponseKafka errorResponse =
-                    NotificationPreferenceResponseKafka.builder()
-                            .userId(userId) // might be null if missing
-                            .success(false)
-                            .error("Processing failed: " + e.getMessage())
-                            .build();
+    // returns the number of events answered with an error reply
+    private int handleUpsertNotificationPreferences(List<Object> payloads) {
+        List<UpsertNotificationPreference> parsed = new ArrayList<>(payloads.size());
+        for (Object payload : payloads) {
+            try {
+                parsed.add(payloadAs(payload, UpsertNotificationPreference.class));
+            } catch (Exception e) {
+                log.error("Failed to handle UPSERT_NOTIFICATION_PREFERENCE", e);
+                sendPreferenceErrorReply(userIdOf(payload), e);
+            }
+        }
+        int failures = payloads.size() - parsed.size();
+        List<UpsertNotificationPreference> repeats = new ArrayList<>();
+        List<UpsertNotificationPreference> events = firstOccurrences(replayProcessed(parsed), repeats);
 
-            sendReply("NOTIFICATION_PREFERENCE_RESPONSE", errorResponse);
+        if (!events.isEmpty()) {
+            failures += storePreferences(events);
         }
+        for (UpsertNotificationPreference repeat : repeats) {
+            if (!handleUpsertNotificationPreference(repeat)) {
+                failures++;
+            }
+        }
+        return failures;
     }
 
-    private void handleNotificationRequest(JsonNode payload) {
-        UUID userId = null;
+    private int storePreferences(List<UpsertNotificationPreference> events) {
+        int failures = 0;
         try {
-            if (payload.hasNonNull("userId")) {
-                userId = UUID.fromString(payload.get("userId").asText());
+            transactionTemplate.executeWithoutResult(status -> {
+                List<String> keys = events.stream().map(IdempotentPayload::getIdempotencyKey).toList();
+                Map<String, ProcessedEvent> claimed = eventDeduplicator.claimAll(keys, "UPSERT_NOTIFICATION_PREFERENCE");
+                List<NotificationPreference> preferences = notificationService.upsertPreferences(events);
+
+                List<OutboxEvent> replies = new ArrayList<>(preferences.size());
+                for (int i = 0; i < preferences.size(); i++) {
+                    NotificationPreferenceResponseKafka response = DtoMapper.fromNotificationPreferenceKafka(preferences.get(i));
+                    OutboxEvent reply = replyOutbox.toOutboxEvent("NOTIFICATION_PREFERENCE_RESPONSE", response.getUserId(), response);
+                    recordReply(claimed, keys.get(i), reply);
+                    replies.add(reply);
+                }
+                replyOutbox.enqueueAll(replies);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // as for notifications: a key claimed elsewhere; the record path replays the claimed ones
+            log.warn("Batch of {} UPSERT_NOTIFICATION_PREFERENCE events holds a claimed key, falling back to single upserts",
+                    events.size());
+            for (UpsertNotificationPreference event : events) {
+                if (!handleUpsertNotificationPreference(event)) {
+                    failures++;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Batch upsert of {} preferences failed, falling back to single upserts", events.size(), e);
+            for (UpsertNotificationPreference event : events) {
+                if (!handleUpsertNotificationPreference(event)) {
+                    failures++;
+                }
             }
-            NotificationRequest request =
-                    objectMapper.convertValue(payload, NotificationRequest.class);
+        }
+        return failures;
+    }
+
+    private boolean handleNotificationRequest(Object payload) {
+        UUID userId = userIdOf(payload);
+        NotificationRequest request;
+        try {
+            request = payloadAs(payload, NotificationRequest.class);
+        } catch (Exception e) {
+            log.error("Failed to handle NOTIFICATION_REQUEST", e);
+            sendNotificationErrorReply(userId, e);
+            return false;
+        }
+        return handleNotificationRequest(request);
+    }
 
-            Notification notification = notificationService.sendNotification(request);
-            NotificationResponseKafka response = DtoMapper.fromNotificationKafka(notification);
+    private boolean handleNotificationRequest(NotificationRequest request) {
+        if (replayIfProcessed(request.getIdempotencyKey())) {
+            return true;
+        }
+        try {
+            // claimed before the email goes out, so a copy processed at the same time fails here and sends nothing
+            transactionTemplate.executeWithoutResult(status -> {
+                ProcessedEvent processed = eventDeduplicator.claim(request.getIdempotencyKey(), "NOTIFICATION_REQUEST");
+                Notification notification = notificationService.sendNotification(request);
+                NotificationResponseKafka response = DtoMapper.fromNotificationKafka(notification);
 
-            sendReply("NOTIFICATION_RESPONSE", response);
+                eventDeduplicator.recordReply(processed,
+                        sendReply("NOTIFICATION_RESPONSE", response.getUserId(), response));
+            });
 
             log.info("Processed NOTIFICATION_REQUEST for user {}", request.getUserId());
+            return true;
 
         } catch (Exception e) {
+            if (e instanceof DataIntegrityViolationException && replayIfClaimed(request.getIdempotencyKey())) {
+                return true;
+            }
             log.error("Failed to handle NOTIFICATION_REQUEST", e);
+            sendNotificationErrorReply(request.getUserId(), e);
+            return false;
+        }
+    }
 
-            NotificationResponseKafka errorResponse = NotificationResponseKafka.builder()
-                    .userId(userId) // might be null if missing
-                    .success(false)
-                    .error("Processing failed: " + e.getMessage())
-                    .build();
+    // returns the number of events answered with an error reply
+    private int handleNotificationRequests(List<Object> payloads) {
+        List<NotificationRequest> parsed = new ArrayList<>(payloads.size());
+        for (Object payload : payloads) {
+            try {
+                parsed.add(payloadAs(payload, NotificationRequest.class));
+            } catch (Exception e) {
+                log.error("Failed to handle NOTIFICATION_REQUEST", e);
+                sendNotificationErrorReply(userIdOf(payload), e);
+            }
+        }
+        int failures = payloads.size() - parsed.size();
+        List<NotificationRequest> repeats = new ArrayList<>();
+        List<NotificationRequest> requests = firstOccurrences(replayProcessed(parsed), repeats);
 
-            sendReply("NOTIFICATION_RESPONSE", errorResponse);
+        if (!requests.isEmpty()) {
+            failures += storeNotifications(requests);
         }
+        // after the first occurrence is committed, so a repeat is answered with its reply
+        for (NotificationRequest repeat : repeats) {
+            if (!handleNotificationRequest(repeat)) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    // returns the number of requests answered with an error reply
+    private int storeNotifications(List<NotificationRequest> requests) {
+        Set<UUID> userIds = requests.stream()
+                .map(NotificationRequest::getUserId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<UUID, NotificationPreference> preferences = notificationService.getPreferencesByUserIds(userIds);
+
+        // built without side effects first, so invalid requests are answered before any key is claimed
+        List<NotificationRequest> accepted = new ArrayList<>(requests.size());
+        List<Notification> notifications = new ArrayList<>(requests.size());
+        for (NotificationRequest request : requests) {
+            try {
+                notifications.add(notificationService.buildNotification(request, preferences.get(request.getUserId())));
+                accepted.add(request);
+            } catch (Exception e) {
+                log.error("Failed to handle NOTIFICATION_REQUEST", e);
+                sendNotificationErrorReply(request.getUserId(), e);
+            }
+        }
+        if (notifications.isEmpty()) {
+            return requests.size();
+        }
+
+        List<String> keys = accepted.stream().map(IdempotentPayload::getIdempotencyKey).toList();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // claimed before anything is staged, as a staged notification is already sent in synchronous mode
+                Map<String, ProcessedEvent> claimed = eventDeduplicator.claimAll(keys, "NOTIFICATION_REQUEST");
+                for (int i = 0; i < notifications.size(); i++) {
+                    notificationService.stageNotification(notifications.get(i), preferences.get(accepted.get(i).getUserId()));
+                }
+                List<Notification> saved = notificationService.saveNotifications(notifications);
+
+                List<OutboxEvent> replies = new ArrayList<>(saved.size());
+                for (int i = 0; i < saved.size(); i++) {
+                    NotificationResponseKafka response = DtoMapper.fromNotificationKafka(saved.get(i));
+                    OutboxEvent reply = replyOutbox.toOutboxEvent("NOTIFICATION_RESPONSE", response.getUserId(), response);
+                    recordReply(claimed, keys.get(i), reply);
+                    replies.add(reply);
+                }
+                replyOutbox.enqueueAll(replies);
+            });
+            log.info("Processed {} NOTIFICATION_REQUEST events", notifications.size());
+        } catch (DataIntegrityViolationException e) {
+            // a key the filter missed was claimed elsewhere, e.g. by the owner of the partition before a
+            // rebalance; nothing was sent, so each request takes the record path, which replays the claimed ones
+            log.warn("Batch of {} NOTIFICATION_REQUEST events holds a claimed key, falling back to single requests",
+                    accepted.size());
+            int failures = requests.size() - accepted.size();
+            for (NotificationRequest request : accepted) {
+                if (!handleNotificationRequest(request)) {
+                    failures++;
+                }
+            }
+            return failures;
+        } catch (Exception e) {
+            log.error("Failed to store {} notifications", notifications.size(), e);
+            notifications.forEach(notification -> sendNotificationErrorReply(notification.getUserId(), e));
+            return requests.size();
+        }
+        return requests.size() - notifications.size();
+    }
+
+    private boolean handleBulkNotificationRequest(Object payload) {
+        BulkNotificationRequest request;
+        try {
+            request = payloadAs(payload, BulkNotificationRequest.class);
+        } catch (Exception e) {
+            log.error("Failed to handle BULK_NOTIFICATION_REQUEST", e);
+            sendBulkNotificationErrorReply(e);
+            return false;
+        }
+        return handleBulkNotificationRequest(request);
+    }
+
+    private boolean handleBulkNotificationRequest(BulkNotificationRequest request) {
+        if (replayIfProcessed(request.getIdempotencyKey())) {
+            return true;
+        }
+        try {
+            // claimed with the job, so a redelivered copy is answered with the id of the job it started
+            transactionTemplate.executeWithoutResult(status -> {
+                ProcessedEvent processed = eventDeduplicator.claim(request.getIdempotencyKey(), "BULK_NOTIFICATION_REQUEST");
+                BulkNotificationJob job = bulkNotificationService.submit(request);
+                BulkNotificationResponseKafka response = DtoMapper.fromBulkNotificationJobKafka(job);
+
+                eventDeduplicator.recordReply(processed,
+                        sendReply("BULK_NOTIFICATION_RESPONSE", response.getJobId(), response));
+            });
+            return true;
+
+        } catch (Exception e) {
+            if (e instanceof DataIntegrityViolationException && replayIfClaimed(request.getIdempotencyKey())) {
+                return true;
+            }
+            log.error("Failed to handle BULK_NOTIFICATION_REQUEST", e);
+            sendBulkNotificationErrorReply(e);
+            return false;
+        }
+    }
+
+    private void sendPreferenceErrorReply(UUID userId, Exception e) {
+        NotificationPreferenceResponseKafka errorResponse =
+                NotificationPreferenceResponseKafka.builder()
+                        .userId(userId) // might be null if missing
+                        .success(false)
+                        .error("Processing failed: " + e.getMessage())
+                        .build();
+
+        sendReply("NOTIFICATION_PREFERENCE_RESPONSE", userId, errorResponse);
+    }
+
+    private void sendNotificationErrorReply(UUID userId, Exception e) {
+        NotificationResponseKafka errorResponse = NotificationResponseKafka.builder()
+                .userId(userId) // might be null if missing
+                .success(false)
+                .error("Processing failed: " + e.getMessage())
+                .build();
+
+        sendReply("NOTIFICATION_RESPONSE", userId, errorResponse);
+    }
+
+    private void sendBulkNotificationErrorReply(Exception e) {
+        BulkNotificationResponseKafka errorResponse = BulkNotificationResponseKafka.builder()
+                .success(false)
+                .error("Processing failed: " + e.getMessage())
+                .build();
+
+        sendReply("BULK_NOTIFICATION_RESPONSE", null, errorResponse);
+    }
+
+    // payloads arrive typed from EventEnvelopeDeserializer; a JsonNode means the payload did not bind
+    private <T> T payloadAs(Object payload, Class<T> type) {
+        if (payload == null) {
+            throw new IllegalArgumentException("Event has no payload");
+        }
+        return type.isInstance(payload) ? type.cast(payload) : objectMapper.convertValue(payload, type);
+    }
+
+    private static UUID userIdOf(Object payload) {
+        if (payload instanceof UpsertNotificationPreference upsert) {
+            return upsert.getUserId();
+        }
+        if (payload instanceof NotificationRequest request) {
+            return request.getUserId();
+        }
+        if (!(payload instanceof JsonNode node)) {
+            return null;
+        }
+        try {
+            return node.hasNonNull("userId") ? UUID.fromString(node.get("userId").asText()) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // answers a redelivered event with the reply of its first processing instead of processing it again
+    private boolean replayIfProcessed(String idempotencyKey) {
+        Optional<ProcessedEvent> processed = eventDeduplicator.findProcessed(idempotencyKey);
+        processed.ifPresent(this::replay);
+        return processed.isPresent();
+    }
+
+    private boolean replayIfClaimed(String idempotencyKey) {
+        Optional<ProcessedEvent> processed = eventDeduplicator.findClaimed(idempotencyKey);
+        processed.ifPresent(this::replay);
+        return processed.isPresent();
+    }
+
+    private void replay(ProcessedEvent processed) {
+        log.info("{} event {} was processed before, replaying its reply", processed.getEventType(), processed.getIdempotencyKey());
+        eventDeduplicator.duplicateDetected();
+        replyOutbox.enqueueReplay(processed);
+    }
+
+    // replays the events of a batch that were processed before and returns the others
+    private <T extends IdempotentPayload> List<T> replayProcessed(List<T> events) {
+        List<String> keys = events.stream()
+                .map(IdempotentPayload::getIdempotencyKey)
+                .filter(Objects::nonNull)
+                .toList();
+        Map<String, ProcessedEvent> processed = eventDeduplicator.findAllProcessed(keys);
+        if (processed.isEmpty()) {
+            return events;
+        }
+        List<T> pending = new ArrayList<>(events.size());
+        for (T event : events) {
+            ProcessedEvent earlier = event.getIdempotencyKey() == null ? null : processed.get(event.getIdempotencyKey());
+            if (earlier != null) {
+                replay(earlier);
+            } else {
+                pending.add(event);
+            }
+        }
+        return pending;
+    }
+
+    // keeps the first event per idempotency key; later copies within the batch go to repeats
+    private static <T extends IdempotentPayload> List<T> firstOccurrences(List<T> events, List<T> repeats) {
+        Set<String> keys = new HashSet<>();
+        List<T> first = new ArrayList<>(events.size());
+        for (T event : events) {
+            if (event.getIdempotencyKey() == null || keys.add(event.getIdempotencyKey())) {
+                first.add(event);
+            } else {
+                repeats.add(event);
+            }
+        }
+        return first;
     }
 
-    private <T> void sendReply(String eventType, T response) {
-        EventMessage<T> wrapped = new EventMessage<>(eventType, response);
+    private void recordReply(Map<String, ProcessedEvent> claimed, String idempotencyKey, OutboxEvent reply) {
+        if (idempotencyKey != null) {
+            eventDeduplicator.recordReply(claimed.get(idempotencyKey), reply);
+        }
+    }
 
-        replyKafkaTemplate.send(replyTopic, wrapped)
-                .whenComplete((result, ex) -> {
-                    if (ex == null) {
-                        log.info("Reply sent [{}] to topic {}", eventType, replyTopic);
-                    } else {
-                        log.error("Failed to send reply [{}]: {}", eventType, ex.getMessage());
-                    }
-                });
+    private OutboxEvent sendReply(String eventType, UUID userId, Object response) {
+        return replyOutbox.enqueue(eventType, userId, response);
     }
 }
@@ -0,0 +1,285 @@
+package app.event;
+
+import app.model.OutboxEvent;
+import app.model.ProcessedEvent;
+import app.repository.ProcessedEventRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Detects redelivered events by their idempotency key. The processed_event table with the key as primary
+ * key is the source of truth: every processed event claims its key in the transaction that processes it,
+ * so a copy processed concurrently fails on the key. In front of the table a Bloom filter answers
+ * "never seen" for new keys without a query, and a bounded cache of recent keys answers most real
+ * duplicates, reply included, without one. The filter is loaded with the most recent keys of the table
+ * on startup; until then every key is looked up.
+ */
+@Component
+public class EventDeduplicator {
+
+    private final ProcessedEventRepository processedEventRepository;
+    private final Cache<String, ProcessedEvent> recentEvents;
+    private final BloomFilter seenKeys;
+    private final Counter duplicates;
+    private final int expectedKeys;
+    private volatile boolean warm;
+
+    @Autowired
+    public EventDeduplicator(ProcessedEventRepository processedEventRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.kafka.idempotency.expected-keys:1000000}") int expectedKeys,
+                             @Value("${app.kafka.idempotency.false-positive-rate:0.01}") double falsePositiveRate,
+                             @Value("${app.kafka.idempotency.cache-size:10000}") long cacheSize) {
+        this.processedEventRepository = processedEventRepository;
+        this.recentEvents = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+        this.seenKeys = new BloomFilter(expectedKeys, falsePositiveRate);
+        this.expectedKeys = expectedKeys;
+        this.duplicates = Counter.builder("notification.events.duplicates")
+                .description("Redelivered events answered with their original reply instead of being processed again")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+
+        try (Stream<String> keys = processedEventRepository.streamRecentKeys(Limit.of(expectedKeys))) {
+            keys.forEach(seenKeys::put);
+        }
+        warm = true;
+    }
+
+    /**
+     * The earlier processing of the event with this key, or empty if the key is null or was not processed yet.
+     */
+    public Optional<ProcessedEvent> findProcessed(String idempotencyKey) {
+
+        if (idempotencyKey == null || !mightBeProcessed(idempotencyKey)) {
+            return Optional.empty();
+        }
+        return findClaimed(idempotencyKey);
+    }
+
+    /**
+     * Like {@link #findProcessed(String)}, but without asking the filter, for a key whose claim just failed
+     * because another consumer processed the event at the same time.
+     */
+    public Optional<ProcessedEvent> findClaimed(String idempotencyKey) {
+
+        if (idempotencyKey == null) {
+            return Optional.empty();
+        }
+        ProcessedEvent cached = recentEvents.getIfPresent(idempotencyKey);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<ProcessedEvent> processed = processedEventRepository.findById(idempotencyKey);
+        processed.ifPresent(event -> {
+            seenKeys.put(idempotencyKey);
+            recentEvents.put(idempotencyKey, event);
+        });
+        return processed;
+    }
+
+    /**
+     * The earlier processing of the events with these keys, with one query for the keys that are neither
+     * known to be new nor cached.
+     */
+    public Map<String, ProcessedEvent> findAllProcessed(Collection<String> idempotencyKeys) {
+
+        Map<String, ProcessedEvent> processed = new HashMap<>();
+        List<String> lookup = new ArrayList<>();
+        for (String key : idempotencyKeys) {
+            if (key == null || !mightBeProcessed(key)) {
+                continue;
+            }
+            ProcessedEvent cached = recentEvents.getIfPresent(key);
+            if (cached != null) {
+                processed.put(key, cached);
+            } else {
+                lookup.add(key);
+            }
+        }
+        if (!lookup.isEmpty()) {
+            for (ProcessedEvent event : processedEventRepository.findAllById(lookup)) {
+                recentEvents.put(event.getIdempotencyKey(), event);
+                processed.put(event.getIdempotencyKey(), event);
+            }
+        }
+        return processed;
+    }
+
+    /**
+     * Claims the key inside the caller's transaction before anything is sent, so that a concurrent copy
+     * of the event fails here with a DataIntegrityViolationException. Returns null for a null key.
+     */
+    public ProcessedEvent claim(String idempotencyKey, String eventType) {
+
+        if (idempotencyKey == null) {
+            return null;
+        }
+        ProcessedEvent processed = processedEventRepository.saveAndFlush(newProcessedEvent(idempotencyKey, eventType));
+        remember(processed);
+        return processed;
+    }
+
+    /**
+     * Claims the keys of a batch in one flush; null keys are skipped.
+     */
+    public Map<String, ProcessedEvent> claimAll(Collection<String> idempotencyKeys, String eventType) {
+
+        Map<String, ProcessedEvent> claimed = new LinkedHashMap<>();
+        for (String key : idempotencyKeys) {
+            if (key != null) {
+                claimed.put(key, newProcessedEvent(key, eventType));
+            }
+        }
+        if (!claimed.isEmpty()) {
+            processedEventRepository.saveAllAndFlush(claimed.values());
+            claimed.values().forEach(this::remember);
+        }
+        return claimed;
+    }
+
+    /**
+     * Stores the reply of a claimed event; it is written when the transaction commits.
+     */
+    public void recordReply(ProcessedEvent processed, OutboxEvent reply) {
+
+        if (processed == null || reply == null) {
+            return;
+        }
+        processed.setReplyEventType(reply.getEventType());
+        processed.setReplyKey(reply.getMessageKey());
+        processed.setReplyPayload(reply.getPayload());
+    }
+
+    public void duplicateDetected() {
+        duplicates.increment();
+    }
+
+    private boolean mightBeProcessed(String idempotencyKey) {
+        return !warm || seenKeys.mightContain(idempotencyKey);
+    }
+
+    private void remember(ProcessedEvent processed) {
+
+        // a key of a rolled back transaction in the filter only costs a lookup later
+        seenKeys.put(processed.getIdempotencyKey());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentEvents.put(processed.getIdempotencyKey(), processed);
+                }
+            });
+        } else {
+            recentEvents.put(processed.getIdempotencyKey(), processed);
+        }
+    }
+
+    private static ProcessedEvent newProcessedEvent(String idempotencyKey, String eventType) {
+
+        return ProcessedEvent.builder()
+                .idempotencyKey(idempotencyKey)
+                .eventType(eventType)
+                .processedOn(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * Bloom filter with two generations: once the current one holds the expected number of keys it becomes
+     * the previous one and a new one is started, so the false positive rate stays bounded while the filter
+     * keeps remembering at least the last expected-keys keys.
+     */
+    static final class BloomFilter {
+
+        private final int expectedKeys;
+        private final int bits;
+        private final int hashes;
+        private long[] current;
+        private long[] previous;
+        private int keys;
+
+        BloomFilter(int expectedKeys, double falsePositiveRate) {
+            this.expectedKeys = expectedKeys;
+            this.bits = (int) Math.max(64, Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+            this.hashes = Math.max(1, (int) Math.round((double) bits / expectedKeys * Math.log(2)));
+            this.current = new long[(bits + 63) / 64];
+            this.previous = new long[current.length];
+        }
+
+        synchronized void put(String key) {
+
+            if (keys >= expectedKeys) {
+                previous = current;
+                current = new long[previous.length];
+                keys = 0;
+            }
+            long hash = hash(key);
+            for (int i = 0; i < hashes; i++) {
+                int bit = index(hash, i);
+                current[bit >>> 6] |= 1L << bit;
+            }
+            keys++;
+        }
+
+        synchronized boolean mightContain(String key) {
+
+            long hash = hash(key);
+            return contains(current, hash) || contains(previous, hash);
+        }
+
+        private boolean contains(long[] filter, long hash) {
+
+            for (int i = 0; i < hashes; i++) {
+                int bit = index(hash, i);
+                if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // double hashing: the i-th index is h1 + i * h2
+        private int index(long hash, int i) {
+
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            return ((h1 + i * h2) & Integer.MAX_VALUE) % bits;
+        }
+
+        private static long hash(String key) {
+
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            // murmur3 finalizer, spreads the FNV-1a result over all 64 bits
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
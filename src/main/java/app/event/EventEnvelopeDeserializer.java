@@ -0,0 +1,155 @@
+package app.event;
+
+import app.event.payload.IdempotentPayload;
+import app.event.payload.PreferenceChangedKafka;
+import app.event.payload.UpsertNotificationPreference;
+import app.web.dto.BulkNotificationRequest;
+import app.web.dto.NotificationRequest;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.JacksonUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Reads an {@code {"eventType": ..., "payload": ...}} record in one streaming pass and binds the payload
+ * straight into the type registered for its eventType, with ObjectReaders created once. The eventType
+ * is taken from the eventType header if present, otherwise from the JSON; a payload that arrives before
+ * its eventType is buffered as tokens. Unknown event types, and payloads that do not bind to their type,
+ * are returned as a JsonNode so that the consumer can still reply with an error. The event id, from the
+ * eventId header or the JSON, becomes the idempotency key of payloads that do not carry one themselves.
+ */
+public class EventEnvelopeDeserializer implements Deserializer<EventMessage<?>> {
+
+    public static final String EVENT_TYPE_HEADER = "eventType";
+    public static final String EVENT_ID_HEADER = "eventId";
+
+    private static final Map<String, Class<?>> PAYLOAD_TYPES = Map.of(
+            "UPSERT_NOTIFICATION_PREFERENCE", UpsertNotificationPreference.class,
+            "NOTIFICATION_REQUEST", NotificationRequest.class,
+            "BULK_NOTIFICATION_REQUEST", BulkNotificationRequest.class,
+            "PREFERENCE_CHANGED", PreferenceChangedKafka.class);
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, ObjectReader> readers;
+    private final ObjectReader treeReader;
+
+    // instantiated by the Kafka client from spring.deserializer.value.delegate.class
+    public EventEnvelopeDeserializer() {
+        this(JacksonUtils.enhancedObjectMapper());
+    }
+
+    public EventEnvelopeDeserializer(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.readers = PAYLOAD_TYPES.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(
+                        Map.Entry::getKey, entry -> objectMapper.readerFor(entry.getValue())));
+        this.treeReader = objectMapper.readerFor(JsonNode.class);
+    }
+
+    static boolean isKnownEventType(String eventType) {
+        return eventType != null && PAYLOAD_TYPES.containsKey(eventType);
+    }
+
+    @Override
+    public EventMessage<?> deserialize(String topic, Headers headers, byte[] data) {
+
+        return read(header(headers, EVENT_TYPE_HEADER), header(headers, EVENT_ID_HEADER), data);
+    }
+
+    @Override
+    public EventMessage<?> deserialize(String topic, byte[] data) {
+        return read(null, null, data);
+    }
+
+    private static String header(Headers headers, String name) {
+
+        Header header = headers == null ? null : headers.lastHeader(name);
+        return header == null || header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private EventMessage<?> read(String headerEventType, String headerEventId, byte[] data) {
+
+        if (data == null) {
+            return null;
+        }
+        try {
+            return readEnvelope(headerEventType, headerEventId, data);
+        } catch (DatabindException e) {
+            // the payload does not fit its type; hand over the tree so the consumer can reply with the error
+            return readTree(headerEventType, data);
+        } catch (IOException e) {
+            throw new SerializationException("Can't deserialize event: " + e.getMessage(), e);
+        }
+    }
+
+    private EventMessage<?> readEnvelope(String headerEventType, String headerEventId, byte[] data) throws IOException {
+
+        try (JsonParser parser = objectMapper.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new SerializationException("Event is not a JSON object");
+            }
+
+            String eventType = headerEventType;
+            String eventId = headerEventId;
+            Object payload = null;
+            TokenBuffer bufferedPayload = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("eventType".equals(field) && headerEventType == null) {
+                    eventType = parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                } else if ("eventId".equals(field) && headerEventId == null) {
+                    eventId = parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                } else if ("payload".equals(field)) {
+                    if (eventType != null) {
+                        payload = readPayload(eventType, parser);
+                    } else {
+                        bufferedPayload = TokenBuffer.asCopyOfValue(parser);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (bufferedPayload != null) {
+                try (JsonParser buffered = bufferedPayload.asParserOnFirstToken()) {
+                    payload = readPayload(eventType, buffered);
+                }
+            }
+            if (payload instanceof IdempotentPayload idempotent && idempotent.getIdempotencyKey() == null) {
+                idempotent.setIdempotencyKey(eventId);
+            }
+            return new EventMessage<>(eventType, payload);
+        }
+    }
+
+    private Object readPayload(String eventType, JsonParser parser) throws IOException {
+
+        ObjectReader reader = eventType == null ? null : readers.get(eventType);
+        return (reader != null ? reader : treeReader).readValue(parser);
+    }
+
+    private EventMessage<?> readTree(String headerEventType, byte[] data) {
+
+        try {
+            JsonNode event = treeReader.readValue(data);
+            String eventType = headerEventType != null ? headerEventType : event.path("eventType").asText(null);
+            return new EventMessage<>(eventType, event.path("payload"));
+        } catch (IOException e) {
+            throw new SerializationException("Can't deserialize event: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package app.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Meters of the event listeners: handling time and handled events by eventType and outcome, and the
+ * number of events received but not yet finished (including those waiting in a parallel lane).
+ * Event types not known to {@link EventEnvelopeDeserializer} are tagged as "other" to keep the tag bounded.
+ */
+@Component
+public class EventMetrics {
+
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+    public static final String IGNORED = "ignored";
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public EventMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("notification.events.in.flight", inFlight, AtomicInteger::get)
+                .description("Events received from Kafka whose processing has not finished")
+                .register(meterRegistry);
+    }
+
+    public void received(int events) {
+        inFlight.addAndGet(events);
+    }
+
+    public void finished(int events) {
+        inFlight.addAndGet(-events);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void recordEvent(Timer.Sample sample, String eventType, String outcome) {
+
+        sample.stop(timer(eventType, outcome, "record"));
+        counter(eventType, outcome).increment();
+    }
+
+    public void recordBatch(Timer.Sample sample, String eventType, int events, int failures) {
+
+        sample.stop(timer(eventType, failures == 0 ? SUCCESS : FAILURE, "batch"));
+        counter(eventType, SUCCESS).increment(events - failures);
+        counter(eventType, FAILURE).increment(failures);
+    }
+
+    private Timer timer(String eventType, String outcome, String mode) {
+
+        return Timer.builder("notification.events.handling")
+                .description("Time to handle one event, or one group of a polled batch, from receipt to stored reply")
+                .tag("eventType", tagValue(eventType))
+                .tag("outcome", outcome)
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    private Counter counter(String eventType, String outcome) {
+
+        return Counter.builder("notification.events.handled")
+                .tag("eventType", tagValue(eventType))
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static String tagValue(String eventType) {
+        return EventEnvelopeDeserializer.isKnownEventType(eventType) ? eventType : "other";
+    }
+}
@@ -0,0 +1,51 @@
+package app.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a fixed set of single-threaded lanes. Tasks with the same key always land on the same
+ * lane and run in submission order; tasks with different keys run concurrently across lanes.
+ * Used by app.kafka.listener.mode=parallel to process events of different users side by side.
+ */
+@Component
+@Slf4j
+public class KeyOrderedExecutor implements DisposableBean {
+
+    private final ExecutorService[] lanes;
+
+    public KeyOrderedExecutor(@Value("${app.kafka.listener.parallel.lanes:16}") int lanes) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("notification-event-lane-");
+        this.lanes = new ExecutorService[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+    }
+
+    public void execute(Object key, Runnable task) {
+
+        lanes[Math.floorMod(key.hashCode(), lanes.length)].execute(task);
+    }
+
+    // listener containers are stopped before beans are destroyed, so only in-flight events are left here
+    @Override
+    public void destroy() throws InterruptedException {
+
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Event lane did not finish within 30s, unacknowledged events will be redelivered");
+                lane.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package app.event;
+
+import app.model.OutboxEvent;
+import app.repository.OutboxRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the replies stored by {@link ReplyOutbox}. Each run locks a batch of due rows, sends all of
+ * them without waiting in between, and then deletes the acknowledged rows and postpones the failed ones
+ * with one statement each.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxRepository outboxRepository;
+    private final KafkaTemplate<String, EventMessage<?>> replyKafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper();
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Duration retryBackoff;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       KafkaTemplate<String, EventMessage<?>> replyKafkaTemplate,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${app.kafka.outbox.batch-size:500}") int batchSize,
+                       @Value("${app.kafka.outbox.send-timeout:PT10S}") Duration sendTimeout,
+                       @Value("${app.kafka.outbox.retry-backoff:PT5S}") Duration retryBackoff,
+                       MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.replyKafkaTemplate = replyKafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.retryBackoff = retryBackoff;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${app.kafka.outbox.poll-interval:PT0.1S}")
+    public void relay() {
+
+        Integer relayed;
+        do {
+            relayed = transactionTemplate.execute(status -> relayBatch());
+        } while (relayed != null && relayed == batchSize);
+    }
+
+    private int relayBatch() {
+
+        List<OutboxEvent> events = outboxRepository.lockDueEvents(LocalDateTime.now(), PageRequest.of(0, batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        Map<UUID, CompletableFuture<?>> sends = new LinkedHashMap<>();
+        for (OutboxEvent event : events) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            CompletableFuture<?> send;
+            try {
+                send = replyKafkaTemplate.send(event.getTopic(), event.getMessageKey(), toMessage(event));
+            } catch (Exception e) {
+                send = CompletableFuture.failedFuture(e);
+            }
+            sends.put(event.getId(), send.whenComplete((result, ex) -> recordSend(sample, event, ex == null)));
+        }
+
+        List<UUID> sent = new ArrayList<>(events.size());
+        List<UUID> failed = new ArrayList<>();
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        for (Map.Entry<UUID, CompletableFuture<?>> send : sends.entrySet()) {
+            try {
+                send.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sent.add(send.getKey());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.add(send.getKey());
+            } catch (Exception e) {
+                failed.add(send.getKey());
+            }
+        }
+
+        if (!sent.isEmpty()) {
+            outboxRepository.deleteAllByIdInBatch(sent);
+        }
+        if (!failed.isEmpty()) {
+            outboxRepository.postpone(failed, LocalDateTime.now().plus(retryBackoff));
+            log.warn("Failed to send {} of {} replies, retrying in {}", failed.size(), events.size(), retryBackoff);
+        }
+        log.debug("Relayed {} replies", sent.size());
+        return events.size();
+    }
+
+    // send latency until the broker acknowledged, and the time the reply spent in the outbox before that
+    private void recordSend(Timer.Sample sample, OutboxEvent event, boolean success) {
+
+        String outcome = success ? "success" : "failure";
+        sample.stop(Timer.builder("notification.replies.send")
+                .description("Latency from handing a reply to the producer until the broker acknowledged it")
+                .tag("eventType", event.getEventType())
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+        if (success) {
+            Timer.builder("notification.replies.delay")
+                    .description("Time from storing a reply in the outbox until it was published")
+                    .tag("eventType", event.getEventType())
+                    .register(meterRegistry)
+                    .record(Duration.between(event.getCreatedOn(), LocalDateTime.now()));
+        }
+    }
+
+    private EventMessage<JsonNode> toMessage(OutboxEvent event) throws Exception {
+
+        return new EventMessage<>(event.getEventType(), objectMapper.readTree(event.getPayload()));
+    }
+}
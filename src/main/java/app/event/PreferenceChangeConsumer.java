@@ -0,0 +1,53 @@
+package app.event;
+
+import app.event.payload.PreferenceChangedKafka;
+import app.service.PreferenceCache;
+import app.service.ReadYourWrites;
+import app.web.mapper.DtoMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+public class PreferenceChangeConsumer {
+
+    private final PreferenceCache preferenceCache;
+    private final ReadYourWrites readYourWrites;
+
+    @Autowired
+    public PreferenceChangeConsumer(PreferenceCache preferenceCache, ReadYourWrites readYourWrites) {
+        this.preferenceCache = preferenceCache;
+        this.readYourWrites = readYourWrites;
+    }
+
+    // every instance uses its own consumer group, so each of them sees every change
+    @KafkaListener(
+            id = "preference-change-listener",
+            topics = "${app.kafka.preference-topic}",
+            groupId = "#{'${spring.kafka.consumer.group-id}-preferences-' + T(app.event.PreferenceChangePublisher).INSTANCE_ID}"
+    )
+    public void consumePreferenceChange(EventMessage<?> eventMessage) {
+
+        if (eventMessage == null || !(eventMessage.getPayload() instanceof PreferenceChangedKafka change)) {
+            log.warn("Ignoring preference change without valid payload: {}", eventMessage);
+            return;
+        }
+        if (PreferenceChangePublisher.INSTANCE_ID.equals(change.getOrigin())) {
+            return;
+        }
+        if (change.getUserId() == null) {
+            log.warn("Ignoring preference change without userId: {}", eventMessage);
+            return;
+        }
+        // a replica may not have the change yet
+        readYourWrites.wrote(change.getUserId());
+        if (change.getUpdatedOn() == null) {
+            // announcement only, as published before the topic carried the preference state
+            preferenceCache.evict(change.getUserId());
+            return;
+        }
+        preferenceCache.changed(DtoMapper.fromPreferenceChangedKafka(change));
+    }
+}
@@ -0,0 +1,51 @@
+package app.event;
+
+import app.event.payload.PreferenceChangedKafka;
+import app.model.NotificationPreference;
+import app.web.mapper.DtoMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes the state of changed preferences on the compacted preference topic (keyed by userId), so that
+ * every instance can drop its cached copy and a starting instance can replay the current preferences.
+ */
+@Component
+@Slf4j
+public class PreferenceChangePublisher {
+
+    public static final String INSTANCE_ID = UUID.randomUUID().toString();
+
+    private final KafkaTemplate<String, EventMessage<?>> kafkaTemplate;
+    private final String preferenceTopic;
+
+    @Autowired
+    public PreferenceChangePublisher(KafkaTemplate<String, EventMessage<?>> kafkaTemplate,
+                                     @Value("${app.kafka.preference-topic}") String preferenceTopic) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.preferenceTopic = preferenceTopic;
+    }
+
+    /**
+     * Completes exceptionally if the change could not be published; the other instances then keep their
+     * old copy until it expires.
+     */
+    public CompletableFuture<?> publish(NotificationPreference preference) {
+
+        UUID userId = preference.getUserId();
+        PreferenceChangedKafka change = DtoMapper.fromNotificationPreferenceChange(preference, INSTANCE_ID);
+
+        return kafkaTemplate.send(preferenceTopic, userId.toString(), new EventMessage<>("PREFERENCE_CHANGED", change))
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        log.error("Failed to publish preference change for user {}: {}", userId, ex.getMessage());
+                    }
+                });
+    }
+}
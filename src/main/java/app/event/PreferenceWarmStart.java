@@ -0,0 +1,172 @@
+package app.event;
+
+import app.event.payload.PreferenceChangedKafka;
+import app.service.PreferenceStore;
+import app.web.mapper.DtoMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * Fills the {@link PreferenceStore} from the compacted preference topic before the instance takes events.
+ * With app.preferences.warm-start.enabled the input listeners don't start with the context; once the
+ * application is ready, every partition of the preference topic is read from the beginning up to its end
+ * offset as of the start, and only then the listener of app.kafka.listener.mode is started. Changes
+ * published meanwhile reach the store through {@link PreferenceChangeConsumer}.
+ * <p>
+ * Until the replay is done this reports OUT_OF_SERVICE, which keeps the readiness probe down. A replay
+ * that fails or takes longer than the timeout is logged and given up on: the instance starts with what it
+ * has and looks the other preferences up in the database.
+ */
+@Component
+@Slf4j
+public class PreferenceWarmStart implements HealthIndicator {
+
+    private static final Map<String, String> LISTENER_IDS = Map.of(
+            "record", "notification-event-listener",
+            "batch", "notification-batch-event-listener",
+            "parallel", "notification-parallel-event-listener");
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final PreferenceStore preferenceStore;
+    private final ConsumerFactory<Object, Object> consumerFactory;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final String preferenceTopic;
+    private final String listenerMode;
+    private final Duration timeout;
+    private final Timer replayTimer;
+
+    private volatile boolean ready;
+    private volatile long replayed;
+
+    @Autowired
+    public PreferenceWarmStart(PreferenceStore preferenceStore,
+                               ConsumerFactory<Object, Object> consumerFactory,
+                               KafkaListenerEndpointRegistry listenerRegistry,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.kafka.preference-topic}") String preferenceTopic,
+                               @Value("${app.kafka.listener.mode:record}") String listenerMode,
+                               @Value("${app.preferences.warm-start.timeout:PT2M}") Duration timeout) {
+        this.preferenceStore = preferenceStore;
+        this.consumerFactory = consumerFactory;
+        this.listenerRegistry = listenerRegistry;
+        this.preferenceTopic = preferenceTopic;
+        this.listenerMode = listenerMode;
+        this.timeout = timeout;
+        this.replayTimer = Timer.builder("notification.preferences.warm-start")
+                .description("Time to replay the preference topic into the preference store")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+
+        if (!preferenceStore.isEnabled()) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        // off the startup thread, so the web server answers the liveness probe meanwhile
+        Thread thread = new Thread(() -> warmUp(() -> consumerFactory.createConsumer(
+                null, "preference-warm-start", null, properties)), "preference-warm-start");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Replays the preference topic with a consumer from the supplier, then starts the input listener and
+     * reports ready.
+     */
+    void warmUp(Supplier<Consumer<Object, Object>> consumers) {
+
+        long started = System.nanoTime();
+        try (Consumer<Object, Object> consumer = consumers.get()) {
+            replay(consumer, started + timeout.toNanos());
+        } catch (RuntimeException e) {
+            log.error("Replaying {} failed, starting with {} stored preferences: {}",
+                    preferenceTopic, preferenceStore.size(), e.getMessage());
+        } finally {
+            replayTimer.record(Duration.ofNanos(System.nanoTime() - started));
+            startListener();
+            ready = true;
+        }
+    }
+
+    @Override
+    public Health health() {
+
+        if (!preferenceStore.isEnabled()) {
+            return Health.up().build();
+        }
+        return (ready ? Health.up() : Health.outOfService())
+                .withDetail("replayed", replayed)
+                .withDetail("preferences", preferenceStore.size())
+                .build();
+    }
+
+    private void replay(Consumer<Object, Object> consumer, long deadline) {
+
+        List<TopicPartition> partitions = consumer.partitionsFor(preferenceTopic, timeout).stream()
+                .map(partition -> new TopicPartition(partition.topic(), partition.partition()))
+                .toList();
+        consumer.assign(partitions);
+        consumer.seekToBeginning(partitions);
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions, timeout);
+
+        while (!caughtUp(consumer, endOffsets)) {
+            if (System.nanoTime() > deadline) {
+                log.warn("Replaying {} took longer than {}, starting with {} stored preferences",
+                        preferenceTopic, timeout, preferenceStore.size());
+                return;
+            }
+            for (ConsumerRecord<Object, Object> record : consumer.poll(POLL_TIMEOUT)) {
+                if (record.value() instanceof EventMessage<?> message
+                        && message.getPayload() instanceof PreferenceChangedKafka change
+                        && change.getUserId() != null) {
+                    preferenceStore.apply(DtoMapper.fromPreferenceChangedKafka(change));
+                }
+                replayed++;
+            }
+        }
+        log.info("Replayed {} records of {}, {} preferences stored", replayed, preferenceTopic, preferenceStore.size());
+    }
+
+    private static boolean caughtUp(Consumer<Object, Object> consumer, Map<TopicPartition, Long> endOffsets) {
+
+        for (Map.Entry<TopicPartition, Long> endOffset : endOffsets.entrySet()) {
+            if (consumer.position(endOffset.getKey()) < endOffset.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startListener() {
+
+        String listenerId = LISTENER_IDS.get(listenerMode);
+        MessageListenerContainer container = listenerId == null ? null : listenerRegistry.getListenerContainer(listenerId);
+        if (container != null && !container.isRunning()) {
+            container.start();
+        }
+    }
+}
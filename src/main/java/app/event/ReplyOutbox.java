@@ -0,0 +1,83 @@
+package app.event;
+
+import app.model.OutboxEvent;
+import app.model.ProcessedEvent;
+import app.repository.OutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Stores replies in the outbox table instead of sending them. Called inside the transaction that
+ * writes the notification or preference, the reply is committed (or rolled back) together with it;
+ * {@link OutboxRelay} publishes it afterwards.
+ */
+@Component
+public class ReplyOutbox {
+
+    // same mapper as the JsonSerializer of the reply template, so the payload looks as if sent directly
+    private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper();
+    private final OutboxRepository outboxRepository;
+    private final String replyTopic;
+
+    @Autowired
+    public ReplyOutbox(OutboxRepository outboxRepository,
+                       @Value("${app.kafka.reply-topic}") String replyTopic) {
+        this.outboxRepository = outboxRepository;
+        this.replyTopic = replyTopic;
+    }
+
+    public OutboxEvent enqueue(String eventType, Object key, Object payload) {
+
+        return outboxRepository.save(toOutboxEvent(eventType, key, payload));
+    }
+
+    /**
+     * Enqueues the reply an event was answered with when it was processed, for a redelivered copy of it.
+     */
+    public void enqueueReplay(ProcessedEvent processed) {
+
+        if (processed.getReplyEventType() == null) {
+            return;
+        }
+        outboxRepository.save(newOutboxEvent(processed.getReplyEventType(), processed.getReplyKey(), processed.getReplyPayload()));
+    }
+
+    public void enqueueAll(List<OutboxEvent> events) {
+
+        outboxRepository.saveAll(events);
+    }
+
+    public OutboxEvent toOutboxEvent(String eventType, Object key, Object payload) {
+
+        return newOutboxEvent(eventType, key == null ? null : key.toString(), write(payload));
+    }
+
+    private OutboxEvent newOutboxEvent(String eventType, String key, String payload) {
+
+        LocalDateTime now = LocalDateTime.now();
+        return OutboxEvent.builder()
+                .topic(replyTopic)
+                .messageKey(key)
+                .eventType(eventType)
+                .payload(payload)
+                .createdOn(now)
+                .nextAttemptAt(now)
+                .build();
+    }
+
+    private String write(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package app.event;
+
+/**
+ * An event that no handler can process, e.g. one without or with an unknown eventType. It is sent to
+ * the dead-letter topic right away, since retrying it cannot succeed.
+ */
+public class UnprocessableEventException extends RuntimeException {
+
+    public UnprocessableEventException(String message) {
+        super(message);
+    }
+}
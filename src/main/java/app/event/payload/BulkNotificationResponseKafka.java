@@ -0,0 +1,29 @@
+package app.event.payload;
+
+import app.model.BulkJobStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+public class BulkNotificationResponseKafka {
+
+    private UUID jobId;
+
+    private BulkJobStatus status;
+
+    private int totalRecipients;
+
+    private int totalChunks;
+
+    @Builder.Default
+    private boolean success = true;
+
+    private String error;
+
+    @Builder.Default
+    private LocalDateTime timestamp = LocalDateTime.now();
+}
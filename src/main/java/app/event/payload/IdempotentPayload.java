@@ -0,0 +1,12 @@
+package app.event.payload;
+
+/**
+ * Payload of an event that is processed at most once per idempotency key. The key comes from the payload
+ * itself or, if absent, from the eventId header or field of the event.
+ */
+public interface IdempotentPayload {
+
+    String getIdempotencyKey();
+
+    void setIdempotencyKey(String idempotencyKey);
+}
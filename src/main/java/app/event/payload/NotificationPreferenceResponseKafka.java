@@ -16,6 +16,7 @@ public class NotificationPreferenceResponseKafka {
     private NotificationType type;
     private boolean enabled;
     private String contactInfo;
+    private int digestWindowMinutes;
 
     @Builder.Default
     private boolean success = true;
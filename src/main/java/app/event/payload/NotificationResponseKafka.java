@@ -12,6 +12,8 @@ import java.util.UUID;
 @Builder
 public class NotificationResponseKafka {
 
+    private UUID id;
+
     private UUID userId;
 
     private String subject;
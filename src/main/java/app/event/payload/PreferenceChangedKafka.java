@@ -0,0 +1,38 @@
+package app.event.payload;
+
+import app.model.NotificationType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The state of a preference after a change. The preference topic is compacted by userId, so its latest
+ * record per user is the current preference; records without updatedOn only announce a change.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PreferenceChangedKafka {
+
+    private UUID userId;
+
+    private String origin;
+
+    private NotificationType type;
+
+    private String contactInfo;
+
+    private boolean enabled;
+
+    private int digestWindowMinutes;
+
+    private LocalDateTime updatedOn;
+
+    @Builder.Default
+    private LocalDateTime timestamp = LocalDateTime.now();
+}
@@ -2,6 +2,7 @@ package app.event.payload;
 
 import app.web.dto.NotificationTypeRequest;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,7 +14,7 @@ import java.util.UUID;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-public class UpsertNotificationPreference {
+public class UpsertNotificationPreference implements IdempotentPayload {
 
     @NotNull
     private UUID userId;
@@ -24,4 +25,9 @@ public class UpsertNotificationPreference {
     private NotificationTypeRequest type;
 
     private String contactInfo;
+
+    @PositiveOrZero
+    private int digestWindowMinutes;
+
+    private String idempotencyKey;
 }
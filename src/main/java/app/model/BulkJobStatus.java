@@ -0,0 +1,7 @@
+package app.model;
+
+public enum BulkJobStatus {
+    RUNNING, COMPLETED,
+    // no chunk was recorded for a while, e.g. the instance running it was stopped; its unsent recipients are lost
+    INTERRUPTED
+}
@@ -0,0 +1,56 @@
+package app.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkNotificationJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false)
+    private String body;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private BulkJobStatus status;
+
+    private int totalRecipients;
+
+    private int totalChunks;
+
+    private int completedChunks;
+
+    private int processedRecipients;
+
+    private int sentRecipients;
+
+    private int failedRecipients;
+
+    // recipients left to the retry scan after a transient failure
+    private int retryingRecipients;
+
+    // recipients without an enabled preference
+    private int skippedRecipients;
+
+    @Column(nullable = false)
+    private LocalDateTime createdOn;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedOn;
+}
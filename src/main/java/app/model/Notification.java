@@ -1,10 +1,13 @@
 package app.model;
 
+import app.service.NotificationBodyListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -13,6 +16,13 @@ import java.util.UUID;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(indexes = {
+        @Index(name = "idx_notification_status_created_on", columnList = "status, createdOn"),
+        @Index(name = "idx_notification_user_created_on_id", columnList = "userId, createdOn, id"),
+        @Index(name = "idx_notification_status_next_attempt_at", columnList = "status, nextAttemptAt"),
+        @Index(name = "idx_notification_body_hash", columnList = "bodyHash")
+})
+@EntityListeners(NotificationBodyListener.class)
 public class Notification {
 
     @Id
@@ -22,12 +32,30 @@ public class Notification {
     @Column(nullable = false)
     private String subject;
 
-    @Column(nullable = false)
+    // long bodies are stored once per content as a NotificationBody and referenced by bodyHash; short ones
+    // stay inline. Either way body is filled on load, see NotificationBodyListener
+    @Transient
     private String body;
 
+    @JsonIgnore
+    @Column(name = "body", nullable = false, length = 10000)
+    private String inlineBody;
+
+    @Column(length = 64)
+    private String bodyHash;
+
+    // the template the subject and body were rendered from, if any
+    @Column(length = 100)
+    private String templateId;
+
     @Column(nullable = false)
     private LocalDateTime createdOn;
 
+    // last change of the row, so that the counter reconciliation can leave alone users whose changes may not
+    // be counted yet; the bulk updates of NotificationRepository set it themselves
+    @UpdateTimestamp
+    private LocalDateTime updatedOn;
+
     @Column(nullable = false)
     @Enumerated(EnumType.STRING)
     private NotificationStatus status;
@@ -38,5 +66,17 @@ public class Notification {
 
     private UUID userId;
 
+    private String recipient;
+
     private boolean deleted;
+
+    // number of times sending was tried; RETRYING notifications are sent again at nextAttemptAt,
+    // SENDING ones are taken back at nextAttemptAt if their sender never recorded the outcome
+    @Column(nullable = false)
+    private int attempts;
+
+    private LocalDateTime nextAttemptAt;
+
+    // DIGESTED notifications: the digest notification they were delivered with
+    private UUID deliveryId;
 }
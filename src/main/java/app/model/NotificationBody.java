@@ -0,0 +1,37 @@
+package app.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A notification body stored once per content, keyed by the SHA-256 of its text and referenced from
+ * {@link Notification#getBodyHash()}. Rows are written and read by app.service.NotificationBodyStore and
+ * deleted by app.service.NotificationRetention once no notification references them.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationBody {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    // UTF-8 text, gzipped when compressed
+    @Lob
+    @Column(nullable = false, length = 16_777_215)
+    private byte[] content;
+
+    private boolean compressed;
+
+    // set again whenever a notification is stored with this body, so retention leaves bodies in use alone
+    @Column(nullable = false)
+    private LocalDateTime createdOn;
+}
@@ -0,0 +1,45 @@
+package app.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * How many notifications of a user are in one status ("status.FAILED") or of one type ("type.EMAIL").
+ * Maintained incrementally by app.service.NotificationCounters and corrected by its reconciliation.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(NotificationCounter.Key.class)
+public class NotificationCounter {
+
+    @Id
+    private UUID userId;
+
+    @Id
+    @Column(length = 40)
+    private String counter;
+
+    private long total;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedOn;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+
+        private UUID userId;
+        private String counter;
+    }
+}
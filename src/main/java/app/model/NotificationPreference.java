@@ -31,6 +31,9 @@ public class NotificationPreference {
 
     private String contactInfo;
 
+    // notifications are collected for this many minutes and sent as one digest email; 0 = send each one
+    private int digestWindowMinutes;
+
     @Column(nullable = false)
 
     private LocalDateTime createdOn;
@@ -0,0 +1,37 @@
+package app.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A named subject and body with {{variable}} placeholders, rendered for NOTIFICATION_REQUESTs that carry a
+ * templateId instead of literal text.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationTemplate {
+
+    @Id
+    @Column(length = 100)
+    private String id;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, length = 10000)
+    private String body;
+
+    @Column(nullable = false)
+    private LocalDateTime createdOn;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedOn;
+}
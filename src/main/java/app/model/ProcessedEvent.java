@@ -0,0 +1,50 @@
+package app.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * An event that was processed, keyed by its idempotency key, with the reply it was answered with so that
+ * a redelivered copy can be answered the same way.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = @Index(name = "idx_processed_event_processed_on", columnList = "processedOn"))
+public class ProcessedEvent implements Persistable<String> {
+
+    @Id
+    private String idempotencyKey;
+
+    @Column(nullable = false)
+    private String eventType;
+
+    private String replyEventType;
+
+    private String replyKey;
+
+    @Lob
+    private String replyPayload;
+
+    @Column(nullable = false)
+    private LocalDateTime processedOn;
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    // rows are only ever inserted; without this save() would look the key up before inserting
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
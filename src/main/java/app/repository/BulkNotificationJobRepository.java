@@ -0,0 +1,50 @@
+package app.repository;
+
+import app.model.BulkNotificationJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface BulkNotificationJobRepository extends JpaRepository<BulkNotificationJob, UUID> {
+
+    // chunks finish concurrently, so progress is added in the database instead of read-modify-write, and the
+    // chunk that completes the job marks it; the status comes first as MySQL assigns with the updated values
+    @Transactional
+    @Modifying
+    @Query("""
+            update BulkNotificationJob j
+            set j.status = case when j.completedChunks + 1 >= j.totalChunks
+                    then app.model.BulkJobStatus.COMPLETED else j.status end,
+                j.completedChunks = j.completedChunks + 1,
+                j.processedRecipients = j.processedRecipients + :processed,
+                j.sentRecipients = j.sentRecipients + :sent,
+                j.failedRecipients = j.failedRecipients + :failed,
+                j.retryingRecipients = j.retryingRecipients + :retrying,
+                j.skippedRecipients = j.skippedRecipients + :skipped,
+                j.updatedOn = :now
+            where j.id = :id
+            """)
+    int recordChunk(@Param("id") UUID id,
+                    @Param("processed") int processed,
+                    @Param("sent") int sent,
+                    @Param("failed") int failed,
+                    @Param("retrying") int retrying,
+                    @Param("skipped") int skipped,
+                    @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update BulkNotificationJob j
+            set j.status = app.model.BulkJobStatus.INTERRUPTED, j.updatedOn = :now
+            where j.status = app.model.BulkJobStatus.RUNNING and j.updatedOn < :staleBefore
+            """)
+    int interruptStale(@Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+}
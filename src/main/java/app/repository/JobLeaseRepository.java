@@ -0,0 +1,38 @@
+package app.repository;
+
+import app.model.JobLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    // the conditional update makes sure only one instance takes an expired lease
+    @Transactional
+    @Modifying
+    @Query("""
+            update JobLease l set l.owner = :owner, l.leasedUntil = :leasedUntil
+            where l.name = :name and (l.leasedUntil <= :now or l.owner = :owner)
+            """)
+    int take(@Param("name") String name,
+             @Param("owner") String owner,
+             @Param("leasedUntil") LocalDateTime leasedUntil,
+             @Param("now") LocalDateTime now);
+
+    // the first run of a job; an instance inserting the same lease concurrently wins
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            insert ignore into job_lease (name, owner, leased_until)
+            values (:name, :owner, :leasedUntil)
+            """)
+    int create(@Param("name") String name,
+               @Param("owner") String owner,
+               @Param("leasedUntil") LocalDateTime leasedUntil);
+}
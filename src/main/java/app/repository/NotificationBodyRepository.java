@@ -0,0 +1,37 @@
+package app.repository;
+
+import app.model.NotificationBody;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationBodyRepository extends JpaRepository<NotificationBody, String> {
+
+    // keyset on the hash; the reference check is served by idx_notification_body_hash
+    @Query("""
+            select b.hash from NotificationBody b
+            where b.hash > :hash and b.createdOn < :before
+              and not exists (select 1 from Notification n where n.bodyHash = b.hash)
+            order by b.hash
+            """)
+    List<String> findUnreferencedHashes(@Param("hash") String hash, @Param("before") LocalDateTime before, Limit limit);
+
+    // checked again, as a notification may have been stored with one of the bodies since they were found
+    @Transactional
+    @Modifying
+    @Query("""
+            delete from NotificationBody b
+            where b.hash in :hashes and b.createdOn < :before
+              and not exists (select 1 from Notification n where n.bodyHash = b.hash)
+            """)
+    int deleteUnreferenced(@Param("hashes") Collection<String> hashes, @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,39 @@
+package app.repository;
+
+import app.model.NotificationCounter;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface NotificationCounterRepository extends JpaRepository<NotificationCounter, NotificationCounter.Key> {
+
+    List<NotificationCounter> findAllByUserId(UUID userId);
+
+    List<NotificationCounter> findAllByUserIdIn(Collection<UUID> userIds);
+
+    // every instance flushes into the same rows, so deltas are added in the database
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            insert into notification_counter (user_id, counter, total, updated_on)
+            values (:userId, :counter, :delta, :now)
+            on duplicate key update total = total + :delta, updated_on = :now
+            """)
+    int add(@Param("userId") UUID userId,
+            @Param("counter") String counter,
+            @Param("delta") long delta,
+            @Param("now") LocalDateTime now);
+
+    @Query("select distinct c.userId from NotificationCounter c where c.userId > :after order by c.userId")
+    List<UUID> findUserIdsAfter(@Param("after") UUID after, Limit limit);
+}
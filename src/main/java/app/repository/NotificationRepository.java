@@ -1,13 +1,170 @@
 package app.repository;
 
 import app.model.Notification;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.*;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, UUID> {
 
     List<Notification> findAllByUserIdAndDeletedIsFalse(UUID userid);
+
+    @Query("""
+            select n from Notification n
+            where n.userId = :userId and n.deleted = false
+            order by n.createdOn desc, n.id desc
+            """)
+    List<Notification> findFirstHistoryPage(@Param("userId") UUID userId, Limit limit);
+
+    // keyset condition on (createdOn, id): every page is an index range scan, however deep it is
+    @Query("""
+            select n from Notification n
+            where n.userId = :userId and n.deleted = false
+              and (n.createdOn < :createdOn or (n.createdOn = :createdOn and n.id < :id))
+            order by n.createdOn desc, n.id desc
+            """)
+    List<Notification> findHistoryPageAfter(@Param("userId") UUID userId,
+                                            @Param("createdOn") LocalDateTime createdOn,
+                                            @Param("id") UUID id,
+                                            Limit limit);
+
+    @Query("select distinct n.userId from Notification n where n.userId > :after order by n.userId")
+    List<UUID> findUserIdsAfter(@Param("after") UUID after, Limit limit);
+
+    @Query("""
+            select n.userId as userId, n.status as status, n.type as type, count(n) as total
+            from Notification n
+            where n.userId in :userIds and n.deleted = false
+            group by n.userId, n.status, n.type
+            """)
+    List<StatusTypeCount> countByUserIdIn(@Param("userIds") Collection<UUID> userIds);
+
+    // forward-only streaming; on MySQL the fetch size needs useCursorFetch=true on the JDBC url
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query("""
+            select n from Notification n
+            where n.userId = :userId and n.deleted = false
+              and n.createdOn >= :from and n.createdOn < :to
+            order by n.createdOn, n.id
+            """)
+    Stream<Notification> streamHistory(@Param("userId") UUID userId,
+                                       @Param("from") LocalDateTime from,
+                                       @Param("to") LocalDateTime to);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query("""
+            select n from Notification n
+            where n.deleted = false
+              and n.createdOn >= :from and n.createdOn < :to
+            order by n.createdOn, n.id
+            """)
+    Stream<Notification> streamAllHistory(@Param("from") LocalDateTime from,
+                                          @Param("to") LocalDateTime to);
+
+    List<Notification> findTop100ByStatusAndCreatedOnBeforeOrderByCreatedOn(NotificationStatus status, LocalDateTime createdOn);
+
+    // SENDING rows carry the end of their lease in nextAttemptAt, so that a sweep can take back the ones never finished
+    @Transactional
+    @Modifying
+    @Query("""
+            update Notification n set n.status = app.model.NotificationStatus.SENDING, n.nextAttemptAt = :leaseUntil,
+                n.updatedOn = local datetime
+            where n.id = :id and n.status = :from
+            """)
+    int claimForSending(@Param("id") UUID id,
+                        @Param("from") NotificationStatus from,
+                        @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    // served by idx_notification_status_next_attempt_at
+    List<Notification> findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(NotificationStatus status,
+                                                                                    LocalDateTime nextAttemptAt,
+                                                                                    Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update Notification n set n.status = :to, n.attempts = :attempts, n.nextAttemptAt = :nextAttemptAt,
+                n.updatedOn = local datetime
+            where n.id = :id and n.status = :from
+            """)
+    int updateDelivery(@Param("id") UUID id,
+                       @Param("from") NotificationStatus from,
+                       @Param("to") NotificationStatus to,
+                       @Param("attempts") int attempts,
+                       @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    @Query("select distinct n.userId from Notification n where n.userId in :userIds and n.updatedOn > :since")
+    List<UUID> findUserIdsUpdatedSince(@Param("userIds") Collection<UUID> userIds, @Param("since") LocalDateTime since);
+
+    List<Notification> findAllByUserIdAndStatusOrderByCreatedOn(UUID userId, NotificationStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update Notification n set n.status = app.model.NotificationStatus.DIGESTED, n.deliveryId = :deliveryId, n.nextAttemptAt = null,
+                n.updatedOn = local datetime
+            where n.id in :ids and n.status = app.model.NotificationStatus.BUFFERED
+            """)
+    int markDigested(@Param("ids") Collection<UUID> ids, @Param("deliveryId") UUID deliveryId);
+
+    // retention chunks: keyset on (createdOn, id) within one status, served by idx_notification_status_created_on
+    @Query("""
+            select n from Notification n
+            where n.status = :status and n.createdOn < :before
+              and (n.deleted = true or :deletedOnly = false)
+              and (n.createdOn > :createdOn or (n.createdOn = :createdOn and n.id > :id))
+            order by n.createdOn, n.id
+            """)
+    List<Notification> findRetentionChunk(@Param("status") NotificationStatus status,
+                                          @Param("before") LocalDateTime before,
+                                          @Param("deletedOnly") boolean deletedOnly,
+                                          @Param("createdOn") LocalDateTime createdOn,
+                                          @Param("id") UUID id,
+                                          Limit limit);
+
+    // records the outcome of one attempt for rows stored as SENDING; rows reclaimed meanwhile are left alone
+    @Transactional
+    @Modifying
+    @Query("""
+            update Notification n set n.status = :status, n.attempts = n.attempts + 1, n.nextAttemptAt = null,
+                n.updatedOn = local datetime
+            where n.id in :ids and n.status = app.model.NotificationStatus.SENDING
+            """)
+    int finishSending(@Param("ids") Collection<UUID> ids, @Param("status") NotificationStatus status);
+
+    interface StatusTypeCount {
+
+        UUID getUserId();
+
+        NotificationStatus getStatus();
+
+        NotificationType getType();
+
+        long getTotal();
+    }
 }
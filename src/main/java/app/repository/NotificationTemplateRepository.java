@@ -0,0 +1,9 @@
+package app.repository;
+
+import app.model.NotificationTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface NotificationTemplateRepository extends JpaRepository<NotificationTemplate, String> {
+}
@@ -0,0 +1,28 @@
+package app.repository;
+
+import app.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface OutboxRepository extends JpaRepository<OutboxEvent, UUID> {
+
+    // -2 = SKIP LOCKED where the database supports it, so several relays can drain in parallel
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from OutboxEvent e where e.nextAttemptAt <= :now order by e.createdOn")
+    List<OutboxEvent> lockDueEvents(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Modifying
+    @Query("update OutboxEvent e set e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt where e.id in :ids")
+    int postpone(@Param("ids") Collection<UUID> ids, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+}
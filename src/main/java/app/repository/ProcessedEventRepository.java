@@ -0,0 +1,31 @@
+package app.repository;
+
+import app.model.ProcessedEvent;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.*;
+
+@Repository
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, String> {
+
+    // served by idx_processed_event_processed_on
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p.idempotencyKey from ProcessedEvent p order by p.processedOn desc")
+    Stream<String> streamRecentKeys(Limit limit);
+
+    @Query("select p.idempotencyKey from ProcessedEvent p where p.processedOn < :before order by p.processedOn")
+    List<String> findKeysProcessedBefore(@Param("before") LocalDateTime before, Limit limit);
+}
@@ -0,0 +1,222 @@
+package app.service;
+
+import app.model.BulkJobStatus;
+import app.model.BulkNotificationJob;
+import app.model.Notification;
+import app.model.NotificationPreference;
+import app.model.NotificationStatus;
+import app.repository.BulkNotificationJobRepository;
+import app.repository.NotificationRepository;
+import app.web.dto.BulkNotificationRequest;
+import app.web.dto.NotificationRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Sends one subject/body to many users. Recipients are split into chunks that run in parallel on the
+ * bulk pool; each chunk loads its preferences in one query, inserts its notifications as JDBC batches
+ * and sends its emails in slices paced by the mail rate limit. The job row records the progress per chunk,
+ * and the chunk that completes the job marks it COMPLETED in the same update.
+ * Rows are stored as SENDING under the dispatcher's sending lease: a chunk that breaks off releases its
+ * unsent rows to be retried, and the rows of a chunk cut short by a restart are reclaimed once the lease
+ * has run out. Recipient lists are only held in memory, so the chunks queued by a stopped instance are lost;
+ * a RUNNING job without progress for stale-after is marked INTERRUPTED, at startup and then periodically.
+ */
+@Service
+@Slf4j
+public class BulkNotificationService {
+
+    private final NotificationService notificationService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final NotificationRepository notificationRepository;
+    private final BulkNotificationJobRepository jobRepository;
+    private final TaskExecutor bulkExecutor;
+    private final NotificationCounters notificationCounters;
+    private final int chunkSize;
+    private final Duration staleAfter;
+
+    @Autowired
+    public BulkNotificationService(NotificationService notificationService,
+                                   NotificationDispatcher notificationDispatcher,
+                                   NotificationRepository notificationRepository,
+                                   BulkNotificationJobRepository jobRepository,
+                                   @Qualifier("bulkNotificationExecutor") TaskExecutor bulkExecutor,
+                                   NotificationCounters notificationCounters,
+                                   @Value("${app.notifications.bulk.chunk-size:500}") int chunkSize,
+                                   @Value("${app.notifications.bulk.stale-after:PT30M}") Duration staleAfter) {
+        this.notificationService = notificationService;
+        this.notificationDispatcher = notificationDispatcher;
+        this.notificationRepository = notificationRepository;
+        this.jobRepository = jobRepository;
+        this.bulkExecutor = bulkExecutor;
+        this.notificationCounters = notificationCounters;
+        this.chunkSize = chunkSize;
+        this.staleAfter = staleAfter;
+    }
+
+    /**
+     * Stores the job and queues its chunks. Inside a transaction the chunks are queued only after commit.
+     */
+    public BulkNotificationJob submit(BulkNotificationRequest request) {
+
+        if (request.getSubject() == null || request.getSubject().isBlank()
+                || request.getBody() == null || request.getBody().isBlank()) {
+            throw new IllegalArgumentException("Bulk notification requires a subject and a body.");
+        }
+
+        List<UUID> userIds = request.getUserIds() == null ? List.of() : request.getUserIds()
+                .stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        List<List<UUID>> chunks = new ArrayList<>();
+        for (int from = 0; from < userIds.size(); from += chunkSize) {
+            chunks.add(userIds.subList(from, Math.min(from + chunkSize, userIds.size())));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        BulkNotificationJob job = jobRepository.save(BulkNotificationJob.builder()
+                .subject(request.getSubject())
+                .body(request.getBody())
+                .status(chunks.isEmpty() ? BulkJobStatus.COMPLETED : BulkJobStatus.RUNNING)
+                .totalRecipients(userIds.size())
+                .totalChunks(chunks.size())
+                .createdOn(now)
+                .updatedOn(now)
+                .build());
+        if (chunks.isEmpty()) {
+            return job;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    chunks.forEach(chunk -> enqueue(job, chunk));
+                }
+            });
+        } else {
+            chunks.forEach(chunk -> enqueue(job, chunk));
+        }
+        log.info("Started bulk job {} for {} recipients in {} chunks", job.getId(), userIds.size(), chunks.size());
+        return job;
+    }
+
+    public Optional<BulkNotificationJob> getJob(UUID jobId) {
+
+        return jobRepository.findById(jobId);
+    }
+
+    /**
+     * Marks RUNNING jobs without progress for stale-after as INTERRUPTED. A job whose chunks were only slow
+     * still becomes COMPLETED with its last chunk.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.notifications.bulk.stale-check-interval:PT5M}",
+            initialDelayString = "${app.notifications.bulk.stale-check-interval:PT5M}")
+    public void interruptStaleJobs() {
+
+        LocalDateTime now = LocalDateTime.now();
+        int interrupted = jobRepository.interruptStale(now.minus(staleAfter), now);
+        if (interrupted > 0) {
+            log.warn("Marked {} bulk jobs without progress for {} as interrupted", interrupted, staleAfter);
+        }
+    }
+
+    private void enqueue(BulkNotificationJob job, List<UUID> userIds) {
+
+        try {
+            bulkExecutor.execute(() -> processChunk(job, userIds));
+        } catch (TaskRejectedException e) {
+            log.warn("Bulk queue is full, {} recipients of job {} are not notified", userIds.size(), job.getId());
+            completeChunk(job.getId(), userIds.size(), 0, userIds.size(), 0, 0);
+        }
+    }
+
+    void processChunk(BulkNotificationJob job, List<UUID> userIds) {
+
+        int sent = 0;
+        int failed = 0;
+        int retrying = 0;
+        int skipped = 0;
+        List<Notification> stored = List.of();
+        try {
+            Map<UUID, NotificationPreference> preferences = notificationService.getPreferencesByUserIds(userIds);
+
+            List<Notification> notifications = new ArrayList<>(userIds.size());
+            for (UUID userId : userIds) {
+                NotificationRequest request = new NotificationRequest(userId, job.getSubject(), job.getBody());
+                try {
+                    notifications.add(notificationService.buildNotification(request, preferences.get(userId)));
+                } catch (RuntimeException e) {
+                    skipped++;
+                }
+            }
+
+            // SENDING keeps the rows away from the pending sweep while this chunk delivers them
+            notificationDispatcher.leaseForSending(notifications);
+            notificationRepository.saveAll(notifications);
+            stored = notifications;
+            notificationCounters.created(notifications);
+            notificationDispatcher.deliverAll(notifications);
+
+            sent = finishSending(notifications, NotificationStatus.SUCCEEDED);
+            failed = finishSending(notifications, NotificationStatus.FAILED);
+            // each one carries its own backoff, the retry scan takes them from here
+            retrying = notificationDispatcher.recordAll(notifications.stream()
+                    .filter(notification -> notification.getStatus() == NotificationStatus.RETRYING)
+                    .toList());
+        } catch (Exception e) {
+            log.error("Bulk job {} failed to process a chunk of {} recipients", job.getId(), userIds.size(), e);
+            failed = userIds.size() - sent - retrying - skipped;
+            releaseUnsent(job, stored);
+        } finally {
+            completeChunk(job.getId(), userIds.size(), sent, failed, retrying, skipped);
+        }
+    }
+
+    private int finishSending(List<Notification> notifications, NotificationStatus status) {
+
+        List<Notification> finished = notifications.stream()
+                .filter(notification -> notification.getStatus() == status)
+                .toList();
+        if (!finished.isEmpty()) {
+            notificationRepository.finishSending(finished.stream().map(Notification::getId).toList(), status);
+            notificationCounters.moved(finished, NotificationStatus.SENDING, status);
+        }
+        return finished.size();
+    }
+
+    // the lease would reclaim them too, but only minutes later
+    private void releaseUnsent(BulkNotificationJob job, List<Notification> stored) {
+
+        try {
+            int released = notificationDispatcher.release(stored);
+            if (released > 0) {
+                log.info("Released {} notifications of bulk job {} left SENDING", released, job.getId());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Bulk job {} could not release its notifications, they wait for the sending lease: {}",
+                    job.getId(), e.getMessage());
+        }
+    }
+
+    private void completeChunk(UUID jobId, int processed, int sent, int failed, int retrying, int skipped) {
+
+        jobRepository.recordChunk(jobId, processed, sent, failed, retrying, skipped, LocalDateTime.now());
+    }
+}
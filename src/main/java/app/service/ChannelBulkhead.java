@@ -0,0 +1,165 @@
+package app.service;
+
+import app.model.Notification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Isolates one {@link NotificationChannel}: queued sends run on the channel's own bounded executor, at
+ * most max-concurrency sends (from any thread) are in flight at once, a send that cannot start within the
+ * timeout fails transiently, and bulk sends go to the provider in batches of at most batch-size. A slow
+ * gateway therefore fills up its own queue and permits, never those of the other channels.
+ */
+public class ChannelBulkhead {
+
+    private final NotificationChannel channel;
+    private final TaskExecutor executor;
+    private final Semaphore permits;
+    private final int batchSize;
+    private final Duration timeout;
+    private final MeterRegistry meterRegistry;
+    private final Counter rejected;
+
+    public ChannelBulkhead(NotificationChannel channel, TaskExecutor executor, int maxConcurrency, int batchSize,
+                           Duration timeout, MeterRegistry meterRegistry) {
+        this.channel = channel;
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrency);
+        this.batchSize = Math.max(1, batchSize);
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+
+        String name = channel.type().name();
+        this.rejected = Counter.builder("notification.channel.rejected")
+                .description("Sends refused because the channel's queue or concurrency limit was exhausted")
+                .tag("channel", name)
+                .register(meterRegistry);
+        Gauge.builder("notification.channel.active", permits, semaphore -> maxConcurrency - semaphore.availablePermits())
+                .description("Sends in flight on the channel")
+                .tag("channel", name)
+                .register(meterRegistry);
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            Gauge.builder("notification.channel.queued", pool, ThreadPoolTaskExecutor::getQueueSize)
+                    .description("Sends waiting in the channel's queue")
+                    .tag("channel", name)
+                    .register(meterRegistry);
+        }
+    }
+
+    public NotificationChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Runs the task on the channel's executor.
+     *
+     * @throws TaskRejectedException if the channel's queue is full
+     */
+    public void execute(Runnable task) {
+
+        try {
+            executor.execute(task);
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends one notification once a concurrency permit is free.
+     *
+     * @throws ChannelSendException if no permit was free within the timeout or the channel failed
+     */
+    public void send(Notification notification) {
+
+        if (!tryAcquire()) {
+            rejected.increment();
+            throw new ChannelSendException("%s channel is busy".formatted(channel.type()), true);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean success = false;
+        try {
+            channel.send(notification);
+            success = true;
+        } catch (ChannelSendException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ChannelSendException(e.getMessage(), false, e);
+        } finally {
+            permits.release();
+            sample.stop(sendTimer("single", success));
+        }
+    }
+
+    /**
+     * Sends the notifications in batches of at most batch-size, each batch waiting for a permit as long as
+     * needed, and returns those that failed with the failure of each.
+     */
+    public Map<Notification, ChannelSendException> sendAll(List<Notification> notifications) {
+
+        Map<Notification, ChannelSendException> failed = new IdentityHashMap<>();
+        for (int from = 0; from < notifications.size(); from += batchSize) {
+            List<Notification> batch = notifications.subList(from, Math.min(from + batchSize, notifications.size()));
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ChannelSendException interrupted = new ChannelSendException("interrupted while waiting for the channel", true);
+                notifications.subList(from, notifications.size()).forEach(notification -> failed.put(notification, interrupted));
+                break;
+            }
+            Timer.Sample sample = Timer.start(meterRegistry);
+            Map<Notification, ChannelSendException> batchFailed;
+            try {
+                batchFailed = channel.sendAll(batch);
+            } catch (RuntimeException e) {
+                ChannelSendException failure = e instanceof ChannelSendException sendFailure
+                        ? sendFailure : new ChannelSendException(e.getMessage(), false, e);
+                batchFailed = new IdentityHashMap<>();
+                for (Notification notification : batch) {
+                    batchFailed.put(notification, failure);
+                }
+            } finally {
+                permits.release();
+            }
+            sample.stop(sendTimer("batch", batchFailed.isEmpty()));
+            failed.putAll(batchFailed);
+        }
+        return failed;
+    }
+
+    void shutdown() {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        }
+    }
+
+    private boolean tryAcquire() {
+        try {
+            return permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Timer sendTimer(String call, boolean success) {
+
+        return Timer.builder("notification.channel.send")
+                .description("Latency of a send on a channel, for one notification or one batch")
+                .tag("channel", channel.type().name())
+                .tag("call", call)
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,24 @@
+package app.service;
+
+/**
+ * A notification was not sent. Transient failures (the provider is unreachable, throttles us, or the
+ * channel is saturated) are worth retrying, the others are not.
+ */
+public class ChannelSendException extends RuntimeException {
+
+    private final boolean transientFailure;
+
+    public ChannelSendException(String message, boolean transientFailure) {
+        super(message);
+        this.transientFailure = transientFailure;
+    }
+
+    public ChannelSendException(String message, boolean transientFailure, Throwable cause) {
+        super(message, cause);
+        this.transientFailure = transientFailure;
+    }
+
+    public boolean isTransientFailure() {
+        return transientFailure;
+    }
+}
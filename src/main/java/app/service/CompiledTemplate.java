@@ -0,0 +1,74 @@
+package app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template text split once into literal parts and variable names, {@code literals[i]} being followed by
+ * {@code variables[i]}; rendering appends them into a builder sized for the result. Placeholders are
+ * {@code {{name}}} with optional spaces around the name.
+ */
+final class CompiledTemplate {
+
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalLength;
+
+    private CompiledTemplate(String[] literals, String[] variables, int literalLength) {
+        this.literals = literals;
+        this.variables = variables;
+        this.literalLength = literalLength;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a placeholder is not closed or has no name
+     */
+    static CompiledTemplate compile(String text) {
+
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int literalLength = 0;
+        int position = 0;
+        while (true) {
+            int open = text.indexOf("{{", position);
+            if (open < 0) {
+                break;
+            }
+            int close = text.indexOf("}}", open + 2);
+            if (close < 0) {
+                throw new IllegalArgumentException("Placeholder at %d is not closed".formatted(open));
+            }
+            String name = text.substring(open + 2, close).strip();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Placeholder at %d has no name".formatted(open));
+            }
+            literals.add(text.substring(position, open));
+            literalLength += open - position;
+            variables.add(name);
+            position = close + 2;
+        }
+        literals.add(text.substring(position));
+        literalLength += text.length() - position;
+        return new CompiledTemplate(literals.toArray(String[]::new), variables.toArray(String[]::new), literalLength);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a variable of the template is missing
+     */
+    String render(Map<String, String> values) {
+
+        if (variables.length == 0) {
+            return literals[0];
+        }
+        StringBuilder result = new StringBuilder(literalLength + 16 * variables.length);
+        for (int i = 0; i < variables.length; i++) {
+            String value = values == null ? null : values.get(variables[i]);
+            if (value == null) {
+                throw new IllegalArgumentException("Missing template variable " + variables[i]);
+            }
+            result.append(literals[i]).append(value);
+        }
+        return result.append(literals[variables.length]).toString();
+    }
+}
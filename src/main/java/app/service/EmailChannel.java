@@ -0,0 +1,146 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.MailSender;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Sends EMAIL notifications through the {@link MailSender}, paced by the {@link MailThrottle}, which also
+ * records every send for the backpressure controller.
+ */
+@Component
+@Slf4j
+public class EmailChannel implements NotificationChannel {
+
+    private final MailSender mailSender;
+    private final MailThrottle mailThrottle;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public EmailChannel(MailSender mailSender, MailThrottle mailThrottle, MeterRegistry meterRegistry) {
+        this.mailSender = mailSender;
+        this.mailThrottle = mailThrottle;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public NotificationType type() {
+        return NotificationType.EMAIL;
+    }
+
+    @Override
+    public void send(Notification notification) {
+
+        if (!mailThrottle.tryAcquire(1)) {
+            throw new ChannelSendException("Mail rate limit reached", true);
+        }
+        SimpleMailMessage message = toMailMessage(notification);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            mailSender.send(message);
+            mailThrottle.record(1, 0, sample.stop(mailTimer("single", true)));
+        } catch (Exception e) {
+            mailThrottle.record(1, 1, sample.stop(mailTimer("single", false)));
+            throw new ChannelSendException(e.getMessage(), MailThrottle.isTransient(e), e);
+        }
+    }
+
+    /**
+     * Sends the notifications in slices of {@link MailThrottle#bulkSlice()}, each with a single
+     * {@link MailSender#send(SimpleMailMessage...)} call, so a pooled sender pushes a slice over one
+     * connection. Permits are taken per slice as the batch progresses, which leaves single sends their
+     * turn in between instead of queueing them behind the whole batch.
+     */
+    @Override
+    public Map<Notification, ChannelSendException> sendAll(List<Notification> notifications) {
+
+        SimpleMailMessage[] messages = notifications.stream()
+                .map(EmailChannel::toMailMessage)
+                .toArray(SimpleMailMessage[]::new);
+
+        Map<Object, ChannelSendException> failedMessages = new IdentityHashMap<>();
+        int slice = mailThrottle.bulkSlice();
+        for (int from = 0; from < messages.length; from += slice) {
+            sendSlice(Arrays.copyOfRange(messages, from, Math.min(messages.length, from + slice)), failedMessages);
+        }
+
+        Map<Notification, ChannelSendException> failed = new IdentityHashMap<>();
+        for (int i = 0; i < messages.length; i++) {
+            ChannelSendException failure = failedMessages.get(messages[i]);
+            if (failure != null) {
+                failed.put(notifications.get(i), failure);
+            }
+        }
+        return failed;
+    }
+
+    // a message the server refused carries its own failure; a send that broke off fails all of the slice
+    private void sendSlice(SimpleMailMessage[] messages, Map<Object, ChannelSendException> failedMessages) {
+
+        // bulk chunks run in the background, so they wait for as long as the mail host's rate requires
+        mailThrottle.acquire(messages.length);
+
+        int failures = 0;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            mailSender.send(messages);
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                failAll(messages, e, failedMessages);
+            } else {
+                // the sender keys its failures by equality, so one entry stands for all identical messages
+                for (SimpleMailMessage message : messages) {
+                    Exception cause = e.getFailedMessages().get(message);
+                    if (cause != null) {
+                        failures++;
+                        failedMessages.put(message, new ChannelSendException(cause.getMessage(), MailThrottle.isTransient(cause), cause));
+                    }
+                }
+            }
+            failures = e.getFailedMessages().isEmpty() ? messages.length : failures;
+            log.warn("Failed to send {} of {} emails due to {}.", failures, messages.length, e.getMessage());
+        } catch (Exception e) {
+            failures = messages.length;
+            failAll(messages, e, failedMessages);
+            log.warn("Failed to send {} emails due to {}.", messages.length, e.getMessage());
+        }
+        long latencyNanos = sample.stop(mailTimer("batch", failures == 0));
+        mailThrottle.record(messages.length, failures, latencyNanos);
+    }
+
+    private static void failAll(SimpleMailMessage[] messages, Exception cause, Map<Object, ChannelSendException> failedMessages) {
+
+        ChannelSendException failure = new ChannelSendException(cause.getMessage(), MailThrottle.isTransient(cause), cause);
+        for (SimpleMailMessage message : messages) {
+            failedMessages.put(message, failure);
+        }
+    }
+
+    private Timer mailTimer(String call, boolean success) {
+
+        return Timer.builder("notification.mail.send")
+                .description("Latency of MailSender.send, for one email or for a slice of a bulk chunk")
+                .tag("call", call)
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry);
+    }
+
+    private static SimpleMailMessage toMailMessage(Notification notification) {
+
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(notification.getRecipient());
+        message.setSubject(notification.getSubject());
+        message.setText(notification.getBody());
+        return message;
+    }
+}
@@ -0,0 +1,78 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Stand-in provider that appends every notification as one JSON line to a file instead of sending it,
+ * for channels without a real gateway. A batch is written with one open of the file.
+ */
+public class FileNotificationChannel implements NotificationChannel {
+
+    private final NotificationType type;
+    private final Path file;
+    private final ObjectMapper objectMapper;
+
+    public FileNotificationChannel(NotificationType type, Path file, ObjectMapper objectMapper) {
+        this.type = type;
+        this.file = file;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public NotificationType type() {
+        return type;
+    }
+
+    @Override
+    public void send(Notification notification) {
+        write(List.of(notification));
+    }
+
+    @Override
+    public Map<Notification, ChannelSendException> sendAll(List<Notification> notifications) {
+
+        Map<Notification, ChannelSendException> failed = new IdentityHashMap<>();
+        try {
+            write(notifications);
+        } catch (ChannelSendException e) {
+            notifications.forEach(notification -> failed.put(notification, e));
+        }
+        return failed;
+    }
+
+    private synchronized void write(List<Notification> notifications) {
+
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Notification notification : notifications) {
+                    Map<String, Object> line = new LinkedHashMap<>();
+                    line.put("id", notification.getId());
+                    line.put("type", type);
+                    line.put("recipient", notification.getRecipient());
+                    line.put("subject", notification.getSubject());
+                    line.put("body", notification.getBody());
+                    line.put("sentOn", LocalDateTime.now().toString());
+                    writer.write(objectMapper.writeValueAsString(line));
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            throw new ChannelSendException("Writing to %s failed".formatted(file), true, e);
+        }
+    }
+}
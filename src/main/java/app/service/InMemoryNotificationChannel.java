@@ -0,0 +1,42 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Stand-in provider that keeps the last capacity notifications it was given instead of sending them,
+ * for channels without a real gateway and for tests.
+ */
+public class InMemoryNotificationChannel implements NotificationChannel {
+
+    private final NotificationType type;
+    private final int capacity;
+    private final Deque<Notification> sent = new ArrayDeque<>();
+
+    public InMemoryNotificationChannel(NotificationType type, int capacity) {
+        this.type = type;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public NotificationType type() {
+        return type;
+    }
+
+    @Override
+    public synchronized void send(Notification notification) {
+
+        if (sent.size() == capacity) {
+            sent.removeFirst();
+        }
+        sent.addLast(notification);
+    }
+
+    public synchronized List<Notification> getSent() {
+        return List.copyOf(sent);
+    }
+}
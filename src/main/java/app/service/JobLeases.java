@@ -0,0 +1,51 @@
+package app.service;
+
+import app.repository.JobLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Lets a scheduled job that fires on every instance run on one of them only. The instance that takes the
+ * job's lease in the job_lease table runs it; the others skip that run. A lease is not given back after
+ * the run, so that an instance whose schedule fires a little later does not run the job again: it should
+ * be longer than a run and shorter than the interval between runs.
+ */
+@Component
+@Slf4j
+public class JobLeases {
+
+    private final JobLeaseRepository jobLeaseRepository;
+    private final String owner = UUID.randomUUID().toString();
+
+    @Autowired
+    public JobLeases(JobLeaseRepository jobLeaseRepository) {
+        this.jobLeaseRepository = jobLeaseRepository;
+    }
+
+    /**
+     * Takes the lease of the job for leaseTime unless another instance holds it. Returns true if this
+     * instance is to run the job.
+     */
+    public boolean tryAcquire(String job, Duration leaseTime) {
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime leasedUntil = now.plus(leaseTime);
+        try {
+            if (jobLeaseRepository.take(job, owner, leasedUntil, now) > 0
+                    || jobLeaseRepository.create(job, owner, leasedUntil) > 0) {
+                return true;
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not take the lease of {}, skipping this run: {}", job, e.getMessage());
+            return false;
+        }
+        log.info("Skipping {}, another instance holds its lease", job);
+        return false;
+    }
+}
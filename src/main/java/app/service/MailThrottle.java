@@ -0,0 +1,219 @@
+package app.service;
+
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces and observes the outgoing mail. Sends take permits from a token bucket per mail host, so that a
+ * provider's sending limit is not exceeded, and every send is recorded in a sliding window that the
+ * backpressure controller reads to decide whether the mail server is struggling.
+ */
+@Component
+public class MailThrottle {
+
+    private static final int MAX_SAMPLES = 1024;
+
+    private final String host;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final Duration maxWait;
+    private final Duration window;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Deque<Sample> samples = new ArrayDeque<>();
+
+    @Autowired
+    public MailThrottle(@Value("${spring.mail.host:localhost}") String host,
+                        @Value("${app.mail.rate-limit.permits-per-second:0}") double permitsPerSecond,
+                        @Value("${app.mail.rate-limit.burst:1}") int burst,
+                        @Value("${app.mail.rate-limit.max-wait:PT30S}") Duration maxWait,
+                        @Value("${app.backpressure.window:PT30S}") Duration window) {
+        this.host = host;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.maxWait = maxWait;
+        this.window = window;
+    }
+
+    /**
+     * Waits for permits to send to the configured mail host, at most app.mail.rate-limit.max-wait.
+     * Returns false, without taking any permits, when the wait would be longer.
+     */
+    public boolean tryAcquire(int permits) {
+        return acquire(host, permits, maxWait.toNanos());
+    }
+
+    /**
+     * Waits for permits to send to the configured mail host for as long as needed, for background
+     * work that should simply proceed at the rate the host accepts. Background work takes at most
+     * {@link #bulkSlice()} permits at a time, so that the debt it leaves never makes a single send wait
+     * longer than one burst takes to refill.
+     */
+    public void acquire(int permits) {
+        acquire(host, permits, Long.MAX_VALUE);
+    }
+
+    /**
+     * How many emails background work sends per permit request: the burst, or everything at once when
+     * sending is not rate-limited.
+     */
+    public int bulkSlice() {
+        return permitsPerSecond <= 0 ? Integer.MAX_VALUE : burst;
+    }
+
+    public boolean acquire(String mailHost, int permits, long maxWaitNanos) {
+
+        if (permitsPerSecond <= 0) {
+            return true;
+        }
+        TokenBucket bucket = buckets.computeIfAbsent(mailHost, key -> new TokenBucket(permitsPerSecond, burst, System.nanoTime()));
+        long waitNanos = bucket.reserve(permits, maxWaitNanos, System.nanoTime());
+        if (waitNanos < 0) {
+            return false;
+        }
+        long deadline = System.nanoTime() + waitNanos;
+        for (long remaining = waitNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records one MailSender.send call that tried to send {@code attempts} emails.
+     */
+    public void record(int attempts, int failures, long latencyNanos) {
+
+        long now = System.nanoTime();
+        synchronized (samples) {
+            if (samples.size() == MAX_SAMPLES) {
+                samples.removeFirst();
+            }
+            samples.addLast(new Sample(now, attempts, failures, latencyNanos));
+        }
+    }
+
+    /**
+     * Error rate and average latency of the sends within app.backpressure.window.
+     */
+    public MailHealth health() {
+
+        long oldest = System.nanoTime() - window.toNanos();
+        int calls = 0;
+        int attempts = 0;
+        int failures = 0;
+        long latencyNanos = 0;
+        synchronized (samples) {
+            while (!samples.isEmpty() && samples.peekFirst().at() - oldest < 0) {
+                samples.removeFirst();
+            }
+            for (Sample sample : samples) {
+                calls++;
+                attempts += sample.attempts();
+                failures += sample.failures();
+                latencyNanos += sample.latencyNanos();
+            }
+        }
+        return new MailHealth(
+                attempts,
+                attempts == 0 ? 0 : (double) failures / attempts,
+                calls == 0 ? Duration.ZERO : Duration.ofNanos(latencyNanos / calls));
+    }
+
+    /**
+     * Whether a send failure is worth retrying later: the server could not be reached, no pooled
+     * connection was free, or the server answered with a 4xx code (throttling, greylisting, busy).
+     */
+    public static boolean isTransient(Throwable failure) {
+
+        if (failure instanceof MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                // the send failed before any message was handed to the server
+                return true;
+            }
+            return e.getFailedMessages().values().stream().allMatch(MailThrottle::isTransient);
+        }
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            int returnCode = returnCode(cause);
+            if (returnCode > 0) {
+                return returnCode >= 400 && returnCode < 500;
+            }
+            if (cause instanceof SocketException || cause instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int returnCode(Throwable failure) {
+
+        if (failure instanceof SMTPSendFailedException e) {
+            return e.getReturnCode();
+        }
+        if (failure instanceof SMTPAddressFailedException e) {
+            return e.getReturnCode();
+        }
+        if (failure instanceof SMTPSenderFailedException e) {
+            return e.getReturnCode();
+        }
+        return -1;
+    }
+
+    public record MailHealth(int attempts, double errorRate, Duration averageLatency) {
+    }
+
+    private record Sample(long at, int attempts, int failures, long latencyNanos) {
+    }
+
+    /**
+     * Token bucket that lets a request through as soon as one permit is available and charges all of its
+     * permits, going into debt if needed, so that a bulk slice can go out at once and the following
+     * requests wait until the slice has been paid off.
+     */
+    static final class TokenBucket {
+
+        private final double permitsPerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(double permitsPerSecond, int capacity, long now) {
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.refilledAt = now;
+        }
+
+        /**
+         * Returns how long the caller has to wait before sending, or -1 if that is longer than
+         * {@code maxWaitNanos}, in which case nothing is charged.
+         */
+        synchronized long reserve(int permits, long maxWaitNanos, long now) {
+
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * permitsPerNano);
+            refilledAt = now;
+            long waitNanos = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            tokens -= permits;
+            return waitNanos;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package app.service;
+
+import app.model.Notification;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzipped NDJSON files of notifications removed from the table, partitioned by the day they were created
+ * on: {@code <directory>/yyyy/MM/dd/notifications-<timestamp>-<n>.ndjson.gz}. Files are written under a
+ * temporary name and moved into place, so a reader never sees a partial file. A chunk whose delete fails
+ * after it was archived is archived again by the next run; readers that need exact counts dedupe by id.
+ * Any instance may run the retention and any instance may serve the archive, so the directory has to be an
+ * absolute path on storage that all instances mount.
+ */
+@Component
+public class NotificationArchive {
+
+    private static final DateTimeFormatter PARTITION = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+    private static final String SUFFIX = ".ndjson.gz";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader reader;
+
+    @Autowired
+    public NotificationArchive(@Value("${app.notifications.retention.archive-directory}") Path directory,
+                               ObjectMapper objectMapper) {
+        if (!directory.isAbsolute()) {
+            throw new IllegalArgumentException("Archive directory %s must be an absolute path on storage shared by all instances."
+                    .formatted(directory));
+        }
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.reader = objectMapper.readerFor(Notification.class);
+    }
+
+    /**
+     * Writes the notifications into the partitions of their creation days and returns the number written.
+     */
+    public int write(List<Notification> notifications) throws IOException {
+
+        Map<LocalDate, List<Notification>> byDay = notifications.stream()
+                .collect(Collectors.groupingBy(notification -> notification.getCreatedOn().toLocalDate(),
+                        TreeMap::new, Collectors.toList()));
+
+        String name = "notifications-%d-%s".formatted(System.currentTimeMillis(), UUID.randomUUID());
+        for (Map.Entry<LocalDate, List<Notification>> day : byDay.entrySet()) {
+            Path partition = Files.createDirectories(partition(day.getKey()));
+            Path temporary = partition.resolve(name + ".tmp");
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                for (Notification notification : day.getValue()) {
+                    objectMapper.writeValue(generator, notification);
+                    generator.writeRaw('\n');
+                }
+            }
+            Files.move(temporary, partition.resolve(name + SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        }
+        return notifications.size();
+    }
+
+    /**
+     * Reads back the archived notifications created within [from, to), of one user or of all users when
+     * userId is null, in partition order. Returns the number handed to the sink.
+     */
+    public long read(UUID userId, LocalDateTime from, LocalDateTime to, Consumer<Notification> sink) throws IOException {
+
+        long count = 0;
+        for (LocalDate day = from.toLocalDate(); day.isBefore(to.toLocalDate().plusDays(1)); day = day.plusDays(1)) {
+            Path partition = partition(day);
+            if (!Files.isDirectory(partition)) {
+                continue;
+            }
+            List<Path> files;
+            try (Stream<Path> list = Files.list(partition)) {
+                files = list.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+            }
+            for (Path file : files) {
+                try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)));
+                     MappingIterator<Notification> notifications = reader.readValues(in)) {
+                    while (notifications.hasNext()) {
+                        Notification notification = notifications.next();
+                        if ((userId == null || userId.equals(notification.getUserId()))
+                                && !notification.getCreatedOn().isBefore(from) && notification.getCreatedOn().isBefore(to)) {
+                            sink.accept(notification);
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private Path partition(LocalDate day) {
+        return directory.resolve(PARTITION.format(day));
+    }
+}
@@ -0,0 +1,42 @@
+package app.service;
+
+import app.model.Notification;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PrePersist;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Moves {@link Notification#getBody()} in and out of the {@link NotificationBodyStore}, so that the rest of
+ * the code only ever sees the body. Created by Hibernate through Spring; without a store in the context
+ * (e.g. JPA slice tests) bodies are kept inline.
+ */
+public class NotificationBodyListener {
+
+    private final ObjectProvider<NotificationBodyStore> bodyStore;
+
+    public NotificationBodyListener(ObjectProvider<NotificationBodyStore> bodyStore) {
+        this.bodyStore = bodyStore;
+    }
+
+    @PrePersist
+    public void beforeInsert(Notification notification) {
+
+        NotificationBodyStore store = bodyStore.getIfAvailable();
+        boolean stored = store != null && store.store(notification);
+        // the column is not null on existing schemas
+        notification.setInlineBody(stored ? "" : notification.getBody());
+    }
+
+    @PostLoad
+    public void afterLoad(Notification notification) {
+
+        if (notification.getBodyHash() == null) {
+            notification.setBody(notification.getInlineBody());
+            return;
+        }
+        NotificationBodyStore store = bodyStore.getIfAvailable();
+        if (store != null) {
+            notification.setBody(store.load(notification.getBodyHash()));
+        }
+    }
+}
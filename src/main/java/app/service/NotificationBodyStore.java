@@ -0,0 +1,192 @@
+package app.service;
+
+import app.model.Notification;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-addressed storage for notification bodies: a body of at least inline-max-length characters is
+ * written once to notification_body under its SHA-256 and notifications only keep the hash, so a
+ * broadcast of one body to many users stores it once. Bodies of compress-min-length and more are gzipped.
+ * An LRU cache, weighed by body size, answers the hot bodies on the read path without a query.
+ * <p>
+ * Bodies are upserted once per transaction that stores notifications with them, so concurrent writers of
+ * the same body don't conflict and a rolled back notification takes its new body with it. The upsert sets
+ * created_on again and locks the row until commit, which keeps {@link NotificationRetention} from deleting
+ * a body that was unreferenced until now; for the same reason the cache is not trusted on the write path.
+ * Plain JDBC, because this runs from the entity callbacks of {@link NotificationBodyListener}.
+ */
+@Component
+public class NotificationBodyStore {
+
+    private static final String UPSERT = """
+            insert into notification_body (hash, content, compressed, created_on) values (?, ?, ?, ?)
+            on duplicate key update created_on = values(created_on)
+            """;
+    private static final String SELECT = "select content, compressed from notification_body where hash = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<String, String> bodies;
+    private final int inlineMaxLength;
+    private final int compressMinLength;
+    private final Counter stored;
+    private final Counter deduplicated;
+
+    @Autowired
+    public NotificationBodyStore(JdbcTemplate jdbcTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.notifications.body.inline-max-length:256}") int inlineMaxLength,
+                                 @Value("${app.notifications.body.compress-min-length:1024}") int compressMinLength,
+                                 @Value("${app.notifications.body.cache-size:32MB}") DataSize cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.inlineMaxLength = inlineMaxLength;
+        this.compressMinLength = compressMinLength;
+        this.bodies = Caffeine.newBuilder()
+                .maximumWeight(cacheSize.toBytes())
+                .weigher((String hash, String body) -> 2 * body.length())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, bodies, "notification.bodies");
+        this.stored = Counter.builder("notification.bodies.stored")
+                .description("Bodies written to the body store")
+                .register(meterRegistry);
+        this.deduplicated = Counter.builder("notification.bodies.deduplicated")
+                .description("Notifications whose body was already in the body store")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores the body of a notification about to be inserted, if it is long enough, and points the
+     * notification to it. Returns false if the body stays inline.
+     */
+    public boolean store(Notification notification) {
+
+        String body = notification.getBody();
+        if (body == null || body.length() < inlineMaxLength) {
+            return false;
+        }
+        String hash = hash(body);
+        notification.setBodyHash(hash);
+
+        Map<String, String> storedInTransaction = storedInTransaction();
+        if (storedInTransaction != null && storedInTransaction.containsKey(hash)) {
+            deduplicated.increment();
+            return true;
+        }
+
+        boolean compress = body.length() >= compressMinLength;
+        byte[] content = compress ? gzip(body) : body.getBytes(StandardCharsets.UTF_8);
+        // MySQL counts 1 for an insert and 2 for an updated row
+        int upserted = jdbcTemplate.update(UPSERT, hash, content, compress, Timestamp.valueOf(LocalDateTime.now()));
+        (upserted == 1 ? stored : deduplicated).increment();
+
+        if (storedInTransaction != null) {
+            // visible to others only once committed
+            storedInTransaction.put(hash, body);
+        } else {
+            bodies.put(hash, body);
+        }
+        return true;
+    }
+
+    /**
+     * The body stored under the hash, or null if there is none.
+     */
+    public String load(String hash) {
+
+        String body = bodies.getIfPresent(hash);
+        if (body != null) {
+            return body;
+        }
+        Map<String, String> storedInTransaction = storedInTransaction();
+        if (storedInTransaction != null && storedInTransaction.containsKey(hash)) {
+            return storedInTransaction.get(hash);
+        }
+        List<String> found = jdbcTemplate.query(SELECT, (row, i) -> row.getBoolean("compressed")
+                ? gunzip(row.getBytes("content"))
+                : new String(row.getBytes("content"), StandardCharsets.UTF_8), hash);
+        if (found.isEmpty()) {
+            return null;
+        }
+        bodies.put(hash, found.get(0));
+        return found.get(0);
+    }
+
+    static String hash(String body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // bodies this transaction inserted; they go into the cache when it commits
+    @SuppressWarnings("unchecked")
+    private Map<String, String> storedInTransaction() {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Map<String, String> stored = (Map<String, String>) TransactionSynchronizationManager.getResource(this);
+        if (stored == null) {
+            Map<String, String> created = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(NotificationBodyStore.this);
+                    if (status == STATUS_COMMITTED) {
+                        bodies.putAll(created);
+                    }
+                }
+            });
+            stored = created;
+        }
+        return stored;
+    }
+
+    private static byte[] gzip(String body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String gunzip(byte[] content) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
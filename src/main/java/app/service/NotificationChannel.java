@@ -0,0 +1,43 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationType;
+
+import java.util.*;
+
+/**
+ * Sends notifications of one {@link NotificationType} to their recipients. The dispatcher picks the
+ * channel by the type of the notification, which comes from the user's preference, and runs it behind
+ * its own {@link ChannelBulkhead}.
+ */
+public interface NotificationChannel {
+
+    NotificationType type();
+
+    /**
+     * Sends one notification.
+     *
+     * @throws ChannelSendException if it was not sent; transient failures are retried later
+     */
+    void send(Notification notification);
+
+    /**
+     * Sends the notifications, waiting for rate limits as long as needed, and returns those that failed with
+     * the failure of each, by identity, so that transient failures can be retried.
+     * Channels override this when their provider accepts many messages in one call.
+     */
+    default Map<Notification, ChannelSendException> sendAll(List<Notification> notifications) {
+
+        Map<Notification, ChannelSendException> failed = new IdentityHashMap<>();
+        for (Notification notification : notifications) {
+            try {
+                send(notification);
+            } catch (ChannelSendException e) {
+                failed.put(notification, e);
+            } catch (RuntimeException e) {
+                failed.put(notification, new ChannelSendException(e.getMessage(), false, e));
+            }
+        }
+        return failed;
+    }
+}
@@ -0,0 +1,39 @@
+package app.service;
+
+import app.model.NotificationType;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The {@link ChannelBulkhead} of every configured channel, by the notification type it sends.
+ */
+public class NotificationChannels {
+
+    private final Map<NotificationType, ChannelBulkhead> bulkheads = new EnumMap<>(NotificationType.class);
+
+    public NotificationChannels(Collection<ChannelBulkhead> bulkheads) {
+        for (ChannelBulkhead bulkhead : bulkheads) {
+            if (this.bulkheads.put(bulkhead.getChannel().type(), bulkhead) != null) {
+                throw new IllegalStateException("More than one channel sends %s notifications".formatted(bulkhead.getChannel().type()));
+            }
+        }
+    }
+
+    /**
+     * @throws ChannelSendException if no channel sends notifications of the type
+     */
+    public ChannelBulkhead bulkhead(NotificationType type) {
+
+        ChannelBulkhead bulkhead = bulkheads.get(type);
+        if (bulkhead == null) {
+            throw new ChannelSendException("No channel sends %s notifications".formatted(type), false);
+        }
+        return bulkhead;
+    }
+
+    public void shutdown() {
+        bulkheads.values().forEach(ChannelBulkhead::shutdown);
+    }
+}
@@ -0,0 +1,299 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationCounter;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import app.repository.NotificationCounterRepository;
+import app.repository.NotificationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Per-user notification counts by status and by type, for badges that would otherwise need the whole
+ * history. Changes are added to striped in-memory accumulators once their transaction has committed and
+ * written to notification_counter every flush-interval as one delta per counter, so the send path never
+ * waits for a counter row. A summary adds the deltas not flushed yet to the stored counts.
+ * <p>
+ * Counts are kept where notifications are stored, change status or are removed. Rows changed outside
+ * these paths, and deltas lost when an instance dies before its flush, make the counters drift; the
+ * reconciliation recounts the notifications of every user chunk by chunk and corrects the counters that
+ * differ. Soft-deleted notifications are not counted.
+ * <p>
+ * The reconciliation writes absolute counts, so a delta still pending on some instance would be counted
+ * twice once it is flushed. It therefore runs on the one instance holding its {@link JobLeases lease}, and
+ * leaves alone the users whose notifications or counters changed within settle-time, which has to be
+ * longer than the flush-interval.
+ */
+@Component
+@Slf4j
+public class NotificationCounters {
+
+    static final String STATUS = "status.";
+    static final String TYPE = "type.";
+    // databases compare ids as unsigned bytes, unlike UUID.compareTo
+    private static final UUID LOWEST_ID = new UUID(0, 0);
+
+    private final NotificationCounterRepository counterRepository;
+    private final NotificationRepository notificationRepository;
+    private final ReadYourWrites readYourWrites;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeases jobLeases;
+    private final boolean reconcileEnabled;
+    private final int chunkSize;
+    private final Duration settleTime;
+    private final Duration reconcileLease;
+    private final Map<NotificationCounter.Key, LongAdder> pending = new ConcurrentHashMap<>();
+    private final Counter corrected;
+
+    @Autowired
+    public NotificationCounters(NotificationCounterRepository counterRepository,
+                                NotificationRepository notificationRepository,
+                                ReadYourWrites readYourWrites,
+                                TransactionTemplate transactionTemplate,
+                                JobLeases jobLeases,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.notifications.counters.reconcile.enabled:true}") boolean reconcileEnabled,
+                                @Value("${app.notifications.counters.reconcile.chunk-size:500}") int chunkSize,
+                                @Value("${app.notifications.counters.reconcile.settle-time:PT1M}") Duration settleTime,
+                                @Value("${app.notifications.counters.reconcile.lease:PT1H}") Duration reconcileLease) {
+        this.counterRepository = counterRepository;
+        this.notificationRepository = notificationRepository;
+        this.readYourWrites = readYourWrites;
+        this.transactionTemplate = transactionTemplate;
+        this.jobLeases = jobLeases;
+        this.reconcileEnabled = reconcileEnabled;
+        this.chunkSize = chunkSize;
+        this.settleTime = settleTime;
+        this.reconcileLease = reconcileLease;
+        Gauge.builder("notification.counters.pending", pending, Map::size)
+                .description("Counters with changes not written to notification_counter yet")
+                .register(meterRegistry);
+        this.corrected = Counter.builder("notification.counters.corrected")
+                .description("Counters the reconciliation found off and corrected")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts stored notifications in their current status.
+     */
+    public void created(Collection<Notification> notifications) {
+
+        Map<NotificationCounter.Key, Long> deltas = new HashMap<>();
+        for (Notification notification : notifications) {
+            add(deltas, notification.getUserId(), TYPE + notification.getType(), 1);
+            add(deltas, notification.getUserId(), STATUS + notification.getStatus(), 1);
+        }
+        afterCommit(deltas);
+    }
+
+    /**
+     * Counts stored notifications as moved from one status to another.
+     */
+    public void moved(Collection<Notification> notifications, NotificationStatus from, NotificationStatus to) {
+
+        if (from == to) {
+            return;
+        }
+        Map<NotificationCounter.Key, Long> deltas = new HashMap<>();
+        for (Notification notification : notifications) {
+            add(deltas, notification.getUserId(), STATUS + from, -1);
+            add(deltas, notification.getUserId(), STATUS + to, 1);
+        }
+        afterCommit(deltas);
+    }
+
+    /**
+     * Uncounts deleted notifications; soft-deleted ones were not counted.
+     */
+    public void removed(Collection<Notification> notifications) {
+
+        Map<NotificationCounter.Key, Long> deltas = new HashMap<>();
+        for (Notification notification : notifications) {
+            if (!notification.isDeleted()) {
+                add(deltas, notification.getUserId(), TYPE + notification.getType(), -1);
+                add(deltas, notification.getUserId(), STATUS + notification.getStatus(), -1);
+            }
+        }
+        afterCommit(deltas);
+    }
+
+    public NotificationSummary summary(UUID userId) {
+
+        Map<String, Long> counts = new HashMap<>();
+        for (NotificationCounter counter : readYourWrites.read(userId, () -> counterRepository.findAllByUserId(userId))) {
+            counts.put(counter.getCounter(), counter.getTotal());
+        }
+        pending.forEach((key, delta) -> {
+            if (key.getUserId().equals(userId)) {
+                counts.merge(key.getCounter(), delta.sum(), Long::sum);
+            }
+        });
+
+        Map<NotificationStatus, Long> byStatus = new EnumMap<>(NotificationStatus.class);
+        Map<NotificationType, Long> byType = new EnumMap<>(NotificationType.class);
+        counts.forEach((counter, total) -> {
+            if (total <= 0) {
+                return;
+            }
+            if (counter.startsWith(STATUS)) {
+                byStatus.put(NotificationStatus.valueOf(counter.substring(STATUS.length())), total);
+            } else if (counter.startsWith(TYPE)) {
+                byType.put(NotificationType.valueOf(counter.substring(TYPE.length())), total);
+            }
+        });
+        return new NotificationSummary(userId, byStatus, byType);
+    }
+
+    @Scheduled(fixedDelayString = "${app.notifications.counters.flush-interval:PT5S}")
+    @PreDestroy
+    public void flush() {
+
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<NotificationCounter.Key, LongAdder> entry : pending.entrySet()) {
+            NotificationCounter.Key key = entry.getKey();
+            LongAdder adder = entry.getValue();
+            long delta = adder.sumThenReset();
+            if (delta == 0) {
+                // adds happen inside compute as well, so one that raced the reset keeps the adder in the map
+                pending.computeIfPresent(key, (k, current) -> current.sum() == 0 ? null : current);
+                continue;
+            }
+            try {
+                counterRepository.add(key.getUserId(), key.getCounter(), delta, now);
+            } catch (RuntimeException e) {
+                adder.add(delta);
+                log.warn("Flushing notification counters failed, {} counters stay pending: {}", pending.size(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    @Scheduled(cron = "${app.notifications.counters.reconcile.cron:0 0 4 * * *}")
+    public void reconcileScheduled() {
+        if (reconcileEnabled && jobLeases.tryAcquire("notification-counters-reconcile", reconcileLease)) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Recounts the notifications of every user that has notifications or counters and corrects the counters
+     * that are off. Returns the number of corrected counters.
+     */
+    public long reconcile() {
+
+        flush();
+        long fixed = reconcileUsers(after -> notificationRepository.findUserIdsAfter(after, Limit.of(chunkSize)))
+                + reconcileUsers(after -> counterRepository.findUserIdsAfter(after, Limit.of(chunkSize)));
+        log.info("Counter reconciliation corrected {} counters", fixed);
+        return fixed;
+    }
+
+    private long reconcileUsers(Function<UUID, List<UUID>> chunks) {
+
+        long fixed = 0;
+        UUID after = LOWEST_ID;
+        List<UUID> userIds;
+        do {
+            userIds = chunks.apply(after);
+            if (!userIds.isEmpty()) {
+                List<UUID> chunk = userIds;
+                fixed += Objects.requireNonNull(transactionTemplate.execute(status -> reconcileChunk(chunk)));
+                after = userIds.get(userIds.size() - 1);
+            }
+        } while (userIds.size() == chunkSize);
+        return fixed;
+    }
+
+    private long reconcileChunk(List<UUID> chunk) {
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime settledBefore = now.minus(settleTime);
+        List<NotificationCounter> counters = counterRepository.findAllByUserIdIn(chunk);
+        Set<UUID> unsettled = new HashSet<>(notificationRepository.findUserIdsUpdatedSince(chunk, settledBefore));
+        counters.stream()
+                .filter(counter -> counter.getUpdatedOn().isAfter(settledBefore))
+                .forEach(counter -> unsettled.add(counter.getUserId()));
+        List<UUID> userIds = chunk.stream().filter(userId -> !unsettled.contains(userId)).toList();
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+
+        Map<NotificationCounter.Key, Long> expected = new HashMap<>();
+        for (NotificationRepository.StatusTypeCount count : notificationRepository.countByUserIdIn(userIds)) {
+            add(expected, count.getUserId(), TYPE + count.getType(), count.getTotal());
+            add(expected, count.getUserId(), STATUS + count.getStatus(), count.getTotal());
+        }
+
+        List<NotificationCounter> changed = new ArrayList<>();
+        List<NotificationCounter> stale = new ArrayList<>();
+        long fixed = 0;
+        for (NotificationCounter counter : counters) {
+            if (unsettled.contains(counter.getUserId())) {
+                continue;
+            }
+            Long total = expected.remove(new NotificationCounter.Key(counter.getUserId(), counter.getCounter()));
+            if (total == null) {
+                stale.add(counter);
+                fixed += counter.getTotal() == 0 ? 0 : 1;
+            } else if (total != counter.getTotal()) {
+                counter.setTotal(total);
+                counter.setUpdatedOn(now);
+                changed.add(counter);
+            }
+        }
+        expected.forEach((key, total) -> changed.add(new NotificationCounter(key.getUserId(), key.getCounter(), total, now)));
+        fixed += changed.size();
+
+        counterRepository.saveAll(changed);
+        counterRepository.deleteAll(stale);
+        corrected.increment(fixed);
+        return fixed;
+    }
+
+    private static void add(Map<NotificationCounter.Key, Long> deltas, UUID userId, String counter, long delta) {
+        deltas.merge(new NotificationCounter.Key(userId, counter), delta, Long::sum);
+    }
+
+    // deltas of a rolled back transaction are dropped
+    private void afterCommit(Map<NotificationCounter.Key, Long> deltas) {
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // added under the map's lock of the key, so flush never removes an adder an add is still going to
+        Runnable apply = () -> deltas.forEach((key, delta) -> pending.compute(key, (k, adder) -> {
+            LongAdder current = adder == null ? new LongAdder() : adder;
+            current.add(delta);
+            return current;
+        }));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+            return;
+        }
+        apply.run();
+    }
+}
@@ -0,0 +1,40 @@
+package app.service;
+
+import app.model.Notification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a user's notification history: the (createdOn, id) of the last notification of a page.
+ * Clients only see it as an opaque token.
+ */
+public record NotificationCursor(LocalDateTime createdOn, UUID id) {
+
+    public static NotificationCursor of(Notification notification) {
+
+        return new NotificationCursor(notification.getCreatedOn(), notification.getId());
+    }
+
+    public static NotificationCursor decode(String token) {
+
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf('|');
+            return new NotificationCursor(
+                    LocalDateTime.parse(value.substring(0, separator)),
+                    UUID.fromString(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor %s.".formatted(token), e);
+        }
+    }
+
+    public String encode() {
+
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((createdOn + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
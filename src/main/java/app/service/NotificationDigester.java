@@ -0,0 +1,142 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationStatus;
+import app.repository.NotificationRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Sends the BUFFERED notifications of users with a digest window. Once the window of a user's oldest
+ * buffered notification has passed, all of that user's buffered notifications are merged into a single
+ * digest notification, which is delivered like any other, and are marked DIGESTED with the digest's id
+ * as their deliveryId.
+ */
+@Component
+@Slf4j
+public class NotificationDigester {
+
+    private static final String SEPARATOR = "\n\n----------\n\n";
+    // length of the Notification.body column
+    private static final int MAX_BODY_LENGTH = 10000;
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationDispatcher notificationDispatcher;
+    private final TransactionTemplate transactionTemplate;
+    private final NotificationCounters notificationCounters;
+    private final DistributionSummary digestSize;
+    private final int batchSize;
+
+    @Autowired
+    public NotificationDigester(NotificationRepository notificationRepository,
+                                NotificationDispatcher notificationDispatcher,
+                                TransactionTemplate transactionTemplate,
+                                NotificationCounters notificationCounters,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.notifications.digest.batch-size:500}") int batchSize) {
+        this.notificationRepository = notificationRepository;
+        this.notificationDispatcher = notificationDispatcher;
+        this.transactionTemplate = transactionTemplate;
+        this.notificationCounters = notificationCounters;
+        this.batchSize = batchSize;
+        this.digestSize = DistributionSummary.builder("notification.digest.size")
+                .description("Notifications merged into one digest email")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.notifications.digest.poll-interval:PT30S}")
+    public void sendDueDigests() {
+
+        Set<UUID> userIds = notificationRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+                        NotificationStatus.BUFFERED, LocalDateTime.now(), Limit.of(batchSize))
+                .stream()
+                .map(Notification::getUserId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        for (UUID userId : userIds) {
+            try {
+                sendDigest(userId);
+            } catch (Exception e) {
+                log.warn("Digest for user {} was not sent and stays buffered: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    void sendDigest(UUID userId) {
+
+        Notification digest = transactionTemplate.execute(status -> {
+            List<Notification> buffered = notificationRepository.findAllByUserIdAndStatusOrderByCreatedOn(
+                    userId, NotificationStatus.BUFFERED);
+            if (buffered.isEmpty()) {
+                return null;
+            }
+
+            Notification saved = notificationRepository.save(merge(buffered));
+            List<UUID> ids = buffered.stream().map(Notification::getId).toList();
+            // another instance sending the same digest has claimed some of the rows; roll back and leave them to it
+            if (notificationRepository.markDigested(ids, saved.getId()) != ids.size()) {
+                throw new IllegalStateException("Buffered notifications of user %s were digested concurrently".formatted(userId));
+            }
+
+            notificationDispatcher.stage(saved);
+            notificationDispatcher.dispatch(List.of(saved));
+            notificationCounters.moved(buffered, NotificationStatus.BUFFERED, NotificationStatus.DIGESTED);
+            notificationCounters.created(List.of(saved));
+            digestSize.record(buffered.size());
+            return saved;
+        });
+
+        if (digest != null) {
+            log.info("Sent digest {} to user {}", digest.getId(), userId);
+        }
+    }
+
+    static Notification merge(List<Notification> buffered) {
+
+        Notification latest = buffered.get(buffered.size() - 1);
+        String subject = buffered.size() == 1
+                ? latest.getSubject()
+                : "You have %d new notifications".formatted(buffered.size());
+        String body = buffered.size() == 1 ? latest.getBody() : mergeBodies(buffered);
+
+        return Notification.builder()
+                .subject(subject)
+                .body(body)
+                .createdOn(LocalDateTime.now())
+                .status(NotificationStatus.PENDING)
+                .userId(latest.getUserId())
+                .recipient(latest.getRecipient())
+                .deleted(false)
+                .type(latest.getType())
+                .build();
+    }
+
+    private static String mergeBodies(List<Notification> buffered) {
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < buffered.size(); i++) {
+            Notification notification = buffered.get(i);
+            String section = (i == 0 ? "" : SEPARATOR) + notification.getSubject() + "\n\n" + notification.getBody();
+            String more = SEPARATOR + "... and %d more".formatted(buffered.size() - i);
+            if (body.length() + section.length() + more.length() > MAX_BODY_LENGTH) {
+                return body.append(more).toString();
+            }
+            body.append(section);
+        }
+        return body.toString();
+    }
+}
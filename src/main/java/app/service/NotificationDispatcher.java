@@ -0,0 +1,282 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import app.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Moves the send round-trip off the calling thread. In async mode notifications are stored as PENDING
+ * and the bounded executor of their channel sends them and records SUCCEEDED/FAILED. Rows that could not
+ * be queued (channel saturated, instance restarted) are picked up again by {@link #sweepPendingNotifications()}.
+ * A claimed notification is SENDING for at most sending-lease: if its sender dies or fails unexpectedly
+ * before recording the outcome, {@link #reclaimStaleSendingNotifications()} counts the attempt and makes it
+ * RETRYING (or FAILED once out of attempts), whether or not dispatch is async.
+ * Each notification goes out through the {@link NotificationChannel} of its type, behind that channel's
+ * {@link ChannelBulkhead}. A notification that failed with a transient error (the provider throttles us,
+ * is unreachable, or the channel is busy) becomes RETRYING and is sent again by the
+ * {@link NotificationRetryScheduler} once its backoff has passed.
+ */
+@Component
+@Slf4j
+public class NotificationDispatcher {
+
+    private final NotificationChannels channels;
+    private final NotificationRepository notificationRepository;
+    private final boolean async;
+    private final Duration staleAfter;
+    private final Duration sendingLease;
+    private final NotificationRetryPolicy retryPolicy;
+    private final NotificationCounters notificationCounters;
+
+    @Autowired
+    public NotificationDispatcher(NotificationChannels channels,
+                                  NotificationRepository notificationRepository,
+                                  @Value("${app.notifications.dispatch.async:false}") boolean async,
+                                  @Value("${app.notifications.dispatch.stale-after:PT1M}") Duration staleAfter,
+                                  @Value("${app.notifications.dispatch.sending-lease:PT5M}") Duration sendingLease,
+                                  NotificationRetryPolicy retryPolicy,
+                                  NotificationCounters notificationCounters) {
+        this.channels = channels;
+        this.notificationRepository = notificationRepository;
+        this.async = async;
+        this.staleAfter = staleAfter;
+        this.sendingLease = sendingLease;
+        this.retryPolicy = retryPolicy;
+        this.notificationCounters = notificationCounters;
+    }
+
+    /**
+     * Prepares a notification before it is stored: in async mode it only becomes PENDING,
+     * otherwise it is sent right away and the final status is set.
+     */
+    public void stage(Notification notification) {
+
+        if (async) {
+            notification.setStatus(NotificationStatus.PENDING);
+            return;
+        }
+        deliver(notification);
+    }
+
+    /**
+     * Queues the stored PENDING notifications for sending. Inside a transaction the work is queued
+     * only after commit, so that the workers always find the rows.
+     */
+    public void dispatch(Collection<Notification> notifications) {
+
+        List<Notification> pending = notifications.stream()
+                .filter(notification -> notification.getStatus() == NotificationStatus.PENDING)
+                .toList();
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pending.forEach(NotificationDispatcher.this::enqueue);
+                }
+            });
+            return;
+        }
+        pending.forEach(this::enqueue);
+    }
+
+    @Scheduled(fixedDelayString = "${app.notifications.dispatch.sweep-interval:PT30S}")
+    public void sweepPendingNotifications() {
+
+        if (!async) {
+            return;
+        }
+        List<Notification> stale = notificationRepository.findTop100ByStatusAndCreatedOnBeforeOrderByCreatedOn(
+                NotificationStatus.PENDING, LocalDateTime.now().minus(staleAfter));
+        if (!stale.isEmpty()) {
+            log.info("Re-queueing {} pending notifications", stale.size());
+            stale.forEach(this::enqueue);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.notifications.dispatch.sweep-interval:PT30S}")
+    public void reclaimStaleSendingNotifications() {
+
+        List<Notification> stale = notificationRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+                NotificationStatus.SENDING, LocalDateTime.now(), Limit.of(100));
+        int reclaimed = release(stale);
+        if (reclaimed > 0) {
+            log.warn("Reclaimed {} notifications left SENDING past their lease", reclaimed);
+        }
+    }
+
+    /**
+     * Marks notifications the caller stores and sends itself as SENDING, under the same lease as the ones
+     * claimed here.
+     */
+    public void leaseForSending(Collection<Notification> notifications) {
+
+        LocalDateTime leaseUntil = LocalDateTime.now().plus(sendingLease);
+        for (Notification notification : notifications) {
+            notification.setStatus(NotificationStatus.SENDING);
+            notification.setNextAttemptAt(leaseUntil);
+        }
+    }
+
+    /**
+     * Records the outcome of stored SENDING notifications whose sending broke off. The ones sent or failed
+     * keep that status; for the others the attempt counts, and they become RETRYING or FAILED.
+     * Returns how many were still SENDING.
+     */
+    public int release(Collection<Notification> notifications) {
+
+        int released = 0;
+        for (Notification notification : notifications) {
+            if (notification.getStatus() == NotificationStatus.SENDING) {
+                // the lost attempt may have reached the recipient, but it counts like any other
+                notification.setAttempts(notification.getAttempts() + 1);
+                retryOrFail(notification, true);
+            }
+            if (recordDelivery(notification)) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Records the status, attempts and next attempt of SENDING notifications one row at a time, for
+     * outcomes a batched update cannot carry, like the backoff of a RETRYING one.
+     * Returns how many were still SENDING.
+     */
+    public int recordAll(Collection<Notification> notifications) {
+
+        int recorded = 0;
+        for (Notification notification : notifications) {
+            if (recordDelivery(notification)) {
+                recorded++;
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * Queues RETRYING notifications whose backoff has passed for another attempt on the dispatch pool.
+     * Returns how many were queued; the others stay RETRYING and are found by the next scan.
+     */
+    public int retry(Collection<Notification> notifications) {
+
+        int queued = 0;
+        for (Notification notification : notifications) {
+            try {
+                channels.bulkhead(notification.getType()).execute(() -> process(notification, NotificationStatus.RETRYING));
+                queued++;
+            } catch (TaskRejectedException | ChannelSendException e) {
+                // a full channel does not hold back the retries of the others
+            }
+        }
+        return queued;
+    }
+
+    private void enqueue(Notification notification) {
+
+        try {
+            channels.bulkhead(notification.getType()).execute(() -> process(notification, NotificationStatus.PENDING));
+        } catch (TaskRejectedException | ChannelSendException e) {
+            log.warn("{} channel cannot take notification {}, it stays PENDING until the next sweep: {}",
+                    notification.getType(), notification.getId(), e.getMessage());
+        }
+    }
+
+    void process(Notification notification, NotificationStatus claimedFrom) {
+
+        // the conditional update makes sure only one worker (on any instance) sends a notification
+        if (notificationRepository.claimForSending(notification.getId(), claimedFrom,
+                LocalDateTime.now().plus(sendingLease)) == 0) {
+            return;
+        }
+        notificationCounters.moved(List.of(notification), claimedFrom, NotificationStatus.SENDING);
+        deliver(notification);
+        recordDelivery(notification);
+    }
+
+    private boolean recordDelivery(Notification notification) {
+
+        if (notificationRepository.updateDelivery(notification.getId(), NotificationStatus.SENDING, notification.getStatus(),
+                notification.getAttempts(), notification.getNextAttemptAt()) == 0) {
+            return false;
+        }
+        notificationCounters.moved(List.of(notification), NotificationStatus.SENDING, notification.getStatus());
+        return true;
+    }
+
+    /**
+     * Sends the notifications through their channels, in the batches of each channel, and sets the status
+     * of each one: SUCCEEDED, RETRYING with its backoff after a transient failure with attempts left, or FAILED.
+     * Only the notifications are changed; the caller persists them.
+     */
+    public void deliverAll(List<Notification> notifications) {
+
+        Map<NotificationType, List<Notification>> byType = new EnumMap<>(NotificationType.class);
+        notifications.forEach(notification -> byType.computeIfAbsent(notification.getType(), type -> new ArrayList<>()).add(notification));
+
+        Map<Notification, ChannelSendException> failed = new IdentityHashMap<>();
+        byType.forEach((type, ofType) -> {
+            try {
+                failed.putAll(channels.bulkhead(type).sendAll(ofType));
+            } catch (ChannelSendException e) {
+                log.warn("Failed to send {} notifications due to {}.", ofType.size(), e.getMessage());
+                ofType.forEach(notification -> failed.put(notification, e));
+            }
+        });
+        for (Notification notification : notifications) {
+            notification.setAttempts(notification.getAttempts() + 1);
+            notification.setNextAttemptAt(null);
+            ChannelSendException failure = failed.get(notification);
+            if (failure == null) {
+                notification.setStatus(NotificationStatus.SUCCEEDED);
+            } else {
+                retryOrFail(notification, failure.isTransientFailure());
+            }
+        }
+    }
+
+    private void deliver(Notification notification) {
+
+        notification.setAttempts(notification.getAttempts() + 1);
+        notification.setNextAttemptAt(null);
+        try {
+            channels.bulkhead(notification.getType()).send(notification);
+            notification.setStatus(NotificationStatus.SUCCEEDED);
+        } catch (ChannelSendException e) {
+            retryOrFail(notification, e.isTransientFailure());
+            log.warn(
+                    "There was an issue sending a %s notification to %s due to %s.%s"
+                            .formatted(notification.getType(), notification.getRecipient(), e.getMessage(),
+                                    notification.getStatus() == NotificationStatus.RETRYING
+                                            ? " It will be retried at " + notification.getNextAttemptAt() + "." : ""));
+        }
+    }
+
+    private void retryOrFail(Notification notification, boolean transientFailure) {
+
+        if (transientFailure && retryPolicy.canRetry(notification.getAttempts())) {
+            notification.setStatus(NotificationStatus.RETRYING);
+            notification.setNextAttemptAt(retryPolicy.nextAttemptAt(notification.getAttempts(), LocalDateTime.now()));
+        } else {
+            notification.setStatus(NotificationStatus.FAILED);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package app.service;
+
+import app.model.Notification;
+import app.repository.NotificationRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Hands the notification history to a consumer row by row. Rows are streamed from the database and
+ * detached once written, so memory use does not grow with the size of the export.
+ */
+@Service
+public class NotificationExportService {
+
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private final NotificationRepository notificationRepository;
+    private final EntityManager entityManager;
+
+    @Autowired
+    public NotificationExportService(NotificationRepository notificationRepository, EntityManager entityManager) {
+        this.notificationRepository = notificationRepository;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Exports the history of one user, or of all users when userId is null. Both bounds are optional;
+     * from is inclusive, to is exclusive.
+     */
+    @Transactional(readOnly = true)
+    public long exportNotifications(UUID userId, LocalDateTime from, LocalDateTime to, Consumer<Notification> sink) {
+
+        LocalDateTime lower = from == null ? EARLIEST : from;
+        LocalDateTime upper = to == null ? LATEST : to;
+
+        long count = 0;
+        try (Stream<Notification> notifications = userId == null
+                ? notificationRepository.streamAllHistory(lower, upper)
+                : notificationRepository.streamHistory(userId, lower, upper)) {
+
+            for (Notification notification : (Iterable<Notification>) notifications::iterator) {
+                sink.accept(notification);
+                entityManager.detach(notification);
+                count++;
+            }
+        }
+        return count;
+    }
+}
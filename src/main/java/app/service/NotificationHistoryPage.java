@@ -0,0 +1,11 @@
+package app.service;
+
+import app.model.Notification;
+
+import java.util.List;
+
+/**
+ * One page of a user's notification history. nextCursor is null on the last page.
+ */
+public record NotificationHistoryPage(List<Notification> notifications, NotificationCursor nextCursor) {
+}
@@ -0,0 +1,251 @@
+package app.service;
+
+import app.event.BackpressureController;
+import app.model.Notification;
+import app.model.NotificationStatus;
+import app.repository.NotificationBodyRepository;
+import app.repository.NotificationRepository;
+import app.repository.ProcessedEventRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes old notifications in small chunks, each fetched by keyset on (status, createdOn, id) and
+ * deleted in its own short transaction, so no run holds locks for long:
+ * <ul>
+ *     <li>soft-deleted notifications older than deleted-after are purged;</li>
+ *     <li>notifications in a final status older than archive-after are written to the
+ *     {@link NotificationArchive} first (unless archive is off) and then deleted;</li>
+ *     <li>stored bodies no notification references any more are purged once body-grace has passed since
+ *     they were last stored, keyed through the hash;</li>
+ *     <li>processed event keys older than app.kafka.idempotency.retention are purged.</li>
+ * </ul>
+ * A run pauses between chunks, waits while the {@link BackpressureController} holds the listeners, and
+ * stops after max-duration; the next run picks up where the table stands then. Scheduled runs take a
+ * {@link JobLeases lease} for a little longer than max-duration, so only one instance runs at a time.
+ */
+@Component
+@Slf4j
+public class NotificationRetention {
+
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final UUID LOWEST_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+    private static final String LOWEST_HASH = "";
+    // covers the chunk still in flight when a run reaches max-duration
+    private static final Duration LEASE_MARGIN = Duration.ofMinutes(10);
+
+    private final NotificationRepository notificationRepository;
+    private final ProcessedEventRepository processedEventRepository;
+    private final NotificationBodyRepository notificationBodyRepository;
+    private final NotificationArchive notificationArchive;
+    private final BackpressureController backpressureController;
+    private final NotificationCounters notificationCounters;
+    private final JobLeases jobLeases;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Duration deletedAfter;
+    private final Duration archiveAfter;
+    private final List<NotificationStatus> statuses;
+    private final boolean archive;
+    private final Duration processedEventsAfter;
+    private final Duration bodyGrace;
+    private final int chunkSize;
+    private final Duration pauseBetweenChunks;
+    private final Duration maxDuration;
+    private final Timer chunkTimer;
+    private final AtomicLong lastRunRows = new AtomicLong();
+
+    @Autowired
+    public NotificationRetention(NotificationRepository notificationRepository,
+                                 ProcessedEventRepository processedEventRepository,
+                                 NotificationBodyRepository notificationBodyRepository,
+                                 NotificationArchive notificationArchive,
+                                 BackpressureController backpressureController,
+                                 NotificationCounters notificationCounters,
+                                 JobLeases jobLeases,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.notifications.retention.enabled:false}") boolean enabled,
+                                 @Value("${app.notifications.retention.deleted-after:P30D}") Duration deletedAfter,
+                                 @Value("${app.notifications.retention.archive-after:P365D}") Duration archiveAfter,
+                                 @Value("${app.notifications.retention.statuses:SUCCEEDED,FAILED,DIGESTED}") List<NotificationStatus> statuses,
+                                 @Value("${app.notifications.retention.archive:true}") boolean archive,
+                                 @Value("${app.kafka.idempotency.retention:P7D}") Duration processedEventsAfter,
+                                 @Value("${app.notifications.retention.body-grace:P1D}") Duration bodyGrace,
+                                 @Value("${app.notifications.retention.chunk-size:500}") int chunkSize,
+                                 @Value("${app.notifications.retention.pause-between-chunks:PT0.2S}") Duration pauseBetweenChunks,
+                                 @Value("${app.notifications.retention.max-duration:PT1H}") Duration maxDuration) {
+        this.notificationRepository = notificationRepository;
+        this.processedEventRepository = processedEventRepository;
+        this.notificationBodyRepository = notificationBodyRepository;
+        this.notificationArchive = notificationArchive;
+        this.backpressureController = backpressureController;
+        this.notificationCounters = notificationCounters;
+        this.jobLeases = jobLeases;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.deletedAfter = deletedAfter;
+        this.archiveAfter = archiveAfter;
+        this.statuses = statuses;
+        this.archive = archive;
+        this.processedEventsAfter = processedEventsAfter;
+        this.bodyGrace = bodyGrace;
+        this.chunkSize = chunkSize;
+        this.pauseBetweenChunks = pauseBetweenChunks;
+        this.maxDuration = maxDuration;
+        this.chunkTimer = Timer.builder("notification.retention.chunk")
+                .description("Time to archive and delete one retention chunk")
+                .register(meterRegistry);
+        Gauge.builder("notification.retention.last.run.rows", lastRunRows, AtomicLong::get)
+                .description("Rows removed by the last retention run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.notifications.retention.cron:0 30 3 * * *}")
+    public void runScheduled() {
+        if (enabled && jobLeases.tryAcquire("notification-retention", maxDuration.plus(LEASE_MARGIN))) {
+            run();
+        }
+    }
+
+    /**
+     * Applies all policies once and returns the number of rows removed.
+     */
+    public long run() {
+
+        long deadline = System.nanoTime() + maxDuration.toNanos();
+        LocalDateTime now = LocalDateTime.now();
+        long removed = 0;
+
+        for (NotificationStatus status : statuses) {
+            removed += applyPolicy("deleted", status, now.minus(deletedAfter), true, false, deadline);
+            removed += applyPolicy("aged", status, now.minus(archiveAfter), false, archive, deadline);
+        }
+        removed += purgeUnreferencedBodies(now.minus(bodyGrace), deadline);
+        removed += purgeProcessedEvents(now.minus(processedEventsAfter), deadline);
+
+        lastRunRows.set(removed);
+        log.info("Retention run removed {} rows{}", removed, System.nanoTime() > deadline ? " before reaching max-duration" : "");
+        return removed;
+    }
+
+    private long applyPolicy(String policy, NotificationStatus status, LocalDateTime before,
+                             boolean deletedOnly, boolean archiveFirst, long deadline) {
+
+        LocalDateTime createdOn = EARLIEST;
+        UUID id = LOWEST_ID;
+        long removed = 0;
+
+        while (awaitCapacity(deadline)) {
+            List<Notification> chunk = notificationRepository.findRetentionChunk(
+                    status, before, deletedOnly, createdOn, id, Limit.of(chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            chunkTimer.record(() -> removeChunk(chunk, archiveFirst));
+            removed += chunk.size();
+            meterRegistry.counter("notification.retention.rows",
+                    "policy", policy, "action", archiveFirst ? "archived" : "purged").increment(chunk.size());
+
+            Notification last = chunk.get(chunk.size() - 1);
+            createdOn = last.getCreatedOn();
+            id = last.getId();
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+        if (removed > 0) {
+            log.info("Retention policy {} removed {} {} notifications created before {}", policy, removed, status, before);
+        }
+        return removed;
+    }
+
+    private void removeChunk(List<Notification> chunk, boolean archiveFirst) {
+
+        if (archiveFirst) {
+            try {
+                notificationArchive.write(chunk);
+            } catch (IOException e) {
+                // nothing is deleted that was not archived
+                throw new UncheckedIOException("Archiving %d notifications failed".formatted(chunk.size()), e);
+            }
+        }
+        notificationRepository.deleteAllByIdInBatch(chunk.stream().map(Notification::getId).toList());
+        notificationCounters.removed(chunk);
+    }
+
+    private long purgeUnreferencedBodies(LocalDateTime before, long deadline) {
+
+        String hash = LOWEST_HASH;
+        long removed = 0;
+        while (awaitCapacity(deadline)) {
+            List<String> hashes = notificationBodyRepository.findUnreferencedHashes(hash, before, Limit.of(chunkSize));
+            if (hashes.isEmpty()) {
+                break;
+            }
+            int deleted = notificationBodyRepository.deleteUnreferenced(hashes, before);
+            removed += deleted;
+            meterRegistry.counter("notification.retention.rows", "policy", "unreferenced-bodies", "action", "purged")
+                    .increment(deleted);
+
+            hash = hashes.get(hashes.size() - 1);
+            if (hashes.size() < chunkSize) {
+                break;
+            }
+        }
+        if (removed > 0) {
+            log.info("Retention purged {} bodies no notification references", removed);
+        }
+        return removed;
+    }
+
+    private long purgeProcessedEvents(LocalDateTime before, long deadline) {
+
+        long removed = 0;
+        while (awaitCapacity(deadline)) {
+            List<String> keys = processedEventRepository.findKeysProcessedBefore(before, Limit.of(chunkSize));
+            if (keys.isEmpty()) {
+                break;
+            }
+            processedEventRepository.deleteAllByIdInBatch(keys);
+            removed += keys.size();
+            meterRegistry.counter("notification.retention.rows", "policy", "processed-events", "action", "purged")
+                    .increment(keys.size());
+            if (keys.size() < chunkSize) {
+                break;
+            }
+        }
+        return removed;
+    }
+
+    // pauses before every chunk, longer while the listeners are held back; false once the run is out of time
+    private boolean awaitCapacity(long deadline) {
+
+        try {
+            do {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(pauseBetweenChunks.toMillis());
+            } while (backpressureController.isPaused());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package app.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter for notifications whose send failed with a transient error: the n-th
+ * retry waits initial-backoff * 2^(n-1), capped at max-backoff, minus a random share of up to
+ * {@code jitter} so that a burst of failures is not retried as a burst again.
+ */
+@Component
+public class NotificationRetryPolicy {
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double jitter;
+
+    @Autowired
+    public NotificationRetryPolicy(@Value("${app.notifications.retry.max-attempts:6}") int maxAttempts,
+                                   @Value("${app.notifications.retry.initial-backoff:PT30S}") Duration initialBackoff,
+                                   @Value("${app.notifications.retry.max-backoff:PT1H}") Duration maxBackoff,
+                                   @Value("${app.notifications.retry.jitter:0.5}") double jitter) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.jitter = Math.min(1, Math.max(0, jitter));
+    }
+
+    /**
+     * Whether a notification that has been tried {@code attempts} times may be tried again.
+     */
+    public boolean canRetry(int attempts) {
+        return attempts < maxAttempts;
+    }
+
+    public LocalDateTime nextAttemptAt(int attempts, LocalDateTime now) {
+        return now.plus(backoff(attempts));
+    }
+
+    Duration backoff(int attempts) {
+
+        int exponent = Math.min(Math.max(attempts - 1, 0), 30);
+        long backoffMillis = Math.min(initialBackoff.toMillis() << exponent, maxBackoff.toMillis());
+        double factor = 1 - jitter * ThreadLocalRandom.current().nextDouble();
+        return Duration.ofMillis((long) (backoffMillis * factor));
+    }
+}
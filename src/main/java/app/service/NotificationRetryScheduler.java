@@ -0,0 +1,49 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationStatus;
+import app.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Finds RETRYING notifications whose next attempt is due, oldest first and in batches through the
+ * (status, nextAttemptAt) index, and hands them to the dispatch pool, so that retries never run on a
+ * listener thread. Whatever does not fit into the dispatch queue is left for the next scan.
+ */
+@Component
+@Slf4j
+public class NotificationRetryScheduler {
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationDispatcher notificationDispatcher;
+    private final int batchSize;
+
+    @Autowired
+    public NotificationRetryScheduler(NotificationRepository notificationRepository,
+                                      NotificationDispatcher notificationDispatcher,
+                                      @Value("${app.notifications.retry.batch-size:100}") int batchSize) {
+        this.notificationRepository = notificationRepository;
+        this.notificationDispatcher = notificationDispatcher;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.notifications.retry.poll-interval:PT5S}")
+    public void retryDueNotifications() {
+
+        // one batch per scan: queued rows stay RETRYING until a worker claims them
+        List<Notification> due = notificationRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+                NotificationStatus.RETRYING, LocalDateTime.now(), Limit.of(batchSize));
+        if (!due.isEmpty()) {
+            int queued = notificationDispatcher.retry(due);
+            log.info("Retrying {} of {} due notifications", queued, due.size());
+        }
+    }
+}
@@ -11,28 +11,36 @@ import app.web.dto.NotificationRequest;
 import app.web.mapper.DtoMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.MailSender;
-import org.springframework.mail.SimpleMailMessage;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class NotificationService {
 
     private final PreferenceRepository preferenceRepository;
-    private final MailSender mailSender;
+    private final NotificationDispatcher notificationDispatcher;
     private final NotificationRepository  notificationRepository;
+    private final PreferenceCache preferenceCache;
+    private final ReadYourWrites readYourWrites;
+    private final NotificationCounters notificationCounters;
+    private final NotificationTemplateService templateService;
 
     @Autowired
-    public NotificationService(PreferenceRepository preferenceRepository, MailSender mailSender, NotificationRepository notificationRepository) {
+    public NotificationService(PreferenceRepository preferenceRepository, NotificationDispatcher notificationDispatcher, NotificationRepository notificationRepository, PreferenceCache preferenceCache, NotificationTemplateService templateService, ReadYourWrites readYourWrites, NotificationCounters notificationCounters) {
         this.preferenceRepository = preferenceRepository;
-        this.mailSender = mailSender;
+        this.notificationDispatcher = notificationDispatcher;
         this.notificationRepository = notificationRepository;
+        this.preferenceCache = preferenceCache;
+        this.readYourWrites = readYourWrites;
+        this.notificationCounters = notificationCounters;
+        this.templateService = templateService;
     }
 
     public NotificationPreference upsertPreference(UpsertNotificationPreference dto) {
@@ -44,9 +52,10 @@ public class NotificationService {
                     preference.setType(DtoMapper.fromNotificationTypeRequest(dto.getType()));
                     preference.setContactInfo(dto.getContactInfo());
                     preference.setEnable(dto.isNotificationEnabled());
+                    preference.setDigestWindowMinutes(dto.getDigestWindowMinutes());
                     preference.setUpdatedOn(LocalDateTime.now());
 
-                    return preferenceRepository.save(preference);
+                    return savePreference(preference);
         }
 
          NotificationPreference notificationPreference = NotificationPreference.builder()
@@ -54,66 +63,188 @@ public class NotificationService {
                 .type(DtoMapper.fromNotificationTypeRequest(dto.getType()))
                 .isEnable(dto.isNotificationEnabled())
                 .contactInfo(dto.getContactInfo())
+                .digestWindowMinutes(dto.getDigestWindowMinutes())
                 .createdOn(LocalDateTime.now())
                 .updatedOn(LocalDateTime.now())
                 .build();
-        return preferenceRepository.save(notificationPreference);
+        return savePreference(notificationPreference);
+    }
+
+    @Transactional
+    public List<NotificationPreference> upsertPreferences(List<UpsertNotificationPreference> dtos) {
+
+        Set<UUID> userIds = dtos.stream()
+                .map(UpsertNotificationPreference::getUserId)
+                .collect(Collectors.toSet());
+        Map<UUID, NotificationPreference> preferences = preferenceRepository.findAllByUserIdIn(userIds)
+                .stream()
+                .collect(Collectors.toMap(NotificationPreference::getUserId, Function.identity()));
+
+        List<NotificationPreference> result = new ArrayList<>(dtos.size());
+        for (UpsertNotificationPreference dto : dtos) {
+            NotificationPreference preference = preferences.computeIfAbsent(dto.getUserId(),
+                    userId -> NotificationPreference.builder()
+                            .userId(userId)
+                            .createdOn(LocalDateTime.now())
+                            .build());
+            preference.setType(DtoMapper.fromNotificationTypeRequest(dto.getType()));
+            preference.setContactInfo(dto.getContactInfo());
+            preference.setEnable(dto.isNotificationEnabled());
+            preference.setDigestWindowMinutes(dto.getDigestWindowMinutes());
+            preference.setUpdatedOn(LocalDateTime.now());
+            result.add(preference);
+        }
+
+        for (NotificationPreference saved : preferenceRepository.saveAll(preferences.values())) {
+            readYourWrites.wrote(saved.getUserId());
+            preferenceCache.updated(saved);
+        }
+        return result;
     }
 
     public NotificationPreference getPreferenceByUserId(UUID userId) {
 
-        return preferenceRepository.findByUserId(userId)
-                .orElseThrow(
-                        () -> new NullPointerException(
-                                "Notification preference for user with id %s was not found.".formatted( userId)));
+        return preferenceCache.get(userId, id -> readYourWrites.read(id, () -> preferenceRepository.findByUserId(id)))
+                .orElseThrow(() -> preferenceNotFound(userId));
+    }
+
+    public Map<UUID, NotificationPreference> getPreferencesByUserIds(Collection<UUID> userIds) {
+
+        return preferenceCache.getAll(userIds,
+                missing -> readYourWrites.readAll(missing, () -> preferenceRepository.findAllByUserIdIn(missing)));
     }
 
     public Notification sendNotification(NotificationRequest notificationRequest) {
 
+        NotificationPreference userPreference = getPreferenceByUserId(notificationRequest.getUserId());
+
+        Notification notification = notificationRepository.save(prepareNotification(notificationRequest, userPreference));
+        readYourWrites.wrote(notification.getUserId());
+        notificationCounters.created(List.of(notification));
+        notificationDispatcher.dispatch(List.of(notification));
+        return notification;
+    }
+
+    /**
+     * Builds the notification for the given preference without persisting it, so that callers
+     * processing many requests at once can store the results with a single {@link #saveNotifications(List)}.
+     * In synchronous dispatch mode the email is already sent here. Users with a digest window get the
+     * notification BUFFERED instead, to be sent with the others of the window by {@link NotificationDigester}.
+     */
+    public Notification prepareNotification(NotificationRequest notificationRequest, NotificationPreference userPreference) {
+
+        return stageNotification(buildNotification(notificationRequest, userPreference), userPreference);
+    }
+
+    /**
+     * The second half of {@link #prepareNotification}: buffers a built notification for the digest or stages
+     * it for delivery, which sends it right away in synchronous dispatch mode.
+     */
+    public Notification stageNotification(Notification notification, NotificationPreference userPreference) {
+
+        if (userPreference.getDigestWindowMinutes() > 0) {
+            notification.setStatus(NotificationStatus.BUFFERED);
+            // the earliest buffered notification of a user decides when the digest goes out
+            notification.setNextAttemptAt(notification.getCreatedOn().plusMinutes(userPreference.getDigestWindowMinutes()));
+            return notification;
+        }
+        notificationDispatcher.stage(notification);
+        return notification;
+    }
+
+    /**
+     * Validates the preference and builds the notification without staging it for delivery. A request with
+     * a templateId gets its subject and body rendered from the template.
+     */
+    public Notification buildNotification(NotificationRequest notificationRequest, NotificationPreference userPreference) {
+
         UUID userid = notificationRequest.getUserId();
-        NotificationPreference userPreference = getPreferenceByUserId(userid);
+        if (userPreference == null) {
+            throw preferenceNotFound(userid);
+        }
 
         if(!userPreference.isEnable()) {
             throw new IllegalArgumentException(
                     "User with id %s is not allow to receive notifications.".formatted(userid));
         }
 
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(userPreference.getContactInfo());
-        message.setSubject(notificationRequest.getSubject());
-        message.setText(notificationRequest.getBody());
+        String subject = notificationRequest.getSubject();
+        String body = notificationRequest.getBody();
+        if (notificationRequest.getTemplateId() != null) {
+            NotificationTemplateService.RenderedTemplate rendered =
+                    templateService.render(notificationRequest.getTemplateId(), notificationRequest.getVariables());
+            subject = rendered.subject();
+            body = rendered.body();
+        } else if (subject == null || subject.isBlank() || body == null || body.isBlank()) {
+            throw new IllegalArgumentException("Notification requires a subject and a body, or a templateId.");
+        }
 
-        Notification notification = Notification.builder()
-                .subject(notificationRequest.getSubject())
-                .body(notificationRequest.getBody())
+        return Notification.builder()
+                .subject(subject)
+                .body(body)
+                .templateId(notificationRequest.getTemplateId())
                 .createdOn(LocalDateTime.now())
                 .userId(userid)
+                .recipient(userPreference.getContactInfo())
                 .deleted(false)
-                .type(NotificationType.EMAIL)
+                // the preference decides the channel
+                .type(userPreference.getType() == null ? NotificationType.EMAIL : userPreference.getType())
                 .build();
+    }
 
-        try {
-            mailSender.send(message);
-            notification.setStatus(NotificationStatus.SUCCEEDED);
-        } catch (Exception e) {
-            notification.setStatus(NotificationStatus.FAILED);
-            log.warn(
-                    "There was an issue sending an email to %s due to %s."
-                            .formatted(userPreference.getContactInfo(), e.getMessage()));
-        }
+    public List<Notification> saveNotifications(List<Notification> notifications) {
 
-        return notificationRepository.save(notification);
+        List<Notification> saved = notificationRepository.saveAll(notifications);
+        notificationCounters.created(saved);
+        notificationDispatcher.dispatch(saved);
+        return saved;
     }
 
     public List<Notification> getNotificationHistory(UUID userId) {
 
-       return notificationRepository.findAllByUserIdAndDeletedIsFalse(userId);
+       return readYourWrites.read(userId, () -> notificationRepository.findAllByUserIdAndDeletedIsFalse(userId));
+    }
+
+    public NotificationSummary getNotificationSummary(UUID userId) {
+
+        return notificationCounters.summary(userId);
+    }
+
+    public NotificationHistoryPage getNotificationHistoryPage(UUID userId, NotificationCursor after, int size) {
+
+        // one extra row tells whether there is a next page without a count query
+        Limit limit = Limit.of(size + 1);
+        List<Notification> notifications = readYourWrites.read(userId, () -> after == null
+                ? notificationRepository.findFirstHistoryPage(userId, limit)
+                : notificationRepository.findHistoryPageAfter(userId, after.createdOn(), after.id(), limit));
+
+        if (notifications.size() <= size) {
+            return new NotificationHistoryPage(notifications, null);
+        }
+        List<Notification> page = notifications.subList(0, size);
+        return new NotificationHistoryPage(page, NotificationCursor.of(page.get(size - 1)));
     }
 
     public NotificationPreference changeNotificationPreference(UUID userId, boolean enable) {
 
-        NotificationPreference notificationPreference = getPreferenceByUserId(userId);
+        NotificationPreference notificationPreference = preferenceRepository.findByUserId(userId)
+                .orElseThrow(() -> preferenceNotFound(userId));
         notificationPreference.setEnable(enable);
-        return preferenceRepository.save(notificationPreference);
+        notificationPreference.setUpdatedOn(LocalDateTime.now());
+        return savePreference(notificationPreference);
+    }
+
+    private NotificationPreference savePreference(NotificationPreference preference) {
+
+        NotificationPreference saved = preferenceRepository.save(preference);
+        readYourWrites.wrote(preference.getUserId());
+        preferenceCache.updated(saved);
+        return saved;
+    }
+
+    private static NullPointerException preferenceNotFound(UUID userId) {
+
+        return new NullPointerException(
+                "Notification preference for user with id %s was not found.".formatted(userId));
     }
 }
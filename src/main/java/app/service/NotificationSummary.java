@@ -0,0 +1,21 @@
+package app.service;
+
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The notification counts of a user by status and by type, as kept by {@link NotificationCounters}.
+ */
+public record NotificationSummary(UUID userId, Map<NotificationStatus, Long> byStatus, Map<NotificationType, Long> byType) {
+
+    public long total() {
+        return byType.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public long count(NotificationStatus status) {
+        return byStatus.getOrDefault(status, 0L);
+    }
+}
@@ -0,0 +1,93 @@
+package app.service;
+
+import app.model.NotificationTemplate;
+import app.repository.NotificationTemplateRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Registers notification templates and renders them. Templates are compiled once into a
+ * {@link CompiledTemplate} and kept in a bounded cache; entries expire after cache-ttl so that a template
+ * changed through another instance is picked up.
+ */
+@Service
+public class NotificationTemplateService {
+
+    private final NotificationTemplateRepository templateRepository;
+    private final LoadingCache<String, Compiled> compiledTemplates;
+
+    @Autowired
+    public NotificationTemplateService(NotificationTemplateRepository templateRepository,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${app.notifications.templates.cache-size:1000}") long cacheSize,
+                                       @Value("${app.notifications.templates.cache-ttl:PT5M}") Duration cacheTtl) {
+        this.templateRepository = templateRepository;
+        this.compiledTemplates = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build(id -> templateRepository.findById(id).map(Compiled::of).orElse(null));
+        CaffeineCacheMetrics.monitor(meterRegistry, compiledTemplates, "notification.templates");
+    }
+
+    /**
+     * Creates or replaces a template.
+     *
+     * @throws IllegalArgumentException if subject or body is not a valid template
+     */
+    public NotificationTemplate register(String id, String subject, String body) {
+
+        Compiled compiled = Compiled.of(subject, body);
+        LocalDateTime now = LocalDateTime.now();
+        NotificationTemplate template = templateRepository.findById(id)
+                .orElseGet(() -> NotificationTemplate.builder().id(id).createdOn(now).build());
+        template.setSubject(subject);
+        template.setBody(body);
+        template.setUpdatedOn(now);
+
+        NotificationTemplate saved = templateRepository.save(template);
+        compiledTemplates.put(id, compiled);
+        return saved;
+    }
+
+    public Optional<NotificationTemplate> getTemplate(String id) {
+        return templateRepository.findById(id);
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no such template or a variable is missing
+     */
+    public RenderedTemplate render(String id, Map<String, String> variables) {
+
+        // misses are not cached, a template registered on another instance is found right away
+        Compiled compiled = compiledTemplates.get(id);
+        if (compiled == null) {
+            throw new IllegalArgumentException("Template %s was not found.".formatted(id));
+        }
+        return new RenderedTemplate(compiled.subject().render(variables), compiled.body().render(variables));
+    }
+
+    public record RenderedTemplate(String subject, String body) {
+    }
+
+    private record Compiled(CompiledTemplate subject, CompiledTemplate body) {
+
+        static Compiled of(NotificationTemplate template) {
+            return of(template.getSubject(), template.getBody());
+        }
+
+        static Compiled of(String subject, String body) {
+            return new Compiled(CompiledTemplate.compile(subject), CompiledTemplate.compile(body));
+        }
+    }
+}
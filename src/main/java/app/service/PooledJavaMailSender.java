@@ -0,0 +1,255 @@
+package app.service;
+
+import jakarta.mail.*;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link JavaMailSender} that keeps up to maxConnections connected and authenticated SMTP transports and
+ * reuses them across sends, so the connect/STARTTLS/AUTH handshake is paid once per connection instead
+ * of once per email. A call with several messages sends all of them over one connection. Connections
+ * idle for longer than idleTimeout, or found broken, are closed and replaced on demand.
+ */
+@Slf4j
+public class PooledJavaMailSender implements JavaMailSender, AutoCloseable {
+
+    // connections used within this window are not probed with a NOOP before reuse
+    private static final long VALIDATE_AFTER_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final Session session;
+    private final String protocol;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final Duration idleTimeout;
+    private final Duration borrowTimeout;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+
+    public PooledJavaMailSender(Properties javaMailProperties, String protocol, String host, int port,
+                                String username, String password,
+                                int maxConnections, Duration idleTimeout, Duration borrowTimeout) {
+        this.session = Session.getInstance(javaMailProperties);
+        this.protocol = protocol;
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.idleTimeout = idleTimeout;
+        this.borrowTimeout = borrowTimeout;
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    @Override
+    public void send(SimpleMailMessage... simpleMessages) throws MailException {
+
+        MimeMessage[] mimeMessages = new MimeMessage[simpleMessages.length];
+        for (int i = 0; i < simpleMessages.length; i++) {
+            MimeMailMessage message = new MimeMailMessage(createMimeMessage());
+            simpleMessages[i].copyTo(message);
+            mimeMessages[i] = message.getMimeMessage();
+        }
+        doSend(mimeMessages, simpleMessages);
+    }
+
+    @Override
+    public MimeMessage createMimeMessage() {
+        return new MimeMessage(session);
+    }
+
+    @Override
+    public MimeMessage createMimeMessage(InputStream contentStream) throws MailException {
+        try {
+            return new MimeMessage(session, contentStream);
+        } catch (MessagingException e) {
+            throw new MailParseException("Could not parse raw MIME content", e);
+        }
+    }
+
+    @Override
+    public void send(MimeMessage... mimeMessages) throws MailException {
+        doSend(mimeMessages, null);
+    }
+
+    // failures are reported against the caller's original messages, like JavaMailSenderImpl does
+    private void doSend(MimeMessage[] mimeMessages, Object[] originals) {
+
+        acquirePermit();
+        PooledTransport transport = null;
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        try {
+            transport = borrow();
+            for (int i = 0; i < mimeMessages.length; i++) {
+                try {
+                    transport = sendMessage(transport, mimeMessages[i]);
+                } catch (MessagingException e) {
+                    failedMessages.put(originals != null ? originals[i] : mimeMessages[i], e);
+                }
+            }
+        } finally {
+            giveBack(transport);
+            permits.release();
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.pool.eviction-interval:PT30S}")
+    public void evictIdleConnections() {
+
+        long now = System.nanoTime();
+        for (PooledTransport transport : idle) {
+            if (transport.isExpired(now, idleTimeout) && idle.remove(transport)) {
+                transport.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+
+        PooledTransport transport;
+        while ((transport = idle.poll()) != null) {
+            transport.close();
+        }
+    }
+
+    // a connection that looked fine in the pool may have been dropped by the server; retry once on a fresh one
+    private PooledTransport sendMessage(PooledTransport transport, MimeMessage message) throws MessagingException {
+
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        message.saveChanges();
+        Address[] recipients = message.getAllRecipients();
+        if (recipients == null || recipients.length == 0) {
+            throw new SendFailedException("No recipient addresses");
+        }
+
+        try {
+            transport.transport.sendMessage(message, recipients);
+        } catch (MessagingException e) {
+            if (transport.transport.isConnected()) {
+                throw e;
+            }
+            transport.close();
+            transport = connect();
+            transport.transport.sendMessage(message, recipients);
+        }
+        messagesSent.incrementAndGet();
+        return transport;
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!permits.tryAcquire(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new MailSendException("No SMTP connection available within " + borrowTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted while waiting for an SMTP connection", e);
+        }
+    }
+
+    private PooledTransport borrow() {
+
+        long now = System.nanoTime();
+        PooledTransport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            if (!transport.isExpired(now, idleTimeout)
+                    && (now - transport.lastUsed < VALIDATE_AFTER_NANOS || transport.transport.isConnected())) {
+                return transport;
+            }
+            transport.close();
+        }
+        try {
+            return connect();
+        } catch (AuthenticationFailedException e) {
+            throw new MailAuthenticationException(e);
+        } catch (MessagingException e) {
+            throw new MailSendException("Mail server connection failed", e);
+        }
+    }
+
+    private void giveBack(PooledTransport transport) {
+
+        if (transport == null) {
+            return;
+        }
+        if (transport.transport.isConnected()) {
+            transport.lastUsed = System.nanoTime();
+            // most recently used first, so surplus connections at the tail can run into the idle timeout
+            idle.offerFirst(transport);
+        } else {
+            transport.close();
+        }
+    }
+
+    private PooledTransport connect() throws MessagingException {
+
+        Transport transport = session.getTransport(protocol);
+        transport.connect(host, port, username, password);
+        connectionsOpened.incrementAndGet();
+        log.debug("Opened SMTP connection to {}:{}", host, port);
+        return new PooledTransport(transport);
+    }
+
+    private static final class PooledTransport {
+
+        private final Transport transport;
+        private volatile long lastUsed = System.nanoTime();
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        private boolean isExpired(long now, Duration idleTimeout) {
+            return now - lastUsed > idleTimeout.toNanos();
+        }
+
+        private void close() {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close SMTP connection: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package app.service;
+
+import app.event.PreferenceChangePublisher;
+import app.model.NotificationPreference;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Size- and TTL-bounded cache in front of the preference lookups of the send path. Hit, miss and eviction
+ * counts are available under the cache.* metrics of the actuator. Cached preferences are shared between
+ * threads and must not be modified; the write paths load their own copy from the repository.
+ * Preferences held by the warm-started {@link PreferenceStore} are answered from there first; preferences
+ * loaded while the store is on are kept there too.
+ */
+@Component
+public class PreferenceCache {
+
+    private final Cache<UUID, NotificationPreference> cache;
+    private final PreferenceChangePublisher preferenceChangePublisher;
+    private final PreferenceStore preferenceStore;
+
+    @Autowired
+    public PreferenceCache(PreferenceChangePublisher preferenceChangePublisher,
+                           PreferenceStore preferenceStore,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.preferences.cache.maximum-size:10000}") long maximumSize,
+                           @Value("${app.preferences.cache.ttl:PT10M}") Duration ttl) {
+        this.preferenceChangePublisher = preferenceChangePublisher;
+        this.preferenceStore = preferenceStore;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "notificationPreferences");
+    }
+
+    public Optional<NotificationPreference> get(UUID userId, Function<UUID, Optional<NotificationPreference>> loader) {
+
+        NotificationPreference stored = preferenceStore.get(userId);
+        if (stored != null) {
+            return Optional.of(stored);
+        }
+        return Optional.ofNullable(cache.get(userId, key -> loader.apply(key).map(this::keep).orElse(null)));
+    }
+
+    public Map<UUID, NotificationPreference> getAll(Collection<UUID> userIds,
+                                                    Function<Collection<UUID>, List<NotificationPreference>> loader) {
+
+        Map<UUID, NotificationPreference> preferences = new HashMap<>(cache.getAllPresent(userIds));
+        if (preferenceStore.isEnabled()) {
+            for (UUID userId : userIds) {
+                NotificationPreference stored = preferenceStore.get(userId);
+                if (stored != null) {
+                    preferences.put(userId, stored);
+                }
+            }
+        }
+        if (preferences.size() < userIds.size()) {
+            List<UUID> missing = userIds.stream()
+                    .filter(userId -> !preferences.containsKey(userId))
+                    .toList();
+            for (NotificationPreference preference : loader.apply(missing)) {
+                cache.put(preference.getUserId(), keep(preference));
+                preferences.put(preference.getUserId(), preference);
+            }
+        }
+        return preferences;
+    }
+
+    /**
+     * Replaces the cached entry once the surrounding transaction (if any) has committed and publishes
+     * the new state to the other instances. If the publish fails the stored copy is dropped as well, so
+     * that this instance does not answer from a store the others can no longer agree with.
+     */
+    public void updated(NotificationPreference preference) {
+
+        afterCommit(() -> {
+            cache.put(preference.getUserId(), preference);
+            preferenceStore.apply(preference);
+            preferenceChangePublisher.publish(preference).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    preferenceStore.remove(preference);
+                }
+            });
+        });
+    }
+
+    /**
+     * A preference changed on another instance: keeps its new state if the store is on and drops the
+     * cached copy either way.
+     */
+    public void changed(NotificationPreference preference) {
+
+        preferenceStore.apply(preference);
+        cache.invalidate(preference.getUserId());
+    }
+
+    public void evict(UUID userId) {
+
+        cache.invalidate(userId);
+    }
+
+    private NotificationPreference keep(NotificationPreference loaded) {
+
+        preferenceStore.apply(loaded);
+        return loaded;
+    }
+
+    private static void afterCommit(Runnable action) {
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+}
@@ -0,0 +1,91 @@
+package app.service;
+
+import app.model.NotificationPreference;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The current preference of every user, replayed from the compacted preference topic when the instance starts
+ * and kept current by the change events of all instances; see {@code PreferenceWarmStart}. Unlike the
+ * {@link PreferenceCache} it is not bounded, so it is only filled when app.preferences.warm-start.enabled is
+ * set. Users whose preference never went over the topic are not in it and are looked up as before.
+ * <p>
+ * A change event that never arrives (its publish failed) would leave the old preference here for good, so an
+ * entry is only answered for max-age after it was kept; after that the database is asked again and the
+ * loaded preference kept anew.
+ * <p>
+ * Changes may arrive out of order (the replay and the live consumer overlap), so a preference only replaces
+ * the one held if it is not older by updatedOn. Stored preferences are shared and must not be modified.
+ */
+@Component
+public class PreferenceStore {
+
+    private record Held(NotificationPreference preference, long keptAtNanos) {
+    }
+
+    private final Map<UUID, Held> preferences = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final long maxAgeNanos;
+
+    @Autowired
+    public PreferenceStore(MeterRegistry meterRegistry,
+                           @Value("${app.preferences.warm-start.enabled:false}") boolean enabled,
+                           @Value("${app.preferences.warm-start.max-age:PT10M}") Duration maxAge) {
+        this.enabled = enabled;
+        this.maxAgeNanos = maxAge.toNanos();
+        Gauge.builder("notification.preferences.stored", preferences, Map::size)
+                .description("Preferences held by the warm-started preference store")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public NotificationPreference get(UUID userId) {
+
+        Held held = enabled ? preferences.get(userId) : null;
+        if (held == null) {
+            return null;
+        }
+        if (System.nanoTime() - held.keptAtNanos() > maxAgeNanos) {
+            preferences.remove(userId, held);
+            return null;
+        }
+        return held.preference();
+    }
+
+    /**
+     * Keeps the preference unless a newer one of the same user is held already. Returns true if it was kept.
+     */
+    public boolean apply(NotificationPreference preference) {
+
+        if (!enabled || preference.getUserId() == null || preference.getUpdatedOn() == null) {
+            return false;
+        }
+        Held kept = preferences.merge(preference.getUserId(), new Held(preference, System.nanoTime()),
+                (current, changed) -> changed.preference().getUpdatedOn().isBefore(current.preference().getUpdatedOn())
+                        ? current : changed);
+        return kept.preference() == preference;
+    }
+
+    /**
+     * Drops the preference if it is still the one held, so that the database answers for the user.
+     */
+    public void remove(NotificationPreference preference) {
+
+        preferences.computeIfPresent(preference.getUserId(), (userId, held) -> held.preference() == preference ? null : held);
+    }
+
+    public int size() {
+        return preferences.size();
+    }
+}
@@ -0,0 +1,82 @@
+package app.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Runs the read paths of a user in a read-only transaction, which goes to a replica when replica routing
+ * is on, unless the user wrote within the read-your-writes window: then the read runs in a read-write
+ * transaction on the primary, so a user who just changed their preference is not shown the state from
+ * before. Only writes of this instance and the preference changes it receives are known here.
+ */
+@Component
+public class ReadYourWrites {
+
+    private final Cache<UUID, Boolean> recentWriters;
+    private final TransactionTemplate primaryReads;
+    private final TransactionTemplate replicaReads;
+    private final Counter pinned;
+
+    @Autowired
+    public ReadYourWrites(PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.datasource.routing.read-your-writes:PT5S}") Duration window,
+                          @Value("${app.datasource.routing.max-recent-writers:100000}") long maxRecentWriters) {
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(maxRecentWriters)
+                .expireAfterWrite(window)
+                .build();
+        this.primaryReads = new TransactionTemplate(transactionManager);
+        this.replicaReads = new TransactionTemplate(transactionManager);
+        this.replicaReads.setReadOnly(true);
+        this.pinned = Counter.builder("notification.datasource.reads.pinned")
+                .description("Reads sent to the primary because the user wrote within the read-your-writes window")
+                .register(meterRegistry);
+    }
+
+    public void wrote(UUID userId) {
+
+        recentWriters.put(userId, Boolean.TRUE);
+    }
+
+    public <T> T read(UUID userId, Supplier<T> query) {
+
+        return transaction(recentWriters.getIfPresent(userId) != null).execute(status -> query.get());
+    }
+
+    /**
+     * Like {@link #read(UUID, Supplier)}, on the primary if any of the users wrote within the window.
+     */
+    public <T> T readAll(Collection<UUID> userIds, Supplier<T> query) {
+
+        boolean primary = false;
+        for (UUID userId : userIds) {
+            if (recentWriters.getIfPresent(userId) != null) {
+                primary = true;
+                break;
+            }
+        }
+        return transaction(primary).execute(status -> query.get());
+    }
+
+    private TransactionTemplate transaction(boolean primary) {
+
+        if (primary) {
+            pinned.increment();
+            return primaryReads;
+        }
+        return replicaReads;
+    }
+}
@@ -0,0 +1,100 @@
+package app.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs controller handlers. In async mode (app.web.io.async) a handler runs on the webIoExecutor and the
+ * servlet thread is released while it waits for the database or the mail server, so concurrent requests
+ * are no longer capped by the servlet thread count. A handler that takes longer than the timeout of its
+ * endpoint is answered with the endpoint's fallback status (it still completes in the background), and one
+ * the executor cannot queue is answered with 503 right away. In sync mode handlers run on the servlet
+ * thread as before.
+ * <p>
+ * Endpoints are configured under app.web.io.endpoints.&lt;endpoint&gt;.timeout/fallback-status, with
+ * app.web.io.timeout and 503 as the defaults. A handler past its timeout may still fail, so the fallback
+ * status must not claim success.
+ */
+@Component
+public class EndpointExecutor {
+
+    private final TaskExecutor ioExecutor;
+    private final MeterRegistry meterRegistry;
+    private final boolean async;
+    private final Duration defaultTimeout;
+    private final Map<String, EndpointSettings> endpoints;
+
+    @Autowired
+    public EndpointExecutor(@Qualifier("webIoExecutor") TaskExecutor ioExecutor,
+                            MeterRegistry meterRegistry,
+                            Environment environment,
+                            @Value("${app.web.io.async:false}") boolean async,
+                            @Value("${app.web.io.timeout:PT10S}") Duration defaultTimeout) {
+        this.ioExecutor = ioExecutor;
+        this.meterRegistry = meterRegistry;
+        this.async = async;
+        this.defaultTimeout = defaultTimeout;
+        this.endpoints = Binder.get(environment)
+                .bind("app.web.io.endpoints", Bindable.mapOf(String.class, EndpointSettings.class))
+                .orElse(Map.of());
+        endpoints.forEach((endpoint, settings) -> {
+            if (!settings.getFallbackStatus().isError()) {
+                throw new IllegalArgumentException("Fallback status of endpoint %s must be an error status, not %s."
+                        .formatted(endpoint, settings.getFallbackStatus()));
+            }
+        });
+    }
+
+    public <T> CompletableFuture<ResponseEntity<T>> call(String endpoint, Supplier<ResponseEntity<T>> handler) {
+
+        if (!async) {
+            return CompletableFuture.completedFuture(handler.get());
+        }
+        EndpointSettings settings = endpoints.get(endpoint);
+        Duration timeout = settings == null || settings.getTimeout() == null ? defaultTimeout : settings.getTimeout();
+        HttpStatus fallbackStatus = settings == null ? HttpStatus.SERVICE_UNAVAILABLE : settings.getFallbackStatus();
+
+        try {
+            return CompletableFuture.supplyAsync(handler, ioExecutor)
+                    .completeOnTimeout(null, timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .thenApply(response -> response != null ? response : fallback(endpoint, "timeout", fallbackStatus));
+        } catch (TaskRejectedException e) {
+            return CompletableFuture.completedFuture(fallback(endpoint, "rejected", HttpStatus.SERVICE_UNAVAILABLE));
+        }
+    }
+
+    private <T> ResponseEntity<T> fallback(String endpoint, String reason, HttpStatus status) {
+
+        meterRegistry.counter("notification.web.fallbacks", "endpoint", endpoint, "reason", reason).increment();
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+        if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+            response.header(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return response.build();
+    }
+
+    @Data
+    public static class EndpointSettings {
+
+        private Duration timeout;
+        private HttpStatus fallbackStatus = HttpStatus.SERVICE_UNAVAILABLE;
+    }
+}
@@ -1,21 +1,45 @@
 package app.web;
 
 import app.event.payload.UpsertNotificationPreference;
+import app.model.BulkNotificationJob;
 import app.model.Notification;
 import app.model.NotificationPreference;
+import app.model.NotificationTemplate;
+import app.service.BulkNotificationService;
+import app.service.NotificationArchive;
+import app.service.NotificationCursor;
+import app.service.NotificationExportService;
+import app.service.NotificationHistoryPage;
 import app.service.NotificationService;
+import app.service.NotificationTemplateService;
+import app.web.dto.BulkNotificationJobResponse;
+import app.web.dto.BulkNotificationRequest;
+import app.web.dto.NotificationPageResponse;
 import app.web.dto.NotificationPreferenceResponse;
 import app.web.dto.NotificationResponse;
+import app.web.dto.NotificationSummaryResponse;
+import app.web.dto.NotificationTemplateRequest;
+import app.web.dto.NotificationTemplateResponse;
 import app.web.mapper.DtoMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/notifications")
@@ -23,79 +47,263 @@ import java.util.UUID;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final BulkNotificationService bulkNotificationService;
+    private final NotificationExportService notificationExportService;
+    private final NotificationArchive notificationArchive;
+    private final NotificationTemplateService templateService;
+    private final EndpointExecutor endpointExecutor;
+    private final ObjectMapper objectMapper;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
     @Autowired
-    public NotificationController(NotificationService notificationService) {
+    public NotificationController(NotificationService notificationService,
+                                  BulkNotificationService bulkNotificationService,
+                                  NotificationExportService notificationExportService,
+                                  NotificationArchive notificationArchive,
+                                  NotificationTemplateService templateService,
+                                  EndpointExecutor endpointExecutor,
+                                  ObjectMapper objectMapper,
+                                  @Value("${app.notifications.history.page-size:50}") int defaultPageSize,
+                                  @Value("${app.notifications.history.max-page-size:500}") int maxPageSize) {
         this.notificationService = notificationService;
+        this.bulkNotificationService = bulkNotificationService;
+        this.notificationExportService = notificationExportService;
+        this.notificationArchive = notificationArchive;
+        this.templateService = templateService;
+        this.endpointExecutor = endpointExecutor;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     @Operation(summary = "Create new Notification Preferences", description = "Return the created notification preference.")
     @PostMapping("/preferences")
-    public ResponseEntity<NotificationPreferenceResponse> upsertNotificationPreference(
+    public CompletableFuture<ResponseEntity<NotificationPreferenceResponse>> upsertNotificationPreference(
             @RequestBody UpsertNotificationPreference upsertNotificationPreference) {
- //       System.out.println();
 
-        NotificationPreference notificationPreference= notificationService
-                .upsertPreference(upsertNotificationPreference);
+        return endpointExecutor.call("preferences-upsert", () -> {
+            NotificationPreference notificationPreference = notificationService
+                    .upsertPreference(upsertNotificationPreference);
 
-        NotificationPreferenceResponse responseDto = DtoMapper.fromNotificationPreference(notificationPreference);
-        return ResponseEntity
-                .status(HttpStatus.CREATED)
-                .body(responseDto);
+            NotificationPreferenceResponse responseDto = DtoMapper.fromNotificationPreference(notificationPreference);
+            return ResponseEntity
+                    .status(HttpStatus.CREATED)
+                    .body(responseDto);
+        });
     }
 
     @Operation(summary = "Return Notification Preferences", description = "Return the notification preferences by user id.")
     @GetMapping("/preferences")
-    public ResponseEntity<NotificationPreferenceResponse> getNotificationPreference(
+    public CompletableFuture<ResponseEntity<NotificationPreferenceResponse>> getNotificationPreference(
             @RequestParam(name = "userId") UUID userId) {
 
-        NotificationPreference notificationPreference = notificationService.getPreferenceByUserId(userId);
-        NotificationPreferenceResponse responseDto = DtoMapper.fromNotificationPreference(notificationPreference);
+        return endpointExecutor.call("preferences-get", () -> {
+            NotificationPreference notificationPreference = notificationService.getPreferenceByUserId(userId);
+            NotificationPreferenceResponse responseDto = DtoMapper.fromNotificationPreference(notificationPreference);
 
-        return ResponseEntity
-                .status(HttpStatus.OK)
-                .body(responseDto);
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .body(responseDto);
+        });
     }
 
     @Operation(summary = "Send Notification", description = "Send notification to user by email.")
     @PostMapping()
-    public ResponseEntity<NotificationResponse> sendNotification(
+    public CompletableFuture<ResponseEntity<NotificationResponse>> sendNotification(
             @RequestBody app.web.dto.NotificationRequest notificationRequest) {
 
-        Notification notification = notificationService.sendNotification(notificationRequest);
-        NotificationResponse response = DtoMapper.fromNotification(notification);
-        return ResponseEntity
-                .status(HttpStatus.CREATED)
-                .body(response);
+        return endpointExecutor.call("send", () -> {
+            Notification notification = notificationService.sendNotification(notificationRequest);
+            NotificationResponse response = DtoMapper.fromNotification(notification);
+            return ResponseEntity
+                    .status(HttpStatus.CREATED)
+                    .body(response);
+        });
+    }
+
+    @Operation(summary = "Save Notification Template", description = "Create or replace a template; {{name}} in the subject and body is replaced by the variable name of a request with this templateId.")
+    @PutMapping("/templates/{templateId}")
+    public CompletableFuture<ResponseEntity<NotificationTemplateResponse>> saveNotificationTemplate(
+            @PathVariable String templateId,
+            @Valid @RequestBody NotificationTemplateRequest templateRequest) {
+
+        return endpointExecutor.call("templates-save", () -> {
+            NotificationTemplate template;
+            try {
+                template = templateService.register(templateId, templateRequest.getSubject(), templateRequest.getBody());
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .body(DtoMapper.fromNotificationTemplate(template));
+        });
+    }
+
+    @Operation(summary = "Return Notification Template", description = "Return a notification template by id.")
+    @GetMapping("/templates/{templateId}")
+    public CompletableFuture<ResponseEntity<NotificationTemplateResponse>> getNotificationTemplate(@PathVariable String templateId) {
+
+        return endpointExecutor.call("templates-get", () -> {
+            NotificationTemplate template = templateService.getTemplate(templateId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Template %s was not found.".formatted(templateId)));
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .body(DtoMapper.fromNotificationTemplate(template));
+        });
+    }
+
+    @Operation(summary = "Send Bulk Notification", description = "Send one notification to many users. Returns the job to poll for progress.")
+    @PostMapping("/bulk")
+    public CompletableFuture<ResponseEntity<BulkNotificationJobResponse>> sendBulkNotification(
+            @Valid @RequestBody BulkNotificationRequest bulkNotificationRequest) {
+
+        return endpointExecutor.call("bulk-submit", () -> {
+            BulkNotificationJob job = bulkNotificationService.submit(bulkNotificationRequest);
+            return ResponseEntity
+                    .status(HttpStatus.ACCEPTED)
+                    .body(DtoMapper.fromBulkNotificationJob(job));
+        });
+    }
+
+    @Operation(summary = "Return Bulk Notification Job", description = "Return the progress of a bulk notification job.")
+    @GetMapping("/bulk/{jobId}")
+    public CompletableFuture<ResponseEntity<BulkNotificationJobResponse>> getBulkNotificationJob(@PathVariable UUID jobId) {
+
+        return endpointExecutor.call("bulk-get", () -> {
+            BulkNotificationJob job = bulkNotificationService.getJob(jobId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Bulk notification job with id %s not found.".formatted(jobId)));
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .body(DtoMapper.fromBulkNotificationJob(job));
+        });
     }
 
     @Operation(summary = "Return Notifications", description = "Return the notifications by user id.")
     @GetMapping
-    public ResponseEntity<List<NotificationResponse>> getNotificationResponse(
+    public CompletableFuture<ResponseEntity<List<NotificationResponse>>> getNotificationResponse(
             @RequestParam(name= "userId") UUID userId) {
 
-       List<NotificationResponse> notificationHistory = notificationService.getNotificationHistory(userId)
-               .stream()
-               .map(DtoMapper::fromNotification)
-               .toList();
+        return endpointExecutor.call("history", () -> {
+            List<NotificationResponse> notificationHistory = notificationService.getNotificationHistory(userId)
+                    .stream()
+                    .map(DtoMapper::fromNotification)
+                    .toList();
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .body(notificationHistory);
+        });
+    }
+
+    @Operation(summary = "Return Notification Summary", description = "Return how many notifications a user has, by status and by type, without loading them.")
+    @GetMapping("/summary")
+    public CompletableFuture<ResponseEntity<NotificationSummaryResponse>> getNotificationSummary(
+            @RequestParam(name = "userId") UUID userId) {
+
+        return endpointExecutor.call("summary", () -> ResponseEntity
+                .status(HttpStatus.OK)
+                .body(DtoMapper.fromNotificationSummary(notificationService.getNotificationSummary(userId))));
+    }
+
+    @Operation(summary = "Export Notifications", description = "Stream the notifications of a user, or of all users within from/to, as NDJSON or CSV.")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportNotifications(
+            @RequestParam(name = "userId", required = false) UUID userId,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "format", defaultValue = "ndjson") String format) {
+
+        if (userId == null && (from == null || to == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Exporting all users requires from and to.");
+        }
+        if (!NotificationExportWriter.isSupported(format)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format %s.".formatted(format));
+        }
+
+        StreamingResponseBody body = out -> {
+            try (NotificationExportWriter writer = NotificationExportWriter.of(format, out, objectMapper)) {
+                notificationExportService.exportNotifications(userId, from, to, writer::writeUnchecked);
+            }
+        };
         return ResponseEntity
                 .status(HttpStatus.OK)
-                .body(notificationHistory);
+                .contentType(MediaType.parseMediaType(NotificationExportWriter.contentType(format)))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=notifications." + format)
+                .body(body);
+    }
+
+    @Operation(summary = "Export Archived Notifications", description = "Stream the notifications archived by the retention run, of a user or of all users, created within from/to, as NDJSON or CSV.")
+    @GetMapping("/archive")
+    public ResponseEntity<StreamingResponseBody> exportArchivedNotifications(
+            @RequestParam(name = "userId", required = false) UUID userId,
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "format", defaultValue = "ndjson") String format) {
+
+        if (!from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to.");
+        }
+        if (!NotificationExportWriter.isSupported(format)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format %s.".formatted(format));
+        }
+
+        StreamingResponseBody body = out -> {
+            try (NotificationExportWriter writer = NotificationExportWriter.of(format, out, objectMapper)) {
+                notificationArchive.read(userId, from, to, writer::writeUnchecked);
+            }
+        };
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .contentType(MediaType.parseMediaType(NotificationExportWriter.contentType(format)))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=archived-notifications." + format)
+                .body(body);
+    }
+
+    @Operation(summary = "Return Notifications Page", description = "Return one page of the notifications by user id, newest first. Pass the nextCursor of a page to get the following one.")
+    @GetMapping("/page")
+    public CompletableFuture<ResponseEntity<NotificationPageResponse>> getNotificationPage(
+            @RequestParam(name = "userId") UUID userId,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", required = false) Integer size) {
+
+        NotificationCursor after;
+        try {
+            after = cursor == null ? null : NotificationCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+
+        return endpointExecutor.call("page", () -> {
+            NotificationHistoryPage page = notificationService.getNotificationHistoryPage(userId, after, pageSize);
+            NotificationPageResponse response = NotificationPageResponse.builder()
+                    .notifications(page.notifications().stream().map(DtoMapper::fromNotification).toList())
+                    .nextCursor(page.nextCursor() == null ? null : page.nextCursor().encode())
+                    .build();
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .body(response);
+        });
     }
 
     @Operation(summary = "Change Notification Preferences", description = "Change Notification Preferences by user id.")
     @PutMapping("/preferences")
-    public ResponseEntity<NotificationPreferenceResponse> changeNotificationPreference(
+    public CompletableFuture<ResponseEntity<NotificationPreferenceResponse>> changeNotificationPreference(
             @RequestParam(name = "userId") UUID userId,
             @RequestParam(name = "enable") boolean enable) {
 
-        NotificationPreference notificationPreference = notificationService.changeNotificationPreference(userId, enable);
+        return endpointExecutor.call("preferences-change", () -> {
+            NotificationPreference notificationPreference = notificationService.changeNotificationPreference(userId, enable);
 
-        NotificationPreferenceResponse responseDto = DtoMapper.fromNotificationPreference(notificationPreference);
+            NotificationPreferenceResponse responseDto = DtoMapper.fromNotificationPreference(notificationPreference);
 
-        return ResponseEntity
-                .status(HttpStatus.OK)
-                .body(responseDto);
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .body(responseDto);
+        });
     }
 
 }
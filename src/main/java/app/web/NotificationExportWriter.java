@@ -0,0 +1,107 @@
+package app.web;
+
+import app.model.Notification;
+import app.web.dto.NotificationExportRecord;
+import app.web.mapper.DtoMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes exported notifications one by one in NDJSON or CSV, without holding more than one row.
+ */
+abstract class NotificationExportWriter implements Closeable {
+
+    static NotificationExportWriter of(String format, OutputStream out, ObjectMapper objectMapper) throws IOException {
+
+        return switch (format) {
+            case "ndjson" -> new NdJson(out, objectMapper);
+            case "csv" -> new Csv(out);
+            default -> throw new IllegalArgumentException("Unsupported export format %s.".formatted(format));
+        };
+    }
+
+    static boolean isSupported(String format) {
+        return "ndjson".equals(format) || "csv".equals(format);
+    }
+
+    static String contentType(String format) {
+        return "csv".equals(format) ? "text/csv" : "application/x-ndjson";
+    }
+
+    abstract void write(Notification notification) throws IOException;
+
+    void writeUnchecked(Notification notification) {
+        try {
+            write(notification);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class NdJson extends NotificationExportWriter {
+
+        private final ObjectMapper objectMapper;
+        private final JsonGenerator generator;
+
+        private NdJson(OutputStream out, ObjectMapper objectMapper) throws IOException {
+            this.objectMapper = objectMapper;
+            this.generator = objectMapper.getFactory()
+                    .createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        void write(Notification notification) throws IOException {
+            objectMapper.writeValue(generator, DtoMapper.fromNotificationExport(notification));
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static final class Csv extends NotificationExportWriter {
+
+        private final Writer writer;
+
+        private Csv(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write("id,userId,subject,body,createdOn,status,type\n");
+        }
+
+        @Override
+        void write(Notification notification) throws IOException {
+            NotificationExportRecord record = DtoMapper.fromNotificationExport(notification);
+            writer.write(String.join(",",
+                    escape(record.getId()),
+                    escape(record.getUserId()),
+                    escape(record.getSubject()),
+                    escape(record.getBody()),
+                    escape(record.getCreatedOn()),
+                    escape(record.getStatus()),
+                    escape(record.getType())));
+            writer.write('\n');
+        }
+
+        private static String escape(Object value) {
+            if (value == null) {
+                return "";
+            }
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                return text;
+            }
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+}
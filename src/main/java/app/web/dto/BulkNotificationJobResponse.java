@@ -0,0 +1,37 @@
+package app.web.dto;
+
+import app.model.BulkJobStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+public class BulkNotificationJobResponse {
+
+    private UUID jobId;
+
+    private BulkJobStatus status;
+
+    private int totalRecipients;
+
+    private int totalChunks;
+
+    private int completedChunks;
+
+    private int processedRecipients;
+
+    private int sentRecipients;
+
+    private int failedRecipients;
+
+    private int retryingRecipients;
+
+    private int skippedRecipients;
+
+    private LocalDateTime createdOn;
+
+    private LocalDateTime updatedOn;
+}
@@ -0,0 +1,30 @@
+package app.web.dto;
+
+import app.event.payload.IdempotentPayload;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkNotificationRequest implements IdempotentPayload {
+
+    @NotEmpty
+    private List<UUID> userIds;
+
+    @NotBlank
+    private String subject;
+
+    @NotBlank
+    private String body;
+
+    private String idempotencyKey;
+}
@@ -0,0 +1,28 @@
+package app.web.dto;
+
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+public class NotificationExportRecord {
+
+    private UUID id;
+
+    private UUID userId;
+
+    private String subject;
+
+    private String body;
+
+    private LocalDateTime createdOn;
+
+    private NotificationStatus status;
+
+    private NotificationType type;
+}
@@ -0,0 +1,15 @@
+package app.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class NotificationPageResponse {
+
+    private List<NotificationResponse> notifications;
+
+    private String nextCursor;
+}
@@ -15,4 +15,5 @@ public class NotificationPreferenceResponse {
     private NotificationType type;
     private boolean enabled;
     private String contactInfo;
+    private int digestWindowMinutes;
 }
@@ -1,26 +1,38 @@
 package app.web.dto;
 
-import jakarta.validation.constraints.NotBlank;
+import app.event.payload.IdempotentPayload;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Either a literal subject and body, or a templateId whose template is rendered with the variables.
+ */
 @Data
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-public class NotificationRequest {
+public class NotificationRequest implements IdempotentPayload {
 
     @NotNull
     private UUID userId;
 
-    @NotBlank
     private String subject;
 
-    @NotBlank
     private String body;
+
+    private String templateId;
+
+    private Map<String, String> variables;
+
+    private String idempotencyKey;
+
+    public NotificationRequest(UUID userId, String subject, String body) {
+        this(userId, subject, body, null, null, null);
+    }
 }
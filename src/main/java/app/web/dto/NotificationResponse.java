@@ -6,11 +6,14 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Data
 @Builder
 public class NotificationResponse {
 
+    private UUID id;
+
     private String subject;
 
     private LocalDateTime createdOn;
@@ -0,0 +1,24 @@
+package app.web.dto;
+
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+@Builder
+public class NotificationSummaryResponse {
+
+    private UUID userId;
+
+    private long total;
+
+    private long failed;
+
+    private Map<NotificationStatus, Long> byStatus;
+
+    private Map<NotificationType, Long> byType;
+}
@@ -0,0 +1,20 @@
+package app.web.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationTemplateRequest {
+
+    @NotBlank
+    private String subject;
+
+    @NotBlank
+    private String body;
+}
@@ -0,0 +1,17 @@
+package app.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class NotificationTemplateResponse {
+
+    private String id;
+    private String subject;
+    private String body;
+    private LocalDateTime createdOn;
+    private LocalDateTime updatedOn;
+}
@@ -1,5 +1,5 @@
 package app.web.dto;
 
 public enum NotificationTypeRequest {
-    EMAIL
+    EMAIL, SMS, MOBILE
 }
@@ -1,12 +1,22 @@
 package app.web.mapper;
 
+import app.event.payload.BulkNotificationResponseKafka;
 import app.event.payload.NotificationResponseKafka;
+import app.model.BulkNotificationJob;
 import app.model.Notification;
 import app.model.NotificationPreference;
+import app.model.NotificationTemplate;
+import app.model.NotificationStatus;
 import app.model.NotificationType;
+import app.service.NotificationSummary;
+import app.web.dto.BulkNotificationJobResponse;
+import app.web.dto.NotificationExportRecord;
 import app.web.dto.NotificationPreferenceResponse;
 import app.event.payload.NotificationPreferenceResponseKafka;
+import app.event.payload.PreferenceChangedKafka;
 import app.web.dto.NotificationResponse;
+import app.web.dto.NotificationSummaryResponse;
+import app.web.dto.NotificationTemplateResponse;
 import app.web.dto.NotificationTypeRequest;
 import lombok.experimental.UtilityClass;
 
@@ -17,6 +27,8 @@ public class DtoMapper {
 
         return switch (dto) {
             case EMAIL -> NotificationType.EMAIL;
+            case SMS -> NotificationType.SMS;
+            case MOBILE -> NotificationType.MOBILE;
         };
     }
 
@@ -27,6 +39,7 @@ public class DtoMapper {
                         .type(dto.getType())
                         .contactInfo(dto.getContactInfo())
                         .enabled(dto.isEnable())
+                        .digestWindowMinutes(dto.getDigestWindowMinutes())
                         .userId(dto.getUserId())
                         .build();
     }
@@ -38,13 +51,40 @@ public class DtoMapper {
                 .type(dto.getType())
                 .contactInfo(dto.getContactInfo())
                 .enabled(dto.isEnable())
+                .digestWindowMinutes(dto.getDigestWindowMinutes())
                 .userId(dto.getUserId())
                 .build();
     }
 
+    public static PreferenceChangedKafka fromNotificationPreferenceChange(NotificationPreference entity, String origin) {
+
+        return PreferenceChangedKafka.builder()
+                .userId(entity.getUserId())
+                .origin(origin)
+                .type(entity.getType())
+                .contactInfo(entity.getContactInfo())
+                .enabled(entity.isEnable())
+                .digestWindowMinutes(entity.getDigestWindowMinutes())
+                .updatedOn(entity.getUpdatedOn())
+                .build();
+    }
+
+    public static NotificationPreference fromPreferenceChangedKafka(PreferenceChangedKafka change) {
+
+        return NotificationPreference.builder()
+                .userId(change.getUserId())
+                .type(change.getType())
+                .contactInfo(change.getContactInfo())
+                .isEnable(change.isEnabled())
+                .digestWindowMinutes(change.getDigestWindowMinutes())
+                .updatedOn(change.getUpdatedOn())
+                .build();
+    }
+
     public static NotificationResponse fromNotification(Notification entity) {
 
         return NotificationResponse.builder()
+                .id(entity.getId())
                 .subject(entity.getSubject())
                 .status(entity.getStatus())
                 .createdOn(entity.getCreatedOn())
@@ -55,6 +95,7 @@ public class DtoMapper {
     public static NotificationResponseKafka fromNotificationKafka(Notification entity) {
 
         return NotificationResponseKafka.builder()
+                .id(entity.getId())
                 .userId(entity.getUserId())
                 .subject(entity.getSubject())
                 .status(entity.getStatus())
@@ -62,6 +103,67 @@ public class DtoMapper {
                 .type(entity.getType())
                 .build();
     }
-}
 
+    public static NotificationSummaryResponse fromNotificationSummary(NotificationSummary summary) {
+
+        return NotificationSummaryResponse.builder()
+                .userId(summary.userId())
+                .total(summary.total())
+                .failed(summary.count(NotificationStatus.FAILED))
+                .byStatus(summary.byStatus())
+                .byType(summary.byType())
+                .build();
+    }
+
+    public static NotificationExportRecord fromNotificationExport(Notification entity) {
+
+        return NotificationExportRecord.builder()
+                .id(entity.getId())
+                .userId(entity.getUserId())
+                .subject(entity.getSubject())
+                .body(entity.getBody())
+                .createdOn(entity.getCreatedOn())
+                .status(entity.getStatus())
+                .type(entity.getType())
+                .build();
+    }
+
+    public static BulkNotificationJobResponse fromBulkNotificationJob(BulkNotificationJob entity) {
+
+        return BulkNotificationJobResponse.builder()
+                .jobId(entity.getId())
+                .status(entity.getStatus())
+                .totalRecipients(entity.getTotalRecipients())
+                .totalChunks(entity.getTotalChunks())
+                .completedChunks(entity.getCompletedChunks())
+                .processedRecipients(entity.getProcessedRecipients())
+                .sentRecipients(entity.getSentRecipients())
+                .failedRecipients(entity.getFailedRecipients())
+                .retryingRecipients(entity.getRetryingRecipients())
+                .skippedRecipients(entity.getSkippedRecipients())
+                .createdOn(entity.getCreatedOn())
+                .updatedOn(entity.getUpdatedOn())
+                .build();
+    }
+
+    public static BulkNotificationResponseKafka fromBulkNotificationJobKafka(BulkNotificationJob entity) {
 
+        return BulkNotificationResponseKafka.builder()
+                .jobId(entity.getId())
+                .status(entity.getStatus())
+                .totalRecipients(entity.getTotalRecipients())
+                .totalChunks(entity.getTotalChunks())
+                .build();
+    }
+
+    public static NotificationTemplateResponse fromNotificationTemplate(NotificationTemplate entity) {
+
+        return NotificationTemplateResponse.builder()
+                .id(entity.getId())
+                .subject(entity.getSubject())
+                .body(entity.getBody())
+                .createdOn(entity.getCreatedOn())
+                .updatedOn(entity.getUpdatedOn())
+                .build();
+    }
+}
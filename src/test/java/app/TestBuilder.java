@@ -1,6 +1,8 @@
 package app;
 
+import app.model.Notification;
 import app.model.NotificationPreference;
+import app.model.NotificationStatus;
 import app.model.NotificationType;
 import app.web.dto.NotificationRequest;
 import lombok.experimental.UtilityClass;
@@ -30,4 +32,16 @@ public class TestBuilder {
                 .body("body")
                 .build();
     }
+
+    public static Notification aRandomNotification() {
+        return Notification.builder()
+                .id(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .subject("subject")
+                .body("body")
+                .createdOn(LocalDateTime.now())
+                .status(NotificationStatus.SUCCEEDED)
+                .type(NotificationType.EMAIL)
+                .build();
+    }
 }
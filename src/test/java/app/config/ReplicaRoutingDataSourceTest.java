@@ -0,0 +1,95 @@
+package app.config;
+
+import app.service.ReadYourWrites;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private DataSource primary;
+    private DataSource replica;
+
+    @BeforeEach
+    void setUp() {
+
+        meterRegistry = new SimpleMeterRegistry();
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @Test
+    void givenHealthyReplica_whenRead_thenReadOnlyTransactionUsesReplica() {
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(
+                primary, Map.of("replica-0", replica), meterRegistry, Duration.ofSeconds(1));
+        routing.checkReplicas();
+        ReadYourWrites readYourWrites = readYourWrites(routing);
+
+        assertEquals("replica", readYourWrites.read(UUID.randomUUID(), this::database));
+    }
+
+    @Test
+    void givenUserWhoJustWrote_whenRead_thenOnlyThatUserReadsFromPrimary() {
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(
+                primary, Map.of("replica-0", replica), meterRegistry, Duration.ofSeconds(1));
+        routing.checkReplicas();
+        ReadYourWrites readYourWrites = readYourWrites(routing);
+        UUID writer = UUID.randomUUID();
+
+        readYourWrites.wrote(writer);
+
+        assertEquals("primary", readYourWrites.read(writer, this::database));
+        assertEquals("replica", readYourWrites.read(UUID.randomUUID(), this::database));
+    }
+
+    @Test
+    void givenReplicaFailingValidation_whenRead_thenFallBackToPrimary() {
+
+        DataSource unreachable = new DriverManagerDataSource("jdbc:h2:mem:missing-" + UUID.randomUUID() + ";IFEXISTS=TRUE", "sa", "");
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(
+                primary, Map.of("replica-0", unreachable), meterRegistry, Duration.ofSeconds(1));
+        routing.checkReplicas();
+
+        assertEquals("primary", readYourWrites(routing).read(UUID.randomUUID(), this::database));
+        assertEquals(0, meterRegistry.get("notification.datasource.replicas.healthy").gauge().value());
+        assertEquals(1, meterRegistry.get("notification.datasource.replica.fallbacks").counter().count());
+    }
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ReadYourWrites readYourWrites(ReplicaRoutingDataSource routing) {
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        return new ReadYourWrites(new DataSourceTransactionManager(dataSource), meterRegistry, Duration.ofSeconds(5), 100);
+    }
+
+    private String database() {
+        return jdbcTemplate.queryForObject("select name from node", String.class);
+    }
+
+    private static DataSource database(String name) {
+
+        DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table node (name varchar(20))");
+        jdbcTemplate.update("insert into node (name) values (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,78 @@
+package app.event;
+
+import app.service.MailThrottle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class BackpressureControllerTest {
+
+    private MailThrottle mailThrottle;
+    private MessageListenerContainer container;
+    private SimpleMeterRegistry meterRegistry;
+    private BackpressureController controller;
+
+    @BeforeEach
+    void setUp() {
+
+        mailThrottle = mock(MailThrottle.class);
+        container = mock(MessageListenerContainer.class);
+        KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+        when(registry.getListenerContainer("notification-event-listener")).thenReturn(container);
+        when(container.isRunning()).thenReturn(true);
+        meterRegistry = new SimpleMeterRegistry();
+
+        controller = new BackpressureController(registry, mailThrottle, null, meterRegistry, true,
+                List.of("notification-event-listener", "notification-batch-event-listener"),
+                10, 0.5, Duration.ofSeconds(10), 1, Duration.ZERO);
+    }
+
+    @Test
+    void givenMostEmailsFailing_whenCheck_thenPauseListenerOnce() {
+
+        when(mailThrottle.health()).thenReturn(new MailThrottle.MailHealth(20, 0.9, Duration.ofMillis(50)));
+
+        controller.check();
+        controller.check();
+
+        verify(container, times(1)).pause();
+        assertTrue(controller.isPaused());
+        assertEquals(1.0, meterRegistry.get("notification.backpressure.paused").gauge().value());
+    }
+
+    @Test
+    void givenTooFewSamples_whenCheck_thenKeepConsuming() {
+
+        when(mailThrottle.health()).thenReturn(new MailThrottle.MailHealth(3, 1.0, Duration.ofMillis(50)));
+
+        controller.check();
+
+        verify(container, never()).pause();
+        assertFalse(controller.isPaused());
+    }
+
+    @Test
+    void givenSlowMailServer_whenCheck_thenPauseUntilHealthyAgain() {
+
+        when(mailThrottle.health()).thenReturn(new MailThrottle.MailHealth(5, 0, Duration.ofSeconds(20)));
+        controller.check();
+        verify(container).pause();
+
+        when(mailThrottle.health()).thenReturn(new MailThrottle.MailHealth(0, 0, Duration.ZERO));
+        when(container.isPauseRequested()).thenReturn(true);
+        controller.check();
+
+        verify(container).resume();
+        assertFalse(controller.isPaused());
+    }
+}
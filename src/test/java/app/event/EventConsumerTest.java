@@ -0,0 +1,209 @@
+package app.event;
+
+import app.model.Notification;
+import app.model.NotificationPreference;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import app.model.ProcessedEvent;
+import app.service.BulkNotificationService;
+import app.service.NotificationService;
+import app.web.dto.BulkNotificationRequest;
+import app.web.dto.NotificationRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class EventConsumerTest {
+
+    private NotificationService notificationService;
+    private BulkNotificationService bulkNotificationService;
+    private ReplyOutbox replyOutbox;
+    private SimpleMeterRegistry meterRegistry;
+    private DeadLetterPublishingRecoverer deadLetterRecoverer;
+    private EventDeduplicator eventDeduplicator;
+    private EventConsumer eventConsumer;
+
+    @BeforeEach
+    void setUp() {
+
+        notificationService = mock(NotificationService.class);
+        bulkNotificationService = mock(BulkNotificationService.class);
+        replyOutbox = mock(ReplyOutbox.class);
+        meterRegistry = new SimpleMeterRegistry();
+        deadLetterRecoverer = mock(DeadLetterPublishingRecoverer.class);
+        eventDeduplicator = mock(EventDeduplicator.class);
+        eventConsumer = new EventConsumer(notificationService, bulkNotificationService, replyOutbox, null, new EventMetrics(meterRegistry),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new ObjectMapper(), deadLetterRecoverer,
+                eventDeduplicator);
+    }
+
+    @Test
+    void givenNotificationRequest_whenConsumeEvent_thenRecordSuccess() {
+
+        NotificationRequest request = new NotificationRequest(UUID.randomUUID(), "subject", "body");
+        when(notificationService.sendNotification(request)).thenReturn(Notification.builder()
+                .id(UUID.randomUUID())
+                .userId(request.getUserId())
+                .subject("subject")
+                .createdOn(LocalDateTime.now())
+                .status(NotificationStatus.PENDING)
+                .type(NotificationType.EMAIL)
+                .build());
+
+        eventConsumer.consumeEvent(new EventMessage<>("NOTIFICATION_REQUEST", request));
+
+        verify(replyOutbox).enqueue(eq("NOTIFICATION_RESPONSE"), eq(request.getUserId()), any());
+        assertEquals(1, meterRegistry.get("notification.events.handling")
+                .tags("eventType", "NOTIFICATION_REQUEST", "outcome", "success").timer().count());
+        assertEquals(0, meterRegistry.get("notification.events.in.flight").gauge().value());
+    }
+
+    @Test
+    void givenFailingNotificationRequest_whenConsumeEvent_thenReplyWithErrorAndRecordFailure() {
+
+        NotificationRequest request = new NotificationRequest(UUID.randomUUID(), "subject", "body");
+        when(notificationService.sendNotification(request)).thenThrow(new IllegalArgumentException("disabled"));
+
+        eventConsumer.consumeEvent(new EventMessage<>("NOTIFICATION_REQUEST", request));
+
+        verify(replyOutbox).enqueue(eq("NOTIFICATION_RESPONSE"), eq(request.getUserId()), any());
+        assertEquals(1, meterRegistry.get("notification.events.handled")
+                .tags("eventType", "NOTIFICATION_REQUEST", "outcome", "failure").counter().count());
+    }
+
+    @Test
+    void givenProcessedNotificationRequest_whenConsumeEvent_thenReplayReplyWithoutSendingAgain() {
+
+        NotificationRequest request = NotificationRequest.builder()
+                .userId(UUID.randomUUID()).subject("subject").body("body").idempotencyKey("event-1").build();
+        ProcessedEvent processed = ProcessedEvent.builder()
+                .idempotencyKey("event-1")
+                .eventType("NOTIFICATION_REQUEST")
+                .replyEventType("NOTIFICATION_RESPONSE")
+                .replyPayload("{}")
+                .build();
+        when(eventDeduplicator.findProcessed("event-1")).thenReturn(Optional.of(processed));
+
+        eventConsumer.consumeEvent(new EventMessage<>("NOTIFICATION_REQUEST", request));
+
+        verify(replyOutbox).enqueueReplay(processed);
+        verify(eventDeduplicator, never()).claim(any(), any());
+        verifyNoInteractions(notificationService);
+        assertEquals(1, meterRegistry.get("notification.events.handling")
+                .tags("eventType", "NOTIFICATION_REQUEST", "outcome", "success").timer().count());
+    }
+
+    @Test
+    void givenConcurrentlyClaimedNotificationRequest_whenConsumeEvent_thenReplayInsteadOfErrorReply() {
+
+        NotificationRequest request = NotificationRequest.builder()
+                .userId(UUID.randomUUID()).subject("subject").body("body").idempotencyKey("event-1").build();
+        ProcessedEvent processed = ProcessedEvent.builder().idempotencyKey("event-1").eventType("NOTIFICATION_REQUEST").build();
+        when(eventDeduplicator.claim("event-1", "NOTIFICATION_REQUEST"))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(eventDeduplicator.findClaimed("event-1")).thenReturn(Optional.of(processed));
+
+        eventConsumer.consumeEvent(new EventMessage<>("NOTIFICATION_REQUEST", request));
+
+        verify(replyOutbox).enqueueReplay(processed);
+        verify(replyOutbox, never()).enqueue(any(), any(), any());
+        verifyNoInteractions(notificationService);
+    }
+
+    @Test
+    void givenRedeliveredBulkNotificationRequest_whenConsumeEvent_thenReplayTheJobInsteadOfStartingAnother() {
+
+        BulkNotificationRequest request = BulkNotificationRequest.builder()
+                .userIds(List.of(UUID.randomUUID())).subject("subject").body("body").idempotencyKey("event-1").build();
+        ProcessedEvent processed = ProcessedEvent.builder().idempotencyKey("event-1").eventType("BULK_NOTIFICATION_REQUEST").build();
+        when(eventDeduplicator.claim("event-1", "BULK_NOTIFICATION_REQUEST"))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(eventDeduplicator.findClaimed("event-1")).thenReturn(Optional.of(processed));
+
+        eventConsumer.consumeEvent(new EventMessage<>("BULK_NOTIFICATION_REQUEST", request));
+
+        verify(replyOutbox).enqueueReplay(processed);
+        verify(replyOutbox, never()).enqueue(any(), any(), any());
+        verifyNoInteractions(bulkNotificationService);
+    }
+
+    @Test
+    void givenUnknownEventType_whenConsumeEvent_thenTagItAsOtherAndRejectIt() {
+
+        assertThrows(UnprocessableEventException.class,
+                () -> eventConsumer.consumeEvent(new EventMessage<>("SOMETHING_NEW", null)));
+
+        verifyNoInteractions(notificationService, replyOutbox);
+        assertEquals(1, meterRegistry.get("notification.events.handling")
+                .tags("eventType", "other", "outcome", "ignored").timer().count());
+    }
+
+    @Test
+    void givenUnknownEventTypeInBatch_whenConsumeEvents_thenDeadLetterOnlyThatRecord() {
+
+        ConsumerRecord<String, EventMessage<?>> unknown =
+                new ConsumerRecord<>("user-event.v1", 0, 0, "key", new EventMessage<>("SOMETHING_NEW", null));
+        ConsumerRecord<String, EventMessage<?>> empty = new ConsumerRecord<>("user-event.v1", 0, 1, "key", null);
+        NotificationRequest request = new NotificationRequest(UUID.randomUUID(), "subject", "body");
+        ConsumerRecord<String, EventMessage<?>> known =
+                new ConsumerRecord<>("user-event.v1", 0, 2, "key", new EventMessage<>("NOTIFICATION_REQUEST", request));
+        when(notificationService.getPreferencesByUserIds(any())).thenReturn(Map.of());
+        when(notificationService.buildNotification(eq(request), any())).thenThrow(new IllegalArgumentException("disabled"));
+
+        eventConsumer.consumeEvents(List.of(unknown, empty, known));
+
+        verify(deadLetterRecoverer).accept(eq(unknown), any(UnprocessableEventException.class));
+        verify(deadLetterRecoverer).accept(eq(empty), any(UnprocessableEventException.class));
+        verify(deadLetterRecoverer, never()).accept(eq(known), any());
+        verify(replyOutbox).enqueue(eq("NOTIFICATION_RESPONSE"), eq(request.getUserId()), any());
+    }
+
+    @Test
+    void givenBatchWithKeyClaimedElsewhere_whenConsumeEvents_thenStageNothingBeforeClaimAndReplayTheClaimed() {
+
+        NotificationPreference preference = NotificationPreference.builder().userId(UUID.randomUUID()).isEnable(true).build();
+        NotificationRequest claimedElsewhere = NotificationRequest.builder()
+                .userId(preference.getUserId()).subject("subject").body("body").idempotencyKey("event-1").build();
+        NotificationRequest fresh = NotificationRequest.builder()
+                .userId(preference.getUserId()).subject("subject").body("body").idempotencyKey("event-2").build();
+        Notification notification = Notification.builder()
+                .id(UUID.randomUUID()).userId(preference.getUserId()).status(NotificationStatus.PENDING).build();
+        ProcessedEvent processed = ProcessedEvent.builder().idempotencyKey("event-1").eventType("NOTIFICATION_REQUEST").build();
+        when(notificationService.getPreferencesByUserIds(any())).thenReturn(Map.of(preference.getUserId(), preference));
+        when(notificationService.buildNotification(any(), any())).thenReturn(notification);
+        when(eventDeduplicator.claimAll(any(), eq("NOTIFICATION_REQUEST")))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(eventDeduplicator.claim("event-1", "NOTIFICATION_REQUEST"))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(eventDeduplicator.findClaimed("event-1")).thenReturn(Optional.of(processed));
+        when(notificationService.sendNotification(fresh)).thenReturn(notification);
+
+        eventConsumer.consumeEvents(List.of(
+                new ConsumerRecord<>("user-event.v1", 0, 0, "key", new EventMessage<>("NOTIFICATION_REQUEST", claimedElsewhere)),
+                new ConsumerRecord<>("user-event.v1", 0, 1, "key", new EventMessage<>("NOTIFICATION_REQUEST", fresh))));
+
+        verify(notificationService, never()).stageNotification(any(), any());
+        verify(notificationService, never()).sendNotification(claimedElsewhere);
+        verify(notificationService).sendNotification(fresh);
+        verify(replyOutbox).enqueueReplay(processed);
+        verify(replyOutbox).enqueue(eq("NOTIFICATION_RESPONSE"), eq(preference.getUserId()), any());
+    }
+}
@@ -0,0 +1,97 @@
+package app.event;
+
+import app.model.OutboxEvent;
+import app.model.ProcessedEvent;
+import app.repository.ProcessedEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class EventDeduplicatorTest {
+
+    private ProcessedEventRepository processedEventRepository;
+    private EventDeduplicator eventDeduplicator;
+
+    @BeforeEach
+    void setUp() {
+
+        processedEventRepository = mock(ProcessedEventRepository.class);
+        when(processedEventRepository.saveAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(processedEventRepository.streamRecentKeys(any())).thenReturn(Stream.of("old"));
+        eventDeduplicator = new EventDeduplicator(processedEventRepository, new SimpleMeterRegistry(), 1000, 0.01, 100);
+    }
+
+    @Test
+    void givenColdFilter_whenFindProcessed_thenLookUpEveryKey() {
+
+        eventDeduplicator.findProcessed("new");
+
+        verify(processedEventRepository).findById("new");
+    }
+
+    @Test
+    void givenWarmFilter_whenFindProcessedForNewKey_thenSkipTheDatabase() {
+
+        eventDeduplicator.warmUp();
+
+        assertTrue(eventDeduplicator.findProcessed("new").isEmpty());
+        assertTrue(eventDeduplicator.findAllProcessed(List.of("new", "newer")).isEmpty());
+        verify(processedEventRepository, never()).findById(anyString());
+        verify(processedEventRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void givenWarmFilter_whenFindProcessedForKeyFromTheTable_thenLookItUpOnce() {
+
+        ProcessedEvent old = ProcessedEvent.builder().idempotencyKey("old").eventType("NOTIFICATION_REQUEST").build();
+        when(processedEventRepository.findById("old")).thenReturn(Optional.of(old));
+        eventDeduplicator.warmUp();
+
+        assertSame(old, eventDeduplicator.findProcessed("old").orElseThrow());
+        assertSame(old, eventDeduplicator.findProcessed("old").orElseThrow());
+        verify(processedEventRepository, times(1)).findById("old");
+    }
+
+    @Test
+    void givenClaimedKeyWithReply_whenFindProcessed_thenAnswerFromTheCache() {
+
+        eventDeduplicator.warmUp();
+        ProcessedEvent processed = eventDeduplicator.claim("event-1", "NOTIFICATION_REQUEST");
+        eventDeduplicator.recordReply(processed, OutboxEvent.builder()
+                .eventType("NOTIFICATION_RESPONSE").messageKey("user").payload("{\"success\":true}").build());
+
+        Map<String, ProcessedEvent> found = eventDeduplicator.findAllProcessed(List.of("event-1", "event-2"));
+
+        assertEquals(Map.of("event-1", processed), found);
+        assertEquals("{\"success\":true}", found.get("event-1").getReplyPayload());
+        verify(processedEventRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void givenMoreKeysThanExpected_whenFilterRotates_thenStillKnowThePreviousGeneration() {
+
+        EventDeduplicator.BloomFilter filter = new EventDeduplicator.BloomFilter(100, 0.01);
+        for (int i = 0; i < 150; i++) {
+            filter.put("key-" + i);
+        }
+
+        for (int i = 0; i < 150; i++) {
+            assertTrue(filter.mightContain("key-" + i));
+        }
+        long falsePositives = Stream.iterate(0, i -> i + 1).limit(10_000)
+                .filter(i -> filter.mightContain("other-" + i))
+                .count();
+        // two generations of 1% each
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,116 @@
+package app.event;
+
+import app.event.payload.UpsertNotificationPreference;
+import app.web.dto.NotificationRequest;
+import app.web.dto.NotificationTypeRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventEnvelopeDeserializerTest {
+
+    private final EventEnvelopeDeserializer deserializer = new EventEnvelopeDeserializer();
+
+    @Test
+    void givenKnownEventType_whenDeserialize_thenBindPayloadToItsType() {
+
+        UUID userId = UUID.randomUUID();
+        EventMessage<?> event = deserialize("""
+                {"eventType":"UPSERT_NOTIFICATION_PREFERENCE","meta":{"source":"app"},
+                 "payload":{"userId":"%s","notificationEnabled":true,"type":"EMAIL","contactInfo":"a@b.c","extra":1}}
+                """.formatted(userId));
+
+        assertEquals("UPSERT_NOTIFICATION_PREFERENCE", event.getEventType());
+        UpsertNotificationPreference payload = assertInstanceOf(UpsertNotificationPreference.class, event.getPayload());
+        assertEquals(userId, payload.getUserId());
+        assertTrue(payload.isNotificationEnabled());
+        assertEquals(NotificationTypeRequest.EMAIL, payload.getType());
+    }
+
+    @Test
+    void givenPayloadBeforeEventType_whenDeserialize_thenStillBindPayload() {
+
+        EventMessage<?> event = deserialize("""
+                {"payload":{"userId":"%s","subject":"s","body":"b"},"eventType":"NOTIFICATION_REQUEST"}
+                """.formatted(UUID.randomUUID()));
+
+        NotificationRequest payload = assertInstanceOf(NotificationRequest.class, event.getPayload());
+        assertEquals("s", payload.getSubject());
+    }
+
+    @Test
+    void givenEventTypeHeader_whenDeserialize_thenHeaderWins() {
+
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(EventEnvelopeDeserializer.EVENT_TYPE_HEADER, "NOTIFICATION_REQUEST".getBytes(StandardCharsets.UTF_8));
+        byte[] data = """
+                {"payload":{"userId":"%s","subject":"s","body":"b"}}
+                """.formatted(UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+
+        EventMessage<?> event = deserializer.deserialize("user-event.v1", headers, data);
+
+        assertEquals("NOTIFICATION_REQUEST", event.getEventType());
+        assertInstanceOf(NotificationRequest.class, event.getPayload());
+    }
+
+    @Test
+    void givenEventId_whenDeserialize_thenUseItAsIdempotencyKeyUnlessThePayloadHasOne() {
+
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(EventEnvelopeDeserializer.EVENT_ID_HEADER, "header-id".getBytes(StandardCharsets.UTF_8));
+        String json = """
+                {"eventId":"json-id","eventType":"NOTIFICATION_REQUEST","payload":{"userId":"%s","subject":"s","body":"b"}}
+                """.formatted(UUID.randomUUID());
+
+        NotificationRequest fromHeader = assertInstanceOf(NotificationRequest.class,
+                deserializer.deserialize("user-event.v1", headers, json.getBytes(StandardCharsets.UTF_8)).getPayload());
+        NotificationRequest fromJson = assertInstanceOf(NotificationRequest.class, deserialize(json).getPayload());
+        NotificationRequest ownKey = assertInstanceOf(NotificationRequest.class, deserialize("""
+                {"eventId":"json-id","eventType":"NOTIFICATION_REQUEST",
+                 "payload":{"userId":"%s","subject":"s","body":"b","idempotencyKey":"own"}}
+                """.formatted(UUID.randomUUID())).getPayload());
+
+        assertEquals("header-id", fromHeader.getIdempotencyKey());
+        assertEquals("json-id", fromJson.getIdempotencyKey());
+        assertEquals("own", ownKey.getIdempotencyKey());
+    }
+
+    @Test
+    void givenUnknownEventType_whenDeserialize_thenKeepPayloadAsTree() {
+
+        EventMessage<?> event = deserialize("""
+                {"eventType":"SOMETHING_NEW","payload":{"a":[1,2]}}
+                """);
+
+        JsonNode payload = assertInstanceOf(JsonNode.class, event.getPayload());
+        assertEquals(2, payload.path("a").size());
+    }
+
+    @Test
+    void givenPayloadThatDoesNotBind_whenDeserialize_thenFallBackToTree() {
+
+        EventMessage<?> event = deserialize("""
+                {"eventType":"NOTIFICATION_REQUEST","payload":{"userId":"not-a-uuid","subject":"s","body":"b"}}
+                """);
+
+        assertEquals("NOTIFICATION_REQUEST", event.getEventType());
+        JsonNode payload = assertInstanceOf(JsonNode.class, event.getPayload());
+        assertEquals("not-a-uuid", payload.path("userId").asText());
+    }
+
+    @Test
+    void givenMalformedJson_whenDeserialize_thenThrowSerializationException() {
+
+        assertThrows(SerializationException.class, () -> deserialize("{\"eventType\":"));
+    }
+
+    private EventMessage<?> deserialize(String json) {
+        return deserializer.deserialize("user-event.v1", json.getBytes(StandardCharsets.UTF_8));
+    }
+}
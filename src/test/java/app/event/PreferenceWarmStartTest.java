@@ -0,0 +1,96 @@
+package app.event;
+
+import app.event.payload.PreferenceChangedKafka;
+import app.model.NotificationType;
+import app.service.PreferenceStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PreferenceWarmStartTest {
+
+    private static final String TOPIC = "notification-preference.changes.v1";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    private PreferenceStore preferenceStore;
+    private MessageListenerContainer container;
+    private PreferenceWarmStart warmStart;
+
+    @BeforeEach
+    void setUp() {
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        preferenceStore = new PreferenceStore(meterRegistry, true, Duration.ofMinutes(10));
+        container = mock(MessageListenerContainer.class);
+        KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+        when(registry.getListenerContainer("notification-batch-event-listener")).thenReturn(container);
+
+        warmStart = new PreferenceWarmStart(preferenceStore, null, registry, meterRegistry,
+                TOPIC, "batch", Duration.ofSeconds(5));
+    }
+
+    @Test
+    void givenCompactedTopic_whenWarmUp_thenStoreLatestPreferencesBeforeStartingListener() {
+
+        UUID userId = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        MockConsumer<Object, Object> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updatePartitions(TOPIC, List.of(new PartitionInfo(TOPIC, 0, Node.noNode(), new Node[0], new Node[0])));
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        consumer.updateEndOffsets(Map.of(PARTITION, 3L));
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(record(0, userId, false, now));
+            consumer.addRecord(record(1, UUID.randomUUID(), true, now));
+            consumer.addRecord(record(2, userId, true, now.minusMinutes(1)));
+        });
+        assertEquals(Status.OUT_OF_SERVICE, warmStart.health().getStatus());
+
+        warmStart.warmUp(() -> consumer);
+
+        assertEquals(2, preferenceStore.size());
+        assertFalse(preferenceStore.get(userId).isEnable());
+        verify(container).start();
+        assertEquals(Status.UP, warmStart.health().getStatus());
+    }
+
+    @Test
+    void givenUnreachableBroker_whenWarmUp_thenStartListenerAndReportReadyAnyway() {
+
+        warmStart.warmUp(() -> { throw new IllegalStateException("No broker"); });
+
+        verify(container).start();
+        assertEquals(Status.UP, warmStart.health().getStatus());
+        assertEquals(0, preferenceStore.size());
+    }
+
+    private static ConsumerRecord<Object, Object> record(long offset, UUID userId, boolean enabled, LocalDateTime updatedOn) {
+
+        PreferenceChangedKafka change = PreferenceChangedKafka.builder()
+                .userId(userId)
+                .origin("other-instance")
+                .type(NotificationType.EMAIL)
+                .contactInfo("user@example.com")
+                .enabled(enabled)
+                .updatedOn(updatedOn)
+                .build();
+        return new ConsumerRecord<>(TOPIC, 0, offset, userId.toString(), new EventMessage<>("PREFERENCE_CHANGED", change));
+    }
+}
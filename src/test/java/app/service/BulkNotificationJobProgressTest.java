@@ -0,0 +1,68 @@
+package app.service;
+
+import app.model.BulkJobStatus;
+import app.model.BulkNotificationJob;
+import app.repository.BulkNotificationJobRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// each chunk records its progress in its own transaction, as on the bulk pool
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BulkNotificationJobProgressTest {
+
+    @Autowired
+    private BulkNotificationJobRepository jobRepository;
+
+    @Test
+    void givenRunningJob_whenItsLastChunkIsRecorded_thenCompleteItInTheSameUpdate() {
+
+        BulkNotificationJob job = jobRepository.save(aRunningJob(2, LocalDateTime.now()));
+
+        jobRepository.recordChunk(job.getId(), 2, 2, 0, 0, 0, LocalDateTime.now());
+        assertEquals(BulkJobStatus.RUNNING, jobRepository.findById(job.getId()).orElseThrow().getStatus());
+
+        jobRepository.recordChunk(job.getId(), 1, 0, 0, 1, 0, LocalDateTime.now());
+        BulkNotificationJob completed = jobRepository.findById(job.getId()).orElseThrow();
+        assertEquals(BulkJobStatus.COMPLETED, completed.getStatus());
+        assertEquals(2, completed.getCompletedChunks());
+        assertEquals(1, completed.getRetryingRecipients());
+    }
+
+    @Test
+    void givenRunningJobWithoutProgress_whenInterruptStale_thenMarkOnlyThatJobInterrupted() {
+
+        LocalDateTime now = LocalDateTime.now();
+        BulkNotificationJob stale = jobRepository.save(aRunningJob(2, now.minusHours(1)));
+        BulkNotificationJob active = jobRepository.save(aRunningJob(2, now));
+
+        jobRepository.interruptStale(now.minusMinutes(30), now);
+
+        assertEquals(BulkJobStatus.INTERRUPTED, jobRepository.findById(stale.getId()).orElseThrow().getStatus());
+        assertEquals(BulkJobStatus.RUNNING, jobRepository.findById(active.getId()).orElseThrow().getStatus());
+    }
+
+    private static BulkNotificationJob aRunningJob(int totalChunks, LocalDateTime updatedOn) {
+
+        return BulkNotificationJob.builder()
+                .subject("subject")
+                .body("body")
+                .status(BulkJobStatus.RUNNING)
+                .totalRecipients(totalChunks * 2)
+                .totalChunks(totalChunks)
+                .createdOn(updatedOn)
+                .updatedOn(updatedOn)
+                .build();
+    }
+}
@@ -0,0 +1,152 @@
+package app.service;
+
+import app.model.BulkNotificationJob;
+import app.model.Notification;
+import app.model.NotificationPreference;
+import app.model.NotificationStatus;
+import app.repository.BulkNotificationJobRepository;
+import app.repository.NotificationRepository;
+import app.repository.PreferenceRepository;
+import app.web.dto.BulkNotificationRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.MailSender;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.*;
+
+import static app.TestBuilder.aRandomNotificationPreference;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class BulkNotificationServiceTest {
+
+    private NotificationRepository notificationRepository;
+    private BulkNotificationJobRepository jobRepository;
+    private PreferenceCache preferenceCache;
+    private MailSender mailSender;
+    private BulkNotificationService bulkNotificationService;
+
+    @BeforeEach
+    void setUp() {
+
+        notificationRepository = mock(NotificationRepository.class);
+        jobRepository = mock(BulkNotificationJobRepository.class);
+        preferenceCache = mock(PreferenceCache.class);
+        mailSender = mock(MailSender.class);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EmailChannel emailChannel = new EmailChannel(
+                mailSender, new MailThrottle("localhost", 0, 1, Duration.ZERO, Duration.ofSeconds(30)), meterRegistry);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(
+                new NotificationChannels(List.of(new ChannelBulkhead(
+                        emailChannel, new SyncTaskExecutor(), 4, 100, Duration.ofSeconds(1), meterRegistry))),
+                notificationRepository, false, Duration.ofMinutes(1), Duration.ofMinutes(5),
+                new NotificationRetryPolicy(6, Duration.ofSeconds(30), Duration.ofHours(1), 0.5),
+                mock(NotificationCounters.class));
+        NotificationService notificationService = new NotificationService(
+                mock(PreferenceRepository.class), dispatcher, notificationRepository, preferenceCache,
+                mock(NotificationTemplateService.class),
+                new ReadYourWrites(mock(PlatformTransactionManager.class), meterRegistry, Duration.ofSeconds(5), 1000),
+                mock(NotificationCounters.class));
+        bulkNotificationService = new BulkNotificationService(notificationService, dispatcher, notificationRepository,
+                jobRepository, new SyncTaskExecutor(), mock(NotificationCounters.class), 2, Duration.ofMinutes(30));
+
+        when(jobRepository.save(any())).thenAnswer(invocation -> {
+            BulkNotificationJob job = invocation.getArgument(0);
+            job.setId(UUID.randomUUID());
+            return job;
+        });
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Notification> notifications = invocation.getArgument(0);
+            notifications.forEach(notification -> notification.setId(UUID.randomUUID()));
+            return notifications;
+        });
+    }
+
+    @Test
+    void givenFiveRecipients_whenSubmit_thenProcessThreeChunksAndCompleteJob() {
+
+        Map<UUID, NotificationPreference> preferences = new HashMap<>();
+        List<UUID> userIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            NotificationPreference preference = aRandomNotificationPreference();
+            preference.setEnable(true);
+            preference.setContactInfo("user" + i + "@mail.com");
+            userIds.add(preference.getUserId());
+            // the last user has no preference and is skipped
+            if (i < 4) {
+                preferences.put(preference.getUserId(), preference);
+            }
+        }
+        when(preferenceCache.getAll(anyCollection(), any())).thenAnswer(invocation -> {
+            Collection<UUID> ids = invocation.getArgument(0);
+            Map<UUID, NotificationPreference> result = new HashMap<>();
+            ids.stream().filter(preferences::containsKey).forEach(id -> result.put(id, preferences.get(id)));
+            return result;
+        });
+        // the second user's mailbox rejects the email
+        doAnswer(invocation -> {
+            for (Object argument : invocation.getArguments()) {
+                SimpleMailMessage message = (SimpleMailMessage) argument;
+                if ("user1@mail.com".equals(message.getTo()[0])) {
+                    throw new MailSendException(Map.of(message, new Exception("mailbox unavailable")));
+                }
+            }
+            return null;
+        }).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        BulkNotificationJob job = bulkNotificationService.submit(BulkNotificationRequest.builder()
+                .userIds(userIds)
+                .subject("Vacation policy")
+                .body("The vacation policy changed.")
+                .build());
+
+        assertEquals(5, job.getTotalRecipients());
+        assertEquals(3, job.getTotalChunks());
+        verify(notificationRepository, times(3)).saveAll(anyList());
+        verify(notificationRepository).finishSending(argThat(ids -> ids.size() == 1), eq(NotificationStatus.FAILED));
+        verify(jobRepository).recordChunk(eq(job.getId()), eq(2), eq(2), eq(0), eq(0), eq(0), any());
+        verify(jobRepository).recordChunk(eq(job.getId()), eq(2), eq(1), eq(1), eq(0), eq(0), any());
+        verify(jobRepository).recordChunk(eq(job.getId()), eq(1), eq(0), eq(0), eq(0), eq(1), any());
+    }
+
+    @Test
+    void givenChunkBreaksOffAfterSaving_whenSubmit_thenReleaseItsRowsInsteadOfLeavingThemSending() {
+
+        NotificationPreference preference = aRandomNotificationPreference();
+        preference.setEnable(true);
+        preference.setContactInfo("user@mail.com");
+        when(preferenceCache.getAll(anyCollection(), any())).thenReturn(Map.of(preference.getUserId(), preference));
+        doThrow(new IllegalStateException("connection reset")).when(mailSender).send(any(SimpleMailMessage[].class));
+        when(notificationRepository.finishSending(anyCollection(), any())).thenThrow(new IllegalStateException("database down"));
+
+        BulkNotificationJob job = bulkNotificationService.submit(BulkNotificationRequest.builder()
+                .userIds(List.of(preference.getUserId()))
+                .subject("Vacation policy")
+                .body("The vacation policy changed.")
+                .build());
+
+        verify(notificationRepository).updateDelivery(any(), eq(NotificationStatus.SENDING), eq(NotificationStatus.FAILED), eq(1), isNull());
+        verify(jobRepository).recordChunk(eq(job.getId()), eq(1), eq(0), eq(1), eq(0), eq(0), any());
+    }
+
+    @Test
+    void givenMissingBody_whenSubmit_thenThrowException() {
+
+        BulkNotificationRequest request = BulkNotificationRequest.builder()
+                .userIds(List.of(UUID.randomUUID()))
+                .subject("subject")
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> bulkNotificationService.submit(request));
+        verifyNoInteractions(jobRepository);
+    }
+}
@@ -0,0 +1,65 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.MailSender;
+import org.springframework.mail.SimpleMailMessage;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class EmailChannelTest {
+
+    @Test
+    void givenRateLimitedHost_whenSendAll_thenSendInSlicesOfTheBurstAndFailOnlyTheFailedSlice() {
+
+        MailSender mailSender = mock(MailSender.class);
+        List<Integer> sliceSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            sliceSizes.add(invocation.getArguments().length);
+            if (sliceSizes.size() == 2) {
+                throw new MailSendException("connection reset");
+            }
+            return null;
+        }).when(mailSender).send(any(SimpleMailMessage[].class));
+        EmailChannel channel = new EmailChannel(mailSender,
+                new MailThrottle("localhost", 1000, 2, Duration.ofSeconds(30), Duration.ofSeconds(30)), new SimpleMeterRegistry());
+        List<Notification> notifications = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            notifications.add(aNotification("user" + i + "@mail.com"));
+        }
+
+        Map<Notification, ChannelSendException> failed = channel.sendAll(notifications);
+
+        assertEquals(List.of(2, 2, 1), sliceSizes);
+        assertEquals(Set.of(notifications.get(2), notifications.get(3)), failed.keySet());
+        // nothing was handed to the server, so the slice can be sent again
+        assertTrue(failed.values().stream().allMatch(ChannelSendException::isTransientFailure));
+    }
+
+    private static Notification aNotification(String recipient) {
+
+        return Notification.builder()
+                .id(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .recipient(recipient)
+                .subject("subject")
+                .body("body")
+                .createdOn(LocalDateTime.now())
+                .type(NotificationType.EMAIL)
+                .build();
+    }
+}
@@ -0,0 +1,42 @@
+package app.service;
+
+import app.repository.JobLeaseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// the leases are taken in their own transactions, as on separate instances
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class JobLeasesTest {
+
+    @Autowired
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Test
+    void givenLeaseHeldByOneInstance_whenAnotherTriesToAcquire_thenOnlyTheHolderRunsUntilItExpires() {
+
+        String job = "job-" + UUID.randomUUID();
+        JobLeases first = new JobLeases(jobLeaseRepository);
+        JobLeases second = new JobLeases(jobLeaseRepository);
+
+        assertTrue(first.tryAcquire(job, Duration.ofHours(1)));
+        assertFalse(second.tryAcquire(job, Duration.ofHours(1)));
+
+        assertTrue(first.tryAcquire(job, Duration.ZERO));
+        assertTrue(second.tryAcquire(job, Duration.ofHours(1)));
+        assertFalse(first.tryAcquire(job, Duration.ofHours(1)));
+    }
+}
@@ -0,0 +1,67 @@
+package app.service;
+
+import jakarta.mail.MessagingException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MailThrottleTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void givenFullBucket_whenReserveMoreThanBurst_thenFollowingRequestsWaitForTheDebt() {
+
+        MailThrottle.TokenBucket bucket = new MailThrottle.TokenBucket(10, 2, 0);
+
+        assertEquals(0, bucket.reserve(1, 0, 0));
+        assertEquals(0, bucket.reserve(1, 0, 0));
+        // a tenth of a second until the next permit, then the five permits go out at once
+        assertEquals(SECOND / 10, bucket.reserve(5, Long.MAX_VALUE, 0));
+        assertEquals(SECOND * 6 / 10, bucket.reserve(1, Long.MAX_VALUE, 0));
+    }
+
+    @Test
+    void givenWaitLongerThanMaxWait_whenReserve_thenRefuseWithoutCharging() {
+
+        MailThrottle.TokenBucket bucket = new MailThrottle.TokenBucket(1, 1, 0);
+        bucket.reserve(2, 0, 0);
+
+        assertEquals(-1, bucket.reserve(1, SECOND / 2, 0));
+        assertEquals(SECOND, bucket.reserve(1, SECOND, SECOND));
+    }
+
+    @Test
+    void givenFailedSends_whenHealth_thenReportErrorRateAndLatency() {
+
+        MailThrottle throttle = new MailThrottle("localhost", 0, 1, Duration.ZERO, Duration.ofMinutes(1));
+
+        throttle.record(1, 0, TimeUnit.MILLISECONDS.toNanos(100));
+        throttle.record(3, 3, TimeUnit.MILLISECONDS.toNanos(300));
+
+        MailThrottle.MailHealth health = throttle.health();
+        assertEquals(4, health.attempts());
+        assertEquals(0.75, health.errorRate());
+        assertEquals(Duration.ofMillis(200), health.averageLatency());
+    }
+
+    @Test
+    void givenSendFailures_whenIsTransient_thenOnlyThrottlingAndConnectionErrorsAreTransient() {
+
+        SMTPSendFailedException throttled = new SMTPSendFailedException("DATA", 421, "421 4.7.0 Try again later", null, null, null, null);
+        SMTPSendFailedException rejected = new SMTPSendFailedException("DATA", 550, "550 5.1.1 User unknown", null, null, null, null);
+
+        assertTrue(MailThrottle.isTransient(new MailSendException("Mail server connection failed",
+                new MessagingException("connect", new ConnectException("Connection refused")))));
+        assertTrue(MailThrottle.isTransient(new MailSendException(Map.of(new Object(), throttled))));
+        assertFalse(MailThrottle.isTransient(new MailSendException(Map.of(new Object(), rejected))));
+        assertFalse(MailThrottle.isTransient(new MailSendException(Map.of(new Object(), new MessagingException("mailbox unavailable")))));
+    }
+}
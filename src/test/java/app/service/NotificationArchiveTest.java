@@ -0,0 +1,65 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void givenNotificationsOfTwoDays_whenWrite_thenReadBackByUserAndRangeFromDayPartitions() throws Exception {
+
+        NotificationArchive archive = new NotificationArchive(directory, new ObjectMapper().findAndRegisterModules());
+        UUID userId = UUID.randomUUID();
+        Notification first = notification(userId, LocalDateTime.of(2024, 3, 1, 10, 0));
+        Notification second = notification(userId, LocalDateTime.of(2024, 3, 2, 9, 0));
+        Notification otherUser = notification(UUID.randomUUID(), LocalDateTime.of(2024, 3, 2, 9, 30));
+
+        assertEquals(3, archive.write(List.of(first, second, otherUser)));
+
+        assertTrue(Files.isDirectory(directory.resolve("2024/03/01")));
+        assertTrue(Files.isDirectory(directory.resolve("2024/03/02")));
+        List<Notification> read = new ArrayList<>();
+        long count = archive.read(userId, LocalDateTime.of(2024, 3, 1, 0, 0), LocalDateTime.of(2024, 3, 2, 9, 0), read::add);
+        assertEquals(1, count);
+        assertEquals(first, read.get(0));
+        assertEquals(3, archive.read(null, LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 4, 1, 0, 0), n -> { }));
+    }
+
+    @Test
+    void givenRelativeDirectory_whenCreate_thenRefuseAnInstanceLocalArchive() {
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new NotificationArchive(Path.of("archive/notifications"), new ObjectMapper()));
+    }
+
+    private static Notification notification(UUID userId, LocalDateTime createdOn) {
+
+        return Notification.builder()
+                .id(UUID.randomUUID())
+                .userId(userId)
+                .subject("subject")
+                .body("body")
+                .createdOn(createdOn)
+                .status(NotificationStatus.SUCCEEDED)
+                .type(NotificationType.EMAIL)
+                .recipient("user@example.com")
+                .attempts(1)
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import app.event.BackpressureController;
+import app.repository.NotificationBodyRepository;
+import app.repository.NotificationRepository;
+import app.repository.ProcessedEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({NotificationBodyStore.class, SimpleMeterRegistry.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class NotificationBodyStoreTest {
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private NotificationBodyRepository notificationBodyRepository;
+
+    @Autowired
+    private ProcessedEventRepository processedEventRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void givenBroadcastOfOneLongBody_whenSaveAndLoad_thenBodyIsStoredOnceCompressedAndReadBack() {
+
+        String body = "Your trip to Lisbon is confirmed. ".repeat(100);
+        List<Notification> saved = notificationRepository.saveAll(List.of(
+                aNotification(body), aNotification(body), aNotification(body), aNotification("short")));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from notification_body", Integer.class));
+        assertTrue(jdbcTemplate.queryForObject("select compressed from notification_body", Boolean.class));
+        for (Notification notification : saved) {
+            assertEquals(notification.getBody(), notificationRepository.findById(notification.getId()).orElseThrow().getBody());
+        }
+        assertNull(notificationRepository.findById(saved.get(3).getId()).orElseThrow().getBodyHash());
+
+        // a store with a cold cache reads and unzips the row
+        NotificationBodyStore coldStore = new NotificationBodyStore(jdbcTemplate, new SimpleMeterRegistry(), 256, 1024, DataSize.ofMegabytes(1));
+        assertEquals(body, coldStore.load(NotificationBodyStore.hash(body)));
+    }
+
+    @Test
+    void givenBodyOfPurgedNotifications_whenRetentionRuns_thenTheBodyGoesWithItsLastNotification() {
+
+        String body = "Your trip to Lisbon is confirmed. ".repeat(100);
+        Notification aged = aNotification(body);
+        aged.setStatus(NotificationStatus.SUCCEEDED);
+        aged.setCreatedOn(LocalDateTime.now().minusYears(2));
+        Notification recent = aNotification(body);
+        notificationRepository.saveAll(List.of(aged, recent));
+        entityManager.flush();
+        NotificationRetention retention = new NotificationRetention(notificationRepository, processedEventRepository,
+                notificationBodyRepository, mock(NotificationArchive.class), mock(BackpressureController.class),
+                mock(NotificationCounters.class), mock(JobLeases.class), new SimpleMeterRegistry(), true, Duration.ofDays(30),
+                Duration.ofDays(365), List.of(NotificationStatus.SUCCEEDED), false, Duration.ofDays(7), Duration.ZERO,
+                500, Duration.ZERO, Duration.ofMinutes(1));
+
+        retention.run();
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from notification_body", Integer.class));
+
+        notificationRepository.deleteAllByIdInBatch(List.of(recent.getId()));
+        retention.run();
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from notification_body", Integer.class));
+    }
+
+    private static Notification aNotification(String body) {
+
+        return Notification.builder()
+                .userId(UUID.randomUUID())
+                .subject("subject")
+                .body(body)
+                .createdOn(LocalDateTime.now())
+                .status(NotificationStatus.PENDING)
+                .type(NotificationType.EMAIL)
+                .build();
+    }
+}
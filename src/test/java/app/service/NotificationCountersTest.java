@@ -0,0 +1,134 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationCounter;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import app.repository.NotificationCounterRepository;
+import app.repository.NotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// counts are taken after commit, so the tests must not run in a transaction that is rolled back
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class NotificationCountersTest {
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private NotificationCounterRepository counterRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private NotificationCounters counters;
+
+    @BeforeEach
+    void setUp() {
+
+        meterRegistry = new SimpleMeterRegistry();
+        counters = counters(Duration.ZERO);
+    }
+
+    @Test
+    void givenCountedNotifications_whenFlushedTwice_thenSummaryCountsThemOnce() {
+
+        UUID userId = UUID.randomUUID();
+        Notification sent = aNotification(userId, NotificationStatus.SUCCEEDED);
+        Notification failed = aNotification(userId, NotificationStatus.PENDING);
+        counters.created(List.of(sent, failed));
+        counters.moved(List.of(failed), NotificationStatus.PENDING, NotificationStatus.FAILED);
+
+        assertSummary(counters.summary(userId), 2, 1);
+        counters.flush();
+        counters.flush();
+
+        assertSummary(counters.summary(userId), 2, 1);
+        assertEquals(0, meterRegistry.get("notification.counters.pending").gauge().value());
+    }
+
+    @Test
+    void givenDriftedCounters_whenReconcile_thenCountersMatchTheNotifications() {
+
+        UUID userId = UUID.randomUUID();
+        UUID goneUserId = UUID.randomUUID();
+        notificationRepository.saveAll(List.of(
+                aNotification(userId, NotificationStatus.SUCCEEDED),
+                aNotification(userId, NotificationStatus.FAILED),
+                aNotification(userId, NotificationStatus.FAILED)));
+        Notification deleted = aNotification(userId, NotificationStatus.FAILED);
+        deleted.setDeleted(true);
+        notificationRepository.save(deleted);
+        counterRepository.saveAll(List.of(
+                new NotificationCounter(userId, "status.FAILED", 7, LocalDateTime.now()),
+                new NotificationCounter(goneUserId, "type.EMAIL", 4, LocalDateTime.now())));
+
+        counters.reconcile();
+
+        NotificationSummary summary = counters.summary(userId);
+        assertSummary(summary, 3, 2);
+        assertEquals(Map.of(NotificationStatus.SUCCEEDED, 1L, NotificationStatus.FAILED, 2L), summary.byStatus());
+        assertEquals(0, counters.summary(goneUserId).total());
+        assertEquals(List.of(), counterRepository.findAllByUserId(goneUserId));
+    }
+
+    @Test
+    void givenUserChangedWithinSettleTime_whenReconcile_thenLeaveItsCountersAlone() {
+
+        UUID userId = UUID.randomUUID();
+        notificationRepository.save(aNotification(userId, NotificationStatus.SUCCEEDED));
+        NotificationCounters settling = counters(Duration.ofMinutes(1));
+
+        assertEquals(0, settling.reconcile());
+        assertEquals(0, settling.summary(userId).total());
+    }
+
+    private NotificationCounters counters(Duration settleTime) {
+
+        return new NotificationCounters(counterRepository, notificationRepository,
+                new ReadYourWrites(transactionManager, meterRegistry, Duration.ofSeconds(5), 1000),
+                new TransactionTemplate(transactionManager), null, meterRegistry, true, 2, settleTime, Duration.ofHours(1));
+    }
+
+    private static void assertSummary(NotificationSummary summary, long total, long failed) {
+
+        assertEquals(total, summary.total());
+        assertEquals(failed, summary.count(NotificationStatus.FAILED));
+    }
+
+    private static Notification aNotification(UUID userId, NotificationStatus status) {
+
+        return Notification.builder()
+                .userId(userId)
+                .subject("subject")
+                .body("body")
+                .recipient("user@example.com")
+                .type(NotificationType.EMAIL)
+                .status(status)
+                .createdOn(LocalDateTime.now())
+                .build();
+    }
+}
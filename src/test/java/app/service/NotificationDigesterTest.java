@@ -0,0 +1,111 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationStatus;
+import app.repository.NotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static app.TestBuilder.aRandomNotification;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class NotificationDigesterTest {
+
+    private NotificationRepository notificationRepository;
+    private NotificationDispatcher notificationDispatcher;
+    private NotificationDigester notificationDigester;
+
+    @BeforeEach
+    void setUp() {
+
+        notificationRepository = mock(NotificationRepository.class);
+        notificationDispatcher = mock(NotificationDispatcher.class);
+        notificationDigester = new NotificationDigester(notificationRepository, notificationDispatcher,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), mock(NotificationCounters.class),
+                new SimpleMeterRegistry(), 100);
+
+        when(notificationRepository.save(any())).thenAnswer(invocation -> {
+            Notification notification = invocation.getArgument(0);
+            notification.setId(UUID.randomUUID());
+            return notification;
+        });
+    }
+
+    @Test
+    void givenDueBufferedNotifications_whenSendDueDigests_thenSendOneDigestAndLinkTheOriginals() {
+
+        UUID userId = UUID.randomUUID();
+        List<Notification> buffered = List.of(buffered(userId, "Approved"), buffered(userId, "Calendar updated"), buffered(userId, "Reminder"));
+        when(notificationRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+                eq(NotificationStatus.BUFFERED), any(), any(Limit.class))).thenReturn(buffered.subList(0, 2));
+        when(notificationRepository.findAllByUserIdAndStatusOrderByCreatedOn(userId, NotificationStatus.BUFFERED)).thenReturn(buffered);
+        when(notificationRepository.markDigested(anyCollection(), any())).thenReturn(3);
+
+        notificationDigester.sendDueDigests();
+
+        verify(notificationRepository, times(1)).save(argThat(digest ->
+                digest.getSubject().equals("You have 3 new notifications")
+                        && digest.getBody().startsWith("Approved")
+                        && digest.getBody().contains("Calendar updated")
+                        && digest.getBody().contains("Reminder")));
+        verify(notificationRepository).markDigested(
+                eq(buffered.stream().map(Notification::getId).toList()), notNull());
+        verify(notificationDispatcher).stage(any());
+        verify(notificationDispatcher).dispatch(argThat(digests -> digests.size() == 1));
+    }
+
+    @Test
+    void givenNotificationsDigestedConcurrently_whenSendDigest_thenDoNotSend() {
+
+        UUID userId = UUID.randomUUID();
+        when(notificationRepository.findAllByUserIdAndStatusOrderByCreatedOn(userId, NotificationStatus.BUFFERED))
+                .thenReturn(List.of(buffered(userId, "Approved"), buffered(userId, "Reminder")));
+        when(notificationRepository.markDigested(anyCollection(), any())).thenReturn(1);
+
+        assertThrows(IllegalStateException.class, () -> notificationDigester.sendDigest(userId));
+
+        verifyNoInteractions(notificationDispatcher);
+    }
+
+    @Test
+    void givenManyLongNotifications_whenMerge_thenKeepTheBodyWithinTheColumnLength() {
+
+        UUID userId = UUID.randomUUID();
+        List<Notification> buffered = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Notification notification = buffered(userId, "Update " + i);
+            notification.setBody("x".repeat(500));
+            buffered.add(notification);
+        }
+
+        Notification digest = NotificationDigester.merge(buffered);
+
+        assertTrue(digest.getBody().length() <= 10000);
+        assertTrue(digest.getBody().endsWith("more"));
+        assertEquals(NotificationStatus.PENDING, digest.getStatus());
+    }
+
+    private static Notification buffered(UUID userId, String subject) {
+
+        Notification notification = aRandomNotification();
+        notification.setUserId(userId);
+        notification.setSubject(subject);
+        notification.setRecipient("user@mail.com");
+        notification.setStatus(NotificationStatus.BUFFERED);
+        notification.setNextAttemptAt(LocalDateTime.now());
+        return notification;
+    }
+}
@@ -0,0 +1,313 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import app.repository.NotificationRepository;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.internet.MimeMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class NotificationDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private NotificationRepository notificationRepository;
+
+    private JavaMailSenderImpl mailSender;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MailThrottle mailThrottle;
+
+    private NotificationRetryPolicy retryPolicy;
+
+    @BeforeEach
+    void setUp() {
+
+        notificationRepository = mock(NotificationRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        mailThrottle = new MailThrottle("localhost", 0, 1, Duration.ZERO, Duration.ofSeconds(30));
+        retryPolicy = new NotificationRetryPolicy(3, Duration.ofSeconds(30), Duration.ofHours(1), 0.5);
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+    }
+
+    @Test
+    void givenAsyncMode_whenStage_thenNothingIsSentYet() {
+
+        NotificationDispatcher dispatcher = dispatcher(true);
+        Notification notification = aNotification();
+
+        dispatcher.stage(notification);
+
+        assertEquals(NotificationStatus.PENDING, notification.getStatus());
+        assertEquals(0, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void givenPendingNotification_whenDispatch_thenSendAndMarkSucceeded() throws Exception {
+
+        NotificationDispatcher dispatcher = dispatcher(true);
+        Notification notification = aNotification();
+        dispatcher.stage(notification);
+        when(notificationRepository.claimForSending(any(), any(), any())).thenReturn(1);
+
+        dispatcher.dispatch(List.of(notification));
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(1, received.length);
+        assertEquals("subject", received[0].getSubject());
+        verify(notificationRepository).claimForSending(eq(notification.getId()), eq(NotificationStatus.PENDING), any());
+        verify(notificationRepository).updateDelivery(notification.getId(), NotificationStatus.SENDING, NotificationStatus.SUCCEEDED, 1, null);
+    }
+
+    @Test
+    void givenNotificationClaimedElsewhere_whenDispatch_thenDoNotSend() {
+
+        NotificationDispatcher dispatcher = dispatcher(true);
+        Notification notification = aNotification();
+        dispatcher.stage(notification);
+        when(notificationRepository.claimForSending(any(), any(), any())).thenReturn(0);
+
+        dispatcher.dispatch(List.of(notification));
+
+        assertEquals(0, greenMail.getReceivedMessages().length);
+        verify(notificationRepository, times(1)).claimForSending(any(), any(), any());
+    }
+
+    @Test
+    void givenUnreachableMailServer_whenDispatch_thenScheduleRetry() {
+
+        mailSender.setPort(ServerSetupTest.SMTP.getPort() + 1);
+        NotificationDispatcher dispatcher = dispatcher(true);
+        Notification notification = aNotification();
+        dispatcher.stage(notification);
+        when(notificationRepository.claimForSending(any(), any(), any())).thenReturn(1);
+
+        dispatcher.dispatch(List.of(notification));
+
+        verify(notificationRepository).updateDelivery(
+                eq(notification.getId()), eq(NotificationStatus.SENDING), eq(NotificationStatus.RETRYING), eq(1), any());
+        assertTrue(notification.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        assertEquals(1, meterRegistry.get("notification.mail.send").tag("outcome", "failure").timer().count());
+        assertEquals(1.0, mailThrottle.health().errorRate());
+    }
+
+    @Test
+    void givenUnreachableMailServerInSyncMode_whenStage_thenScheduleRetry() {
+
+        mailSender.setPort(ServerSetupTest.SMTP.getPort() + 1);
+        NotificationDispatcher dispatcher = dispatcher(false);
+        Notification notification = aNotification();
+
+        dispatcher.stage(notification);
+
+        assertEquals(NotificationStatus.RETRYING, notification.getStatus());
+        assertEquals(1, notification.getAttempts());
+    }
+
+    @Test
+    void givenUnreachableMailServer_whenDeliverAll_thenRetryTheBatchUnlessOnItsLastAttempt() {
+
+        mailSender.setPort(ServerSetupTest.SMTP.getPort() + 1);
+        NotificationDispatcher dispatcher = dispatcher(true);
+        Notification first = aNotification();
+        Notification last = aNotification();
+        last.setAttempts(2);
+        dispatcher.leaseForSending(List.of(first, last));
+        when(notificationRepository.updateDelivery(any(), any(), any(), anyInt(), any())).thenReturn(1);
+
+        dispatcher.deliverAll(List.of(first, last));
+
+        assertEquals(NotificationStatus.RETRYING, first.getStatus());
+        assertEquals(1, first.getAttempts());
+        assertTrue(first.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        assertEquals(NotificationStatus.FAILED, last.getStatus());
+        assertEquals(3, last.getAttempts());
+
+        assertEquals(1, dispatcher.recordAll(List.of(first)));
+        verify(notificationRepository).updateDelivery(
+                first.getId(), NotificationStatus.SENDING, NotificationStatus.RETRYING, 1, first.getNextAttemptAt());
+    }
+
+    @Test
+    void givenLastAttemptFails_whenRetry_thenMarkFailed() {
+
+        mailSender.setPort(ServerSetupTest.SMTP.getPort() + 1);
+        NotificationDispatcher dispatcher = dispatcher(true);
+        Notification notification = aNotification();
+        notification.setStatus(NotificationStatus.RETRYING);
+        notification.setAttempts(2);
+        when(notificationRepository.claimForSending(any(), any(), any())).thenReturn(1);
+
+        dispatcher.retry(List.of(notification));
+
+        verify(notificationRepository).claimForSending(eq(notification.getId()), eq(NotificationStatus.RETRYING), any());
+        verify(notificationRepository).updateDelivery(notification.getId(), NotificationStatus.SENDING, NotificationStatus.FAILED, 3, null);
+    }
+
+    @Test
+    void givenNotificationSendingPastItsLease_whenReclaim_thenCountTheAttemptAndRetry() {
+
+        NotificationDispatcher dispatcher = dispatcher(true);
+        Notification notification = aNotification();
+        notification.setStatus(NotificationStatus.SENDING);
+        notification.setAttempts(1);
+        notification.setNextAttemptAt(LocalDateTime.now().minusMinutes(1));
+        when(notificationRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+                eq(NotificationStatus.SENDING), any(), any())).thenReturn(List.of(notification));
+        when(notificationRepository.updateDelivery(any(), any(), any(), anyInt(), any())).thenReturn(1);
+
+        dispatcher.reclaimStaleSendingNotifications();
+
+        verify(notificationRepository).updateDelivery(
+                eq(notification.getId()), eq(NotificationStatus.SENDING), eq(NotificationStatus.RETRYING), eq(2), any());
+        assertTrue(notification.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        assertEquals(0, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void givenRateLimitExhausted_whenDispatch_thenScheduleRetryWithoutSending() {
+
+        mailThrottle = new MailThrottle("localhost", 0.001, 1, Duration.ZERO, Duration.ofSeconds(30));
+        NotificationDispatcher dispatcher = dispatcher(true);
+        Notification first = aNotification();
+        Notification second = aNotification();
+        dispatcher.stage(first);
+        dispatcher.stage(second);
+        when(notificationRepository.claimForSending(any(), any(), any())).thenReturn(1);
+
+        dispatcher.dispatch(List.of(first, second));
+
+        assertEquals(1, greenMail.getReceivedMessages().length);
+        verify(notificationRepository).updateDelivery(first.getId(), NotificationStatus.SENDING, NotificationStatus.SUCCEEDED, 1, null);
+        verify(notificationRepository).updateDelivery(
+                eq(second.getId()), eq(NotificationStatus.SENDING), eq(NotificationStatus.RETRYING), eq(1), any());
+    }
+
+    @Test
+    void givenSyncMode_whenStage_thenSendRightAway() {
+
+        NotificationDispatcher dispatcher = dispatcher(false);
+        Notification notification = aNotification();
+
+        dispatcher.stage(notification);
+
+        assertEquals(NotificationStatus.SUCCEEDED, notification.getStatus());
+        assertEquals(1, greenMail.getReceivedMessages().length);
+        verifyNoInteractions(notificationRepository);
+        assertEquals(1, meterRegistry.get("notification.mail.send").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void givenSmsNotification_whenStage_thenSendThroughSmsChannelOnly() {
+
+        InMemoryNotificationChannel smsChannel = new InMemoryNotificationChannel(NotificationType.SMS, 10);
+        NotificationDispatcher dispatcher = dispatcher(false, emailBulkhead(),
+                new ChannelBulkhead(smsChannel, new SyncTaskExecutor(), 1, 10, Duration.ofSeconds(1), meterRegistry));
+        Notification notification = aNotification();
+        notification.setType(NotificationType.SMS);
+
+        dispatcher.stage(notification);
+
+        assertEquals(NotificationStatus.SUCCEEDED, notification.getStatus());
+        assertEquals(List.of(notification), smsChannel.getSent());
+        assertEquals(0, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void givenSmsChannelStuck_whenStage_thenRetrySmsLaterAndStillSendEmail() throws Exception {
+
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        NotificationChannel stuckGateway = new NotificationChannel() {
+            @Override
+            public NotificationType type() {
+                return NotificationType.SMS;
+            }
+
+            @Override
+            public void send(Notification notification) {
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        NotificationDispatcher dispatcher = dispatcher(false, emailBulkhead(),
+                new ChannelBulkhead(stuckGateway, new SyncTaskExecutor(), 1, 10, Duration.ofMillis(50), meterRegistry));
+        Notification stuck = aNotification();
+        stuck.setType(NotificationType.SMS);
+        Thread first = new Thread(() -> dispatcher.stage(stuck));
+        first.start();
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        Notification sms = aNotification();
+        sms.setType(NotificationType.SMS);
+        Notification email = aNotification();
+        dispatcher.stage(sms);
+        dispatcher.stage(email);
+
+        assertEquals(NotificationStatus.RETRYING, sms.getStatus());
+        assertEquals(NotificationStatus.SUCCEEDED, email.getStatus());
+        assertEquals(1, meterRegistry.get("notification.channel.rejected").tag("channel", "SMS").counter().count());
+        release.countDown();
+        first.join();
+        assertEquals(NotificationStatus.SUCCEEDED, stuck.getStatus());
+    }
+
+    private NotificationDispatcher dispatcher(boolean async) {
+
+        return dispatcher(async, emailBulkhead());
+    }
+
+    private ChannelBulkhead emailBulkhead() {
+
+        return new ChannelBulkhead(new EmailChannel(mailSender, mailThrottle, meterRegistry),
+                new SyncTaskExecutor(), 4, 100, Duration.ofSeconds(1), meterRegistry);
+    }
+
+    private NotificationDispatcher dispatcher(boolean async, ChannelBulkhead... bulkheads) {
+
+        return new NotificationDispatcher(new NotificationChannels(List.of(bulkheads)), notificationRepository, async, Duration.ofMinutes(1),
+                Duration.ofMinutes(5), retryPolicy,
+                mock(NotificationCounters.class));
+    }
+
+    private static Notification aNotification() {
+
+        return Notification.builder()
+                .id(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .recipient("user@mail.com")
+                .subject("subject")
+                .body("body")
+                .createdOn(LocalDateTime.now())
+                .type(NotificationType.EMAIL)
+                .build();
+    }
+}
@@ -0,0 +1,131 @@
+package app.service;
+
+import app.model.Notification;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import app.repository.NotificationRepository;
+import app.repository.PreferenceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(NotificationExportService.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class NotificationHistoryQueryTest {
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PreferenceRepository preferenceRepository;
+
+    @Autowired
+    private NotificationExportService notificationExportService;
+
+    private NotificationService notificationService;
+
+    @BeforeEach
+    void setUp() {
+
+        notificationService = new NotificationService(preferenceRepository, mock(NotificationDispatcher.class),
+                notificationRepository, mock(PreferenceCache.class), mock(NotificationTemplateService.class),
+                new ReadYourWrites(transactionManager, new SimpleMeterRegistry(), Duration.ofSeconds(5), 1000),
+                mock(NotificationCounters.class));
+    }
+
+    @Test
+    void givenLongHistory_whenPagingWithCursor_thenEveryNotificationIsReturnedOnceNewestFirst() {
+
+        UUID userId = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        List<Notification> notifications = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            // groups of three share a timestamp, so the id has to break the ties
+            notifications.add(aNotification(userId, now.minusSeconds(i / 3), i % 10 == 0));
+        }
+        notifications.add(aNotification(UUID.randomUUID(), now, false));
+        notificationRepository.saveAll(notifications);
+
+        List<Notification> seen = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        NotificationCursor cursor = null;
+        do {
+            NotificationHistoryPage page = notificationService.getNotificationHistoryPage(userId, cursor, 50);
+            pageSizes.add(page.notifications().size());
+            seen.addAll(page.notifications());
+            cursor = page.nextCursor() == null ? null : NotificationCursor.decode(page.nextCursor().encode());
+        } while (cursor != null);
+
+        assertEquals(List.of(50, 50, 8), pageSizes);
+        Set<UUID> ids = new HashSet<>();
+        seen.forEach(notification -> assertTrue(ids.add(notification.getId())));
+        assertTrue(seen.stream().noneMatch(Notification::isDeleted));
+        for (int i = 1; i < seen.size(); i++) {
+            assertFalse(seen.get(i).getCreatedOn().isAfter(seen.get(i - 1).getCreatedOn()));
+        }
+    }
+
+    @Test
+    void givenHistoryInRange_whenExport_thenStreamOldestFirstWithinBounds() {
+
+        UUID userId = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        List<Notification> notifications = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            notifications.add(aNotification(userId, now.minusDays(i), false));
+            notifications.add(aNotification(UUID.randomUUID(), now.minusDays(i), false));
+        }
+        notificationRepository.saveAll(notifications);
+
+        List<Notification> userExport = new ArrayList<>();
+        long exported = notificationExportService.exportNotifications(userId, now.minusDays(9), null, userExport::add);
+
+        assertEquals(10, exported);
+        assertEquals(now.minusDays(9), userExport.get(0).getCreatedOn());
+        assertTrue(userExport.stream().allMatch(notification -> notification.getUserId().equals(userId)));
+
+        long allUsers = notificationExportService.exportNotifications(null, now.minusDays(9), now.minusDays(4), notification -> { });
+        assertEquals(10, allUsers);
+    }
+
+    @Test
+    void givenMalformedToken_whenDecode_thenThrowException() {
+
+        assertThrows(IllegalArgumentException.class, () -> NotificationCursor.decode("not-a-cursor"));
+    }
+
+    private static Notification aNotification(UUID userId, LocalDateTime createdOn, boolean deleted) {
+
+        return Notification.builder()
+                .userId(userId)
+                .subject("subject")
+                .body("body")
+                .createdOn(createdOn)
+                .status(NotificationStatus.SUCCEEDED)
+                .type(NotificationType.EMAIL)
+                .deleted(deleted)
+                .build();
+    }
+}
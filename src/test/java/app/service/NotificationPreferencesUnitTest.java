@@ -29,6 +29,15 @@ public class NotificationPreferencesUnitTest {
     @Mock
     private MailSender mailSender;
 
+    @Mock
+    private PreferenceCache preferenceCache;
+
+    @Mock
+    private ReadYourWrites readYourWrites;
+
+    @Mock
+    private NotificationCounters notificationCounters;
+
     @InjectMocks
     private NotificationService notificationService;
 
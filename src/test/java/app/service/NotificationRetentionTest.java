@@ -0,0 +1,103 @@
+package app.service;
+
+import app.event.BackpressureController;
+import app.model.Notification;
+import app.model.NotificationStatus;
+import app.repository.NotificationBodyRepository;
+import app.repository.NotificationRepository;
+import app.repository.ProcessedEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class NotificationRetentionTest {
+
+    private NotificationRepository notificationRepository;
+    private ProcessedEventRepository processedEventRepository;
+    private NotificationArchive notificationArchive;
+    private JobLeases jobLeases;
+    private SimpleMeterRegistry meterRegistry;
+    private NotificationRetention retention;
+
+    @BeforeEach
+    void setUp() {
+
+        notificationRepository = mock(NotificationRepository.class);
+        processedEventRepository = mock(ProcessedEventRepository.class);
+        notificationArchive = mock(NotificationArchive.class);
+        jobLeases = mock(JobLeases.class);
+        meterRegistry = new SimpleMeterRegistry();
+        retention = new NotificationRetention(notificationRepository, processedEventRepository, mock(NotificationBodyRepository.class),
+                notificationArchive, mock(BackpressureController.class), mock(NotificationCounters.class), jobLeases, meterRegistry, true,
+                Duration.ofDays(30), Duration.ofDays(365), List.of(NotificationStatus.SUCCEEDED), true, Duration.ofDays(7), Duration.ofDays(1),
+                2, Duration.ZERO, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void givenAgedNotifications_whenRun_thenArchiveAndDeleteThemChunkByChunkFromTheLastKey() throws Exception {
+
+        Notification first = notification(LocalDateTime.now().minusYears(2));
+        Notification second = notification(LocalDateTime.now().minusYears(2).plusHours(1));
+        Notification third = notification(LocalDateTime.now().minusYears(2).plusHours(2));
+        when(notificationRepository.findRetentionChunk(eq(NotificationStatus.SUCCEEDED), any(), eq(false), any(), any(), any()))
+                .thenReturn(List.of(first, second), List.of(third));
+        when(processedEventRepository.findKeysProcessedBefore(any(), any())).thenReturn(List.of("old-key"));
+
+        assertEquals(4, retention.run());
+
+        verify(notificationArchive).write(List.of(first, second));
+        verify(notificationArchive).write(List.of(third));
+        verify(notificationRepository).deleteAllByIdInBatch(List.of(first.getId(), second.getId()));
+        verify(notificationRepository).deleteAllByIdInBatch(List.of(third.getId()));
+        // the second chunk starts after the last row of the first
+        verify(notificationRepository).findRetentionChunk(eq(NotificationStatus.SUCCEEDED), any(), eq(false),
+                eq(second.getCreatedOn()), eq(second.getId()), any());
+        verify(processedEventRepository).deleteAllByIdInBatch(List.of("old-key"));
+        assertEquals(3, meterRegistry.get("notification.retention.rows")
+                .tags("policy", "aged", "action", "archived").counter().count());
+    }
+
+    @Test
+    void givenArchiveFailure_whenRun_thenDeleteNothing() throws Exception {
+
+        when(notificationRepository.findRetentionChunk(any(), any(), anyBoolean(), any(), any(), any()))
+                .thenReturn(List.of());
+        when(notificationRepository.findRetentionChunk(eq(NotificationStatus.SUCCEEDED), any(), eq(false), any(), any(), any()))
+                .thenReturn(List.of(notification(LocalDateTime.now().minusYears(2))));
+        when(notificationArchive.write(any())).thenThrow(new IOException("disk full"));
+
+        assertThrows(RuntimeException.class, () -> retention.run());
+
+        verify(notificationRepository, never()).deleteAllByIdInBatch(any());
+    }
+
+    @Test
+    void givenLeaseHeldByAnotherInstance_whenRunScheduled_thenRemoveNothing() {
+
+        when(jobLeases.tryAcquire(eq("notification-retention"), any())).thenReturn(false);
+
+        retention.runScheduled();
+
+        verifyNoInteractions(notificationRepository, processedEventRepository, notificationArchive);
+    }
+
+    private static Notification notification(LocalDateTime createdOn) {
+
+        return Notification.builder()
+                .id(UUID.randomUUID())
+                .createdOn(createdOn)
+                .status(NotificationStatus.SUCCEEDED)
+                .build();
+    }
+}
@@ -0,0 +1,35 @@
+package app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationRetryPolicyTest {
+
+    private final NotificationRetryPolicy retryPolicy =
+            new NotificationRetryPolicy(4, Duration.ofSeconds(10), Duration.ofMinutes(1), 0.5);
+
+    @Test
+    void givenMoreAttempts_whenBackoff_thenDoubleWithinJitterUpToMaxBackoff() {
+
+        for (int i = 0; i < 100; i++) {
+            assertBetween(Duration.ofSeconds(5), Duration.ofSeconds(10), retryPolicy.backoff(1));
+            assertBetween(Duration.ofSeconds(10), Duration.ofSeconds(20), retryPolicy.backoff(2));
+            assertBetween(Duration.ofSeconds(20), Duration.ofSeconds(40), retryPolicy.backoff(3));
+            assertBetween(Duration.ofSeconds(30), Duration.ofMinutes(1), retryPolicy.backoff(10));
+        }
+    }
+
+    @Test
+    void givenMaxAttemptsReached_whenCanRetry_thenFalse() {
+
+        assertTrue(retryPolicy.canRetry(3));
+        assertFalse(retryPolicy.canRetry(4));
+    }
+
+    private static void assertBetween(Duration min, Duration max, Duration actual) {
+        assertTrue(actual.compareTo(min) >= 0 && actual.compareTo(max) <= 0, actual + " not in [" + min + ", " + max + "]");
+    }
+}
@@ -0,0 +1,134 @@
+package app.service;
+
+import app.event.payload.UpsertNotificationPreference;
+import app.model.Notification;
+import app.model.NotificationPreference;
+import app.model.NotificationStatus;
+import app.repository.NotificationRepository;
+import app.repository.PreferenceRepository;
+import app.web.dto.NotificationRequest;
+import app.web.dto.NotificationTypeRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static app.TestBuilder.aRandomNotificationPreference;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NotificationServiceBatchUnitTest {
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    @Mock
+    private PreferenceRepository preferenceRepository;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    @Mock
+    private PreferenceCache preferenceCache;
+
+    @Mock
+    private ReadYourWrites readYourWrites;
+
+    @Mock
+    private NotificationCounters notificationCounters;
+
+    @InjectMocks
+    private NotificationService notificationService;
+
+    @Test
+    void givenExistingAndNewUsers_whenUpsertPreferences_thenLoadOnceAndSaveAllTogether() {
+
+        NotificationPreference existing = aRandomNotificationPreference();
+        UUID newUserId = UUID.randomUUID();
+        when(preferenceRepository.findAllByUserIdIn(anyCollection())).thenReturn(List.of(existing));
+
+        List<NotificationPreference> result = notificationService.upsertPreferences(List.of(
+                upsert(existing.getUserId(), "first@mail.com"),
+                upsert(newUserId, "new@mail.com"),
+                upsert(existing.getUserId(), "second@mail.com")));
+
+        assertEquals(3, result.size());
+        assertSame(existing, result.get(0));
+        assertSame(existing, result.get(2));
+        assertEquals("second@mail.com", existing.getContactInfo());
+        assertEquals(newUserId, result.get(1).getUserId());
+        assertNotNull(result.get(1).getCreatedOn());
+
+        verify(preferenceRepository, times(1)).findAllByUserIdIn(anyCollection());
+        verify(preferenceRepository, times(1)).saveAll(argThat((Collection<NotificationPreference> saved) -> saved.size() == 2));
+        verify(preferenceRepository, never()).findByUserId(any());
+    }
+
+    @Test
+    void givenDigestWindow_whenPrepareNotification_thenBufferItUntilTheWindowEnds() {
+
+        NotificationPreference preference = aRandomNotificationPreference();
+        preference.setEnable(true);
+        preference.setDigestWindowMinutes(15);
+        NotificationRequest request = NotificationRequest.builder()
+                .userId(preference.getUserId())
+                .subject("subject")
+                .body("body")
+                .build();
+
+        Notification notification = notificationService.prepareNotification(request, preference);
+
+        assertEquals(NotificationStatus.BUFFERED, notification.getStatus());
+        assertEquals(notification.getCreatedOn().plusMinutes(15), notification.getNextAttemptAt());
+        verifyNoInteractions(notificationDispatcher);
+    }
+
+    @Test
+    void givenMissingPreference_whenPrepareNotification_thenThrowException() {
+
+        NotificationRequest request = NotificationRequest.builder()
+                .userId(UUID.randomUUID())
+                .subject("subject")
+                .body("body")
+                .build();
+
+        assertThrows(NullPointerException.class, () -> notificationService.prepareNotification(request, null));
+        verifyNoInteractions(notificationDispatcher, notificationRepository);
+    }
+
+    @Test
+    void givenEnabledPreference_whenPrepareNotification_thenStageWithoutSaving() {
+
+        NotificationPreference preference = aRandomNotificationPreference();
+        preference.setEnable(true);
+        NotificationRequest request = NotificationRequest.builder()
+                .userId(preference.getUserId())
+                .subject("subject")
+                .body("body")
+                .build();
+
+        Notification notification = notificationService.prepareNotification(request, preference);
+
+        assertEquals(preference.getContactInfo(), notification.getRecipient());
+        verify(notificationDispatcher, times(1)).stage(notification);
+        verifyNoInteractions(notificationRepository);
+    }
+
+    private static UpsertNotificationPreference upsert(UUID userId, String contactInfo) {
+
+        return UpsertNotificationPreference.builder()
+                .userId(userId)
+                .type(NotificationTypeRequest.EMAIL)
+                .notificationEnabled(true)
+                .contactInfo(contactInfo)
+                .build();
+    }
+}
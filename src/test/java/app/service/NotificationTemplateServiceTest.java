@@ -0,0 +1,82 @@
+package app.service;
+
+import app.model.NotificationTemplate;
+import app.repository.NotificationTemplateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class NotificationTemplateServiceTest {
+
+    private NotificationTemplateRepository templateRepository;
+
+    private NotificationTemplateService templateService;
+
+    @BeforeEach
+    void setUp() {
+
+        templateRepository = mock(NotificationTemplateRepository.class);
+        templateService = new NotificationTemplateService(templateRepository, new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void givenStoredTemplate_whenRenderTwice_thenLoadItOnceAndSubstituteVariables() {
+
+        when(templateRepository.findById("approved")).thenReturn(Optional.of(NotificationTemplate.builder()
+                .id("approved")
+                .subject("Hi {{ name }}")
+                .body("{{name}}, your vacation from {{from}} to {{to}} was approved.")
+                .createdOn(LocalDateTime.now())
+                .updatedOn(LocalDateTime.now())
+                .build()));
+        Map<String, String> variables = Map.of("name", "Ana", "from", "1 May", "to", "5 May");
+
+        NotificationTemplateService.RenderedTemplate first = templateService.render("approved", variables);
+        NotificationTemplateService.RenderedTemplate second = templateService.render("approved", Map.of("name", "Bo", "from", "a", "to", "b"));
+
+        assertEquals("Hi Ana", first.subject());
+        assertEquals("Ana, your vacation from 1 May to 5 May was approved.", first.body());
+        assertEquals("Bo, your vacation from a to b was approved.", second.body());
+        verify(templateRepository, times(1)).findById("approved");
+    }
+
+    @Test
+    void givenMissingVariable_whenRender_thenThrowIllegalArgumentException() {
+
+        when(templateRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        templateService.register("approved", "Hi {{name}}", "Approved until {{to}}.");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> templateService.render("approved", Map.of("name", "Ana")));
+        assertTrue(e.getMessage().contains("to"));
+        verify(templateRepository, times(1)).findById("approved");
+    }
+
+    @Test
+    void givenUnclosedPlaceholder_whenRegister_thenRejectWithoutSaving() {
+
+        assertThrows(IllegalArgumentException.class, () -> templateService.register("broken", "Hi {{name", "body"));
+
+        verify(templateRepository, never()).save(any());
+    }
+
+    @Test
+    void givenUnknownTemplate_whenRender_thenThrowAndLookItUpAgainNextTime() {
+
+        when(templateRepository.findById("unknown")).thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> templateService.render("unknown", Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> templateService.render("unknown", Map.of()));
+
+        verify(templateRepository, times(2)).findById("unknown");
+    }
+}
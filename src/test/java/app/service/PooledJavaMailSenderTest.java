@@ -0,0 +1,125 @@
+package app.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PooledJavaMailSenderTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private PooledJavaMailSender mailSender;
+
+    @AfterEach
+    void tearDown() {
+
+        mailSender.close();
+    }
+
+    @Test
+    void givenManyConcurrentSends_whenSend_thenReuseAtMostMaxConnections() throws Exception {
+
+        mailSender = mailSender(2, Duration.ofMinutes(1));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> sends = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int number = i;
+            sends.add(executor.submit(() -> mailSender.send(aMessage(number))));
+        }
+        for (Future<?> send : sends) {
+            send.get();
+        }
+        executor.shutdown();
+
+        assertEquals(100, greenMail.getReceivedMessages().length);
+        assertEquals(100, mailSender.getMessagesSent());
+        assertTrue(mailSender.getConnectionsOpened() <= 2);
+    }
+
+    @Test
+    void givenSeveralMessages_whenSendTogether_thenUseOneConnection() {
+
+        mailSender = mailSender(4, Duration.ofMinutes(1));
+
+        mailSender.send(aMessage(1), aMessage(2), aMessage(3), aMessage(4), aMessage(5));
+
+        assertEquals(5, greenMail.getReceivedMessages().length);
+        assertEquals(1, mailSender.getConnectionsOpened());
+        assertEquals(1, mailSender.getIdleConnections());
+    }
+
+    @Test
+    void givenIdleConnection_whenIdleTimeoutPassed_thenEvictAndReconnect() throws Exception {
+
+        mailSender = mailSender(1, Duration.ofMillis(50));
+        mailSender.send(aMessage(1));
+
+        Thread.sleep(100);
+        mailSender.evictIdleConnections();
+        assertEquals(0, mailSender.getIdleConnections());
+
+        mailSender.send(aMessage(2));
+        assertEquals(2, mailSender.getConnectionsOpened());
+        assertEquals(2, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void givenServerRestarted_whenSend_thenReplaceBrokenConnection() throws Exception {
+
+        mailSender = mailSender(1, Duration.ofMinutes(1));
+        mailSender.send(aMessage(1));
+
+        greenMail.stop();
+        greenMail.start();
+        Thread.sleep(2100);
+
+        mailSender.send(aMessage(2));
+        assertEquals(2, mailSender.getConnectionsOpened());
+        assertEquals(1, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void givenMessageWithoutRecipient_whenSend_thenFailOnlyThatMessage() {
+
+        mailSender = mailSender(1, Duration.ofMinutes(1));
+        SimpleMailMessage withoutRecipient = aMessage(2);
+        withoutRecipient.setTo();
+
+        MailSendException exception = assertThrows(MailSendException.class,
+                () -> mailSender.send(aMessage(1), withoutRecipient, aMessage(3)));
+
+        assertEquals(1, exception.getFailedMessages().size());
+        assertEquals(2, greenMail.getReceivedMessages().length);
+    }
+
+    private static PooledJavaMailSender mailSender(int maxConnections, Duration idleTimeout) {
+
+        return new PooledJavaMailSender(new Properties(), "smtp", "localhost", ServerSetupTest.SMTP.getPort(),
+                null, null, maxConnections, idleTimeout, Duration.ofSeconds(10));
+    }
+
+    private static SimpleMailMessage aMessage(int number) {
+
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("notifications@mail.com");
+        message.setTo("user" + number + "@mail.com");
+        message.setSubject("subject " + number);
+        message.setText("body " + number);
+        return message;
+    }
+}
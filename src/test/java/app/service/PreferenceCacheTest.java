@@ -0,0 +1,156 @@
+package app.service;
+
+import app.event.PreferenceChangePublisher;
+import app.model.NotificationPreference;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static app.TestBuilder.aRandomNotificationPreference;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class PreferenceCacheTest {
+
+    private PreferenceChangePublisher preferenceChangePublisher;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PreferenceCache preferenceCache;
+
+    @BeforeEach
+    void setUp() {
+
+        preferenceChangePublisher = mock(PreferenceChangePublisher.class);
+        doReturn(CompletableFuture.completedFuture(null)).when(preferenceChangePublisher).publish(any());
+        meterRegistry = new SimpleMeterRegistry();
+        preferenceCache = new PreferenceCache(preferenceChangePublisher, new PreferenceStore(meterRegistry, false, Duration.ofMinutes(10)),
+                meterRegistry, 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void givenCachedPreference_whenGet_thenLoaderIsCalledOnce() {
+
+        NotificationPreference preference = aRandomNotificationPreference();
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            Optional<NotificationPreference> result = preferenceCache.get(preference.getUserId(), userId -> {
+                loads.incrementAndGet();
+                return Optional.of(preference);
+            });
+            assertSame(preference, result.orElseThrow());
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(2, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void givenMissingPreference_whenGet_thenMissIsNotCached() {
+
+        UUID userId = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+
+        preferenceCache.get(userId, id -> { loads.incrementAndGet(); return Optional.empty(); });
+        preferenceCache.get(userId, id -> { loads.incrementAndGet(); return Optional.empty(); });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void givenPartlyCachedUsers_whenGetAll_thenLoadOnlyMissingOnes() {
+
+        NotificationPreference cached = aRandomNotificationPreference();
+        NotificationPreference notCached = aRandomNotificationPreference();
+        preferenceCache.updated(cached);
+        List<Collection<UUID>> loaded = new ArrayList<>();
+
+        Map<UUID, NotificationPreference> result = preferenceCache.getAll(
+                List.of(cached.getUserId(), notCached.getUserId()),
+                userIds -> {
+                    loaded.add(userIds);
+                    return List.of(notCached);
+                });
+
+        assertEquals(2, result.size());
+        assertEquals(List.of(List.of(notCached.getUserId())), loaded);
+    }
+
+    @Test
+    void givenUpdatedPreference_whenEvict_thenReloadAndAnnounceChange() {
+
+        NotificationPreference preference = aRandomNotificationPreference();
+        preferenceCache.updated(preference);
+        verify(preferenceChangePublisher).publish(preference);
+
+        preferenceCache.evict(preference.getUserId());
+
+        AtomicInteger loads = new AtomicInteger();
+        preferenceCache.get(preference.getUserId(), id -> { loads.incrementAndGet(); return Optional.of(preference); });
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void givenWarmStartedStore_whenGet_thenStoredPreferenceWinsAndOlderChangeIsIgnored() {
+
+        PreferenceStore preferenceStore = new PreferenceStore(meterRegistry, true, Duration.ofMinutes(10));
+        PreferenceCache warmCache = new PreferenceCache(preferenceChangePublisher, preferenceStore,
+                meterRegistry, 100, Duration.ofMinutes(1));
+        NotificationPreference current = aRandomNotificationPreference();
+        current.setUpdatedOn(LocalDateTime.now());
+        NotificationPreference older = aRandomNotificationPreference();
+        older.setUserId(current.getUserId());
+        older.setUpdatedOn(current.getUpdatedOn().minusMinutes(1));
+
+        warmCache.changed(current);
+        warmCache.changed(older);
+
+        Optional<NotificationPreference> result = warmCache.get(current.getUserId(),
+                id -> { throw new AssertionError("stored preferences are not loaded"); });
+        assertSame(current, result.orElseThrow());
+        assertEquals(1, preferenceStore.size());
+    }
+
+    @Test
+    void givenStoredPreferencePastMaxAge_whenGet_thenLoadFromDatabaseAndKeepIt() {
+
+        PreferenceStore preferenceStore = new PreferenceStore(meterRegistry, true, Duration.ZERO);
+        PreferenceCache warmCache = new PreferenceCache(preferenceChangePublisher, preferenceStore,
+                meterRegistry, 100, Duration.ofMinutes(1));
+        NotificationPreference stale = aRandomNotificationPreference();
+        stale.setUpdatedOn(LocalDateTime.now().minusMinutes(1));
+        NotificationPreference current = aRandomNotificationPreference();
+        current.setUserId(stale.getUserId());
+        current.setUpdatedOn(LocalDateTime.now());
+        warmCache.changed(stale);
+
+        Optional<NotificationPreference> result = warmCache.get(stale.getUserId(), id -> Optional.of(current));
+
+        assertSame(current, result.orElseThrow());
+        assertEquals(1, preferenceStore.size());
+    }
+
+    @Test
+    void givenPublishFails_whenUpdated_thenDropStoredPreference() {
+
+        PreferenceStore preferenceStore = new PreferenceStore(meterRegistry, true, Duration.ofMinutes(10));
+        PreferenceCache warmCache = new PreferenceCache(preferenceChangePublisher, preferenceStore,
+                meterRegistry, 100, Duration.ofMinutes(1));
+        NotificationPreference preference = aRandomNotificationPreference();
+        preference.setUpdatedOn(LocalDateTime.now());
+        doReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")))
+                .when(preferenceChangePublisher).publish(preference);
+
+        warmCache.updated(preference);
+
+        assertNull(preferenceStore.get(preference.getUserId()));
+    }
+}
@@ -1,31 +1,76 @@
 package app.web;
 
+import app.model.BulkJobStatus;
+import app.model.BulkNotificationJob;
+import app.model.Notification;
+import app.model.NotificationStatus;
+import app.model.NotificationType;
+import app.service.BulkNotificationService;
+import app.service.NotificationArchive;
+import app.service.NotificationCursor;
+import app.service.NotificationExportService;
+import app.service.NotificationHistoryPage;
 import app.service.NotificationService;
+import app.service.NotificationSummary;
+import app.service.NotificationTemplateService;
+import app.web.dto.BulkNotificationRequest;
+import app.web.dto.NotificationTemplateRequest;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.UUID;
 
 import static app.TestBuilder.*;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(NotificationController.class)
+@Import({EndpointExecutor.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {"app.web.io.async=true", "app.web.io.endpoints.send.timeout=PT0.2S",
+        "app.web.io.endpoints.send.fallback-status=GATEWAY_TIMEOUT"})
 public class NotificationControllerRestApiTest {
 
     @MockitoBean
     private NotificationService notificationService;
 
+    @MockitoBean
+    private NotificationExportService notificationExportService;
+
+    @MockitoBean
+    private BulkNotificationService bulkNotificationService;
+
+    @MockitoBean
+    private NotificationArchive notificationArchive;
+
+    @MockitoBean
+    private NotificationTemplateService templateService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -50,7 +95,7 @@ public class NotificationControllerRestApiTest {
                 .param("userId", UUID.randomUUID().toString());
 
         // send request
-        mockMvc.perform(request)
+        perform(request)
                 .andExpect(status().isOk())
                 // assert that the contract <-> vacation_planner api is correct
                 .andExpect(jsonPath("id").isNotEmpty())
@@ -79,7 +124,7 @@ public class NotificationControllerRestApiTest {
                 .content(new ObjectMapper().writeValueAsBytes(aRandomUpsertNotificationPreference()));
 
         // send request
-        mockMvc.perform(request)
+        perform(request)
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("id").isNotEmpty())
                 .andExpect(jsonPath("userId").isNotEmpty())
@@ -87,4 +132,158 @@ public class NotificationControllerRestApiTest {
                 .andExpect(jsonPath("enabled").isNotEmpty())
                 .andExpect(jsonPath("contactInfo").isNotEmpty());
     }
+
+    @Test
+    void postBulkNotification_returns202WithJobId() throws Exception {
+
+        BulkNotificationJob job = BulkNotificationJob.builder()
+                .id(UUID.randomUUID())
+                .status(BulkJobStatus.RUNNING)
+                .totalRecipients(2)
+                .totalChunks(1)
+                .build();
+        when(bulkNotificationService.submit(any())).thenReturn(job);
+
+        BulkNotificationRequest body = BulkNotificationRequest.builder()
+                .userIds(List.of(UUID.randomUUID(), UUID.randomUUID()))
+                .subject("Vacation policy")
+                .body("The vacation policy changed.")
+                .build();
+        MockHttpServletRequestBuilder request = post("/api/v1/notifications/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsBytes(body));
+
+        perform(request)
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("jobId").value(job.getId().toString()))
+                .andExpect(jsonPath("status").value("RUNNING"))
+                .andExpect(jsonPath("totalRecipients").value(2));
+    }
+
+    @Test
+    void getUnknownBulkNotificationJob_returns404() throws Exception {
+
+        when(bulkNotificationService.getJob(any())).thenReturn(Optional.empty());
+
+        perform(get("/api/v1/notifications/bulk/" + UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getNotificationPage_returnsNotificationsAndNextCursor() throws Exception {
+
+        Notification notification = aRandomNotification();
+        when(notificationService.getNotificationHistoryPage(any(), any(), anyInt()))
+                .thenReturn(new NotificationHistoryPage(List.of(notification), NotificationCursor.of(notification)));
+
+        MockHttpServletRequestBuilder request = get("/api/v1/notifications/page")
+                .param("userId", UUID.randomUUID().toString())
+                .param("size", "1");
+
+        perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("notifications[0].id").value(notification.getId().toString()))
+                .andExpect(jsonPath("nextCursor").value(NotificationCursor.of(notification).encode()));
+    }
+
+    @Test
+    void getNotificationSummary_returnsCountsByStatusAndType() throws Exception {
+
+        UUID userId = UUID.randomUUID();
+        when(notificationService.getNotificationSummary(userId)).thenReturn(new NotificationSummary(userId,
+                Map.of(NotificationStatus.SUCCEEDED, 3L, NotificationStatus.FAILED, 1L),
+                Map.of(NotificationType.EMAIL, 4L)));
+
+        perform(get("/api/v1/notifications/summary").param("userId", userId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("total").value(4))
+                .andExpect(jsonPath("failed").value(1))
+                .andExpect(jsonPath("byStatus.SUCCEEDED").value(3))
+                .andExpect(jsonPath("byType.EMAIL").value(4));
+    }
+
+    @Test
+    void getNotificationPageWithMalformedCursor_returns400() throws Exception {
+
+        MockHttpServletRequestBuilder request = get("/api/v1/notifications/page")
+                .param("userId", UUID.randomUUID().toString())
+                .param("cursor", "not-a-cursor");
+
+        perform(request)
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportNotificationsAsCsv_streamsOneLinePerNotification() throws Exception {
+
+        Notification notification = aRandomNotification();
+        notification.setBody("line, with \"quotes\"");
+        when(notificationExportService.exportNotifications(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Consumer<Notification> sink = invocation.getArgument(3);
+            sink.accept(notification);
+            return 1L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/v1/notifications/export")
+                        .param("userId", notification.getUserId().toString())
+                        .param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(content().string(containsString("\"line, with \"\"quotes\"\"\"")));
+    }
+
+    @Test
+    void exportAllUsersWithoutRange_returns400() throws Exception {
+
+        mockMvc.perform(get("/api/v1/notifications/export"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void putInvalidTemplate_returns400() throws Exception {
+
+        when(templateService.register(any(), any(), any()))
+                .thenThrow(new IllegalArgumentException("Placeholder at 6 is not closed"));
+
+        NotificationTemplateRequest body = NotificationTemplateRequest.builder()
+                .subject("Hello {{name")
+                .body("Your vacation starts on {{start}}.")
+                .build();
+        MockHttpServletRequestBuilder request = put("/api/v1/notifications/templates/vacation-approved")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsBytes(body));
+
+        perform(request)
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void postNotificationSlowerThanItsTimeout_returnsFallbackStatus() throws Exception {
+
+        when(notificationService.sendNotification(any())).thenAnswer(invocation -> {
+            Thread.sleep(1000);
+            return aRandomNotification();
+        });
+
+        MockHttpServletRequestBuilder request = post("/api/v1/notifications")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"userId":"%s","subject":"subject","body":"body"}
+                        """.formatted(UUID.randomUUID()));
+
+        perform(request)
+                .andExpect(status().isGatewayTimeout());
+    }
+
+    // handlers answer asynchronously; requests rejected before reaching the handler answer right away
+    private ResultActions perform(RequestBuilder request) throws Exception {
+
+        ResultActions actions = mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+        return result.getRequest().isAsyncStarted() ? mockMvc.perform(asyncDispatch(result)) : actions;
+    }
 }